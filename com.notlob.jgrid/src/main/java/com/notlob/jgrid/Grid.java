@@ -2,8 +2,10 @@ package com.notlob.jgrid;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
@@ -11,6 +13,9 @@ import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.FocusAdapter;
 import org.eclipse.swt.events.FocusEvent;
 import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.MouseEvent;
+import org.eclipse.swt.events.MouseTrackAdapter;
+import org.eclipse.swt.events.MouseTrackListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.FontData;
@@ -27,11 +32,16 @@ import org.eclipse.swt.widgets.ToolTip;
 import com.notlob.jgrid.input.GridKeyboardHandler;
 import com.notlob.jgrid.input.GridMouseHandler;
 import com.notlob.jgrid.listeners.IGridListener;
+import com.notlob.jgrid.listeners.IRowDeltaListener;
+import com.notlob.jgrid.listeners.ISelectionDeltaListener;
 import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.FacetIndex;
 import com.notlob.jgrid.model.GridModel;
+import com.notlob.jgrid.model.GridSnapshot;
 import com.notlob.jgrid.model.Row;
 import com.notlob.jgrid.model.RowCountScope;
 import com.notlob.jgrid.model.Viewport;
+import com.notlob.jgrid.model.aggregation.Aggregate;
 import com.notlob.jgrid.model.filtering.Filter;
 import com.notlob.jgrid.providers.IGridContentProvider;
 import com.notlob.jgrid.providers.IGridLabelProvider;
@@ -70,6 +80,7 @@ public class Grid<T> extends Composite {
 	protected final ResizeListener resizeListener;
 	protected final DisposeListener disposeListener;
 	protected final FocusListener focusListener;
+	protected final MouseTrackListener freezeOrderListener;
 
 	// Keyboard and mouse input handling.
 	protected GridMouseHandler<T> mouseHandler;
@@ -100,6 +111,11 @@ public class Grid<T> extends Composite {
 	protected boolean sortingEnabled = true;
 	protected boolean columnMovingEnabled = true;
 	
+	// Stop updates re-ordering rows - explicitly, or automatically while the mouse is over the grid or rows are selected.
+	protected boolean frozenOrder = false;
+	protected boolean autoFreezeOrder = false;
+	protected boolean mouseOver = false;
+	
 	// Paints some diagnostic details.
 	protected boolean debugPainting = false;
 		
@@ -121,6 +137,7 @@ public class Grid<T> extends Composite {
 		resizeListener = new ResizeListener();
 		scrollListener = new ScrollListener();
 		focusListener = new GridFocusListener();
+		freezeOrderListener = new FreezeOrderListener();
 		listeners = new ArrayList<>();
 		toolTip = new ToolTip(parent.getShell(), SWT.NONE);
 		toolTip.setAutoHide(true);
@@ -133,6 +150,7 @@ public class Grid<T> extends Composite {
 		addPaintListener(gridRenderer);
 		addListener(SWT.Resize, resizeListener);
 		addFocusListener(focusListener);
+		addMouseTrackListener(freezeOrderListener);
 		getVerticalBar().addSelectionListener(scrollListener);
 		getHorizontalBar().addSelectionListener(scrollListener);
 	}
@@ -147,6 +165,7 @@ public class Grid<T> extends Composite {
 		removeMouseTrackListener(mouseHandler);
 		removeMouseMoveListener(mouseHandler);
 		removeFocusListener(focusListener);
+		removeMouseTrackListener(freezeOrderListener);
 		removePaintListener(gridRenderer);
 		removeListener(SWT.Resize, resizeListener);
 		getVerticalBar().removeSelectionListener(scrollListener);
@@ -243,6 +262,46 @@ public class Grid<T> extends Composite {
 		return gridModel.isEventsSuppressed();
 	}
 	
+	/**
+	 * Run the changes as a single transaction. Elements added, updated and removed by the runnable are only applied (their
+	 * net change) when it finishes - see GridModel.commitBatch for the events fired. Until then, the grid still shows (and 
+	 * returns) the rows as they were.
+	 */
+	public void batch(final Runnable changes) {
+		checkWidget();
+		gridModel.beginBatch();
+		
+		try {
+			changes.run();
+			
+		} finally {
+			gridModel.commitBatch();
+		}
+	}
+	
+	public boolean isSnapshotsEnabled() {
+		checkWidget();
+		return gridModel.isSnapshotsEnabled();
+	}
+	
+	/**
+	 * When enabled, an immutable snapshot of the visible elements, selection, sort and filters is published after each batch
+	 * of changes - for background threads to read with getSnapshot. Each publish only copies the chunks of visible rows which
+	 * have changed since the last, and the selection's bits.
+	 */
+	public void setSnapshotsEnabled(final boolean snapshotsEnabled) {
+		checkWidget();
+		gridModel.setSnapshotsEnabled(snapshotsEnabled);
+	}
+	
+	/**
+	 * The most recently published snapshot (or null if they're not enabled). Unlike other grid methods, this may be called 
+	 * from any thread.
+	 */
+	public GridSnapshot<T> getSnapshot() {
+		return gridModel.getSnapshot();
+	}
+	
 	public void setHighlightHoveredRow(final boolean highlightHoveredRow) {
 		checkWidget();
 		this.highlightHoveredRow = highlightHoveredRow;
@@ -361,6 +420,19 @@ public class Grid<T> extends Composite {
 		return gridModel.isShowColumnHeaders();
 	}
 	
+	/**
+	 * Show a footer row along the bottom of the grid with each column's footer aggregate (see setFooterAggregate).
+	 */
+	public void setShowFooter(final boolean showFooter) {
+		checkWidget();
+		gridModel.setShowFooter(showFooter);
+	}
+	
+	public boolean isShowFooter() {
+		checkWidget();
+		return gridModel.isShowFooter();
+	}
+	
 	public StyleRegistry<T> getStyleRegistry() {
 		checkWidget();
 		return gridModel.getStyleRegistry();
@@ -463,6 +535,63 @@ public class Grid<T> extends Composite {
 		}
 	}
 	
+	/**
+	 * Update the elements with a hint of which columns have changed. If none of the columns are sorted, filtered on, grouped 
+	 * by or wrapped, the rows aren't re-sorted, re-filtered or re-measured and only the changed cells are repainted.
+	 */
+	public void updateElements(final Collection<T> elements, final Collection<Column> changedColumns, final boolean allowAnimation) {
+		checkWidget();
+		
+		final Collection<Row<T>> rowsUpdated = gridModel.updateElements(elements, changedColumns);
+		
+		if (allowAnimation) {
+			animateIfRequired(rowsUpdated, updatedRowAnimiation);
+		}
+	}
+	
+	/**
+	 * Replace existing elements with new instances which find the same rows - equal elements, or ones with the same id (or
+	 * key) if the rows are indexed by them. The new elements take the place of the old ones in their existing rows and are
+	 * then treated as an update.
+	 */
+	public void replaceElements(final Collection<T> elements, final boolean allowAnimation) {
+		checkWidget();
+		
+		final Collection<Row<T>> rowsUpdated = gridModel.replaceElements(elements);
+		
+		if (allowAnimation) {
+			animateIfRequired(rowsUpdated, updatedRowAnimiation);
+		}
+	}
+	
+	/**
+	 * Update the element with the given id (as per the content provider's getElementId). Only available if the rows are
+	 * indexed by id (see setRowsIndexedById), otherwise an UnsupportedOperationException is thrown.
+	 */
+	public void updateById(final String elementId, final boolean allowAnimation) {
+		checkWidget();
+		
+		final Row<T> row = gridModel.updateElementById(elementId);
+		
+		if (allowAnimation && (row != null) && row.isVisible()) {
+			animateIfRequired(Collections.singletonList(row), updatedRowAnimiation);
+		}
+	}
+	
+	/**
+	 * Update the element with the given key. Only available if the content provider is also an IGridElementKeyProvider,
+	 * otherwise an UnsupportedOperationException is thrown.
+	 */
+	public void updateById(final long elementKey, final boolean allowAnimation) {
+		checkWidget();
+		
+		final Row<T> row = gridModel.updateElementByKey(elementKey);
+		
+		if (allowAnimation && (row != null) && row.isVisible()) {
+			animateIfRequired(Collections.singletonList(row), updatedRowAnimiation);
+		}
+	}
+	
 	private void animateIfRequired(final Collection<Row<T>> rows, final RowAnimation<T> animation) {
 		boolean animationRequired = false;
 		
@@ -486,13 +615,38 @@ public class Grid<T> extends Composite {
 	
 	/**
 	 * A list of the elements in position order - please note, calling this method repeatedly is not performant, use a combination
-	 * of getRowCount and getElementAtPosition instead.
+	 * of getRowCount and getElementAtPosition, getElementsView or forEachVisible instead.
 	 */
 	public List<T> getElements() {
 		checkWidget();
 		return gridModel.getElements();
 	}
 	
+	/**
+	 * A read-only, live view of the elements in position order. Nothing is copied, so the grid must not be changed whilst
+	 * iterating over it.
+	 */
+	public List<T> getElementsView() {
+		checkWidget();
+		return gridModel.getElementsView();
+	}
+	
+	/**
+	 * A read-only, live view of the elements from position fromIndex (inclusive) to toIndex (exclusive).
+	 */
+	public List<T> getElements(final int fromIndex, final int toIndex) {
+		checkWidget();
+		return gridModel.getElements(fromIndex, toIndex);
+	}
+	
+	/**
+	 * Pass each visible element to the consumer in position order. The consumer must not change the grid.
+	 */
+	public void forEachVisible(final Consumer<? super T> consumer) {
+		checkWidget();
+		gridModel.forEachVisible(consumer);
+	}
+	
 	public int getRowIndex(final T element) {
 		checkWidget();
 		final Row<T> row = gridModel.getRow(element);
@@ -537,11 +691,28 @@ public class Grid<T> extends Composite {
 		gridModel.getSelectionModel().selectAll();
 	}
 	
+	/**
+	 * Select the rows which aren't selected and de-select those which are.
+	 */
+	public void invertSelection() {
+		checkWidget();
+		gridModel.getSelectionModel().invertSelection();
+	}
+	
 	public Collection<T> getSelection() {
 		checkWidget();
 		return gridModel.getSelectionModel().getSelectedElements();
 	}
 	
+	/**
+	 * A read-only, live view of the selected elements. Nothing is copied, so the selection must not be changed whilst 
+	 * iterating over it.
+	 */
+	public Collection<T> getSelectionView() {
+		checkWidget();
+		return gridModel.getSelectionModel().getSelectedElementsView();
+	}
+	
 	public void setSelection(final Collection<T> selection) {
 		checkWidget();
 		gridModel.getSelectionModel().setSelectedElements(selection);
@@ -567,6 +738,24 @@ public class Grid<T> extends Composite {
 		return gridModel.getRow(element);
 	}
 
+	/**
+	 * Find the row by the element id (as per the content provider's getElementId). Only available if the rows are indexed
+	 * by id (see setRowsIndexedById), otherwise an UnsupportedOperationException is thrown.
+	 */
+	public Row<T> getRowById(final String elementId) {
+		checkWidget();
+		return gridModel.getRowById(elementId);
+	}
+	
+	/**
+	 * Find the row by the element key. Only available if the content provider is also an IGridElementKeyProvider,
+	 * otherwise an UnsupportedOperationException is thrown.
+	 */
+	public Row<T> getRowById(final long elementKey) {
+		checkWidget();
+		return gridModel.getRowByKey(elementKey);
+	}
+
 	public List<Row<T>> getRows() {
 		checkWidget();
 		return gridModel.getRows();
@@ -706,46 +895,30 @@ public class Grid<T> extends Composite {
 	
 	public void collapseGroups(final Collection<T> elements) {
 		checkWidget();
-		
-		for (T element : elements) {
-			contentProvider.setCollapsed(element, true);
-		}
-		
-		applyFilters();
+		gridModel.fireFiltersChangingEvent();
+		gridModel.setGroupsCollapsed(elements, true);
+		gridModel.fireFiltersChangedEvent();
 	}
 	
 	public void expandGroups(final Collection<T> elements) {
 		checkWidget();
-		
-		for (T element : elements) {
-			contentProvider.setCollapsed(element, false);
-		}
-		
-		applyFilters();
+		gridModel.fireFiltersChangingEvent();
+		gridModel.setGroupsCollapsed(elements, false);
+		gridModel.fireFiltersChangedEvent();
 	}
 	
 	public void expandAllGroups() {
 		checkWidget();
-		
-		for (Row<T> row : gridModel.getRows()) {
-			if (gridModel.isParentElement(row.getElement())) {
-				contentProvider.setCollapsed(row.getElement(), false);
-			}
-		}
-		
-		applyFilters();
+		gridModel.fireFiltersChangingEvent();
+		gridModel.setAllGroupsCollapsed(false);
+		gridModel.fireFiltersChangedEvent();
 	}
 	
 	public void collapseAllGroups() {
 		checkWidget();
-		
-		for (Row<T> row : gridModel.getRows()) {
-			if (gridModel.isParentElement(row.getElement())) {
-				contentProvider.setCollapsed(row.getElement(), true);
-			}
-		}
-		
-		applyFilters();
+		gridModel.fireFiltersChangingEvent();
+		gridModel.setAllGroupsCollapsed(true);
+		gridModel.fireFiltersChangedEvent();
 	}
 	
 	public Column getTrackedColumn() {
@@ -908,7 +1081,7 @@ public class Grid<T> extends Composite {
 		
 		int vDelta = 0;
 		final Row<T> row = getRowAtXY(x, y);
-		final int rowIndex = gridModel.getRows().indexOf(row);
+		final int rowIndex = gridModel.indexOfRow(row);
 				
 		if ((rowIndex > 0) && (rowIndex <= viewport.getFirstRowIndex())) {
 			//
@@ -1130,6 +1303,134 @@ public class Grid<T> extends Composite {
 		gridModel.getFilterModel().setHideNoneHighlightedRows(hideNoneHighlightedRows);
 	}
 
+	public boolean isFrozenOrder() {
+		checkWidget();
+		return frozenOrder;
+	}
+
+	/**
+	 * While frozen, updates only change the contents of rows - they're not moved to where the sort says they belong. Any rows
+	 * left out of order are merged into place when the grid is unfrozen.
+	 */
+	public void setFrozenOrder(final boolean frozenOrder) {
+		checkWidget();
+		this.frozenOrder = frozenOrder;
+		updateFrozenOrder();
+	}
+
+	public boolean isAutoFreezeOrder() {
+		checkWidget();
+		return autoFreezeOrder;
+	}
+
+	/**
+	 * Automatically freeze the order of the rows while the mouse is over the grid or any rows are selected.
+	 */
+	public void setAutoFreezeOrder(final boolean autoFreezeOrder) {
+		checkWidget();
+		this.autoFreezeOrder = autoFreezeOrder;
+		updateFrozenOrder();
+	}
+
+	/**
+	 * Freeze or unfreeze the sort model if the explicit or automatic conditions have changed.
+	 */
+	protected void updateFrozenOrder() {
+		final boolean frozen = frozenOrder || (autoFreezeOrder && (mouseOver || !gridModel.getSelectionModel().getSelectedElements().isEmpty()));
+
+		if (frozen != gridModel.getSortModel().isFrozen()) {
+			gridModel.getSortModel().setFrozen(frozen);
+		}
+	}
+
+	public boolean isRowsIndexedById() {
+		checkWidget();
+		return gridModel.isRowsIndexedById();
+	}
+
+	/**
+	 * By default rows are found by their element (using its hashCode and equals). Index them by the content provider's
+	 * getElementId instead, so they can be found and updated by id. Ignored if the content provider is an
+	 * IGridElementKeyProvider - the rows are always indexed by the key.
+	 */
+	public void setRowsIndexedById(final boolean rowsIndexedById) {
+		checkWidget();
+		gridModel.setRowsIndexedById(rowsIndexedById);
+	}
+
+	public int getTopN() {
+		checkWidget();
+		return gridModel.getTopNModel().getTopN();
+	}
+
+	/**
+	 * Only show the best topN rows (by the current sort) which pass the filters - zero shows them all. Rows beyond the top
+	 * N are treated as hidden. Groups are ranked row by row, so this is intended for flat data.
+	 */
+	public void setTopN(final int topN) {
+		checkWidget();
+		final boolean selectionChanged = gridModel.getTopNModel().setTopN(topN);
+		gridModel.fireRowCountChangedEvent();
+		gridModel.fireChangeEvent();
+
+		if (selectionChanged) {
+			gridModel.fireSelectionChangedEvent();
+		}
+	}
+
+	/**
+	 * Summarise the column's values for each group's children on the parent row (null removes the aggregate). The aggregates
+	 * are maintained as rows are added, updated and removed - and are used when sorting, filtering and rendering parent rows.
+	 */
+	public void setAggregate(final Column column, final Aggregate aggregate) {
+		checkWidget();
+		gridModel.setAggregate(column, aggregate);
+	}
+	
+	/**
+	 * Summarise the column's values of all the visible rows in the footer row (null removes the aggregate). The footer is
+	 * maintained incrementally as rows are shown, hidden, added, updated and removed.
+	 */
+	public void setFooterAggregate(final Column column, final Aggregate aggregate) {
+		checkWidget();
+		gridModel.setFooterAggregate(column, aggregate);
+	}
+	
+	/**
+	 * The column's footer aggregate of the visible rows, or null if it has none.
+	 */
+	public Object getFooterValue(final Column column) {
+		checkWidget();
+		return gridModel.getFooterModel().getValue(column);
+	}
+	
+	/**
+	 * Index the distinct values of the column, with how many rows have each value - overall and amongst the rows passing the 
+	 * filters which don't depend on the column (see getFacetIndex). The index is maintained as rows are added, updated and 
+	 * removed and as filters change, so filter drop-downs needn't scan the rows.
+	 */
+	public void setFaceted(final Column column, final boolean faceted) {
+		checkWidget();
+		gridModel.setFaceted(column, faceted);
+	}
+	
+	/**
+	 * The index of the column's distinct values, or null if the column isn't faceted.
+	 */
+	public FacetIndex getFacetIndex(final Column column) {
+		checkWidget();
+		return gridModel.getFacetModel().getFacetIndex(column);
+	}
+	
+	/**
+	 * The aggregated value of the column for a parent element, or null if it has none.
+	 */
+	public Object getAggregateValue(final Column column, final T element) {
+		checkWidget();
+		final Row<T> row = gridModel.getRow(element);
+		return (row == null) ? null : gridModel.getAggregateModel().getValue(column, row);
+	}
+
 	public void addListener(final IGridListener<T> listener) {
 		checkWidget();
 		this.listeners.add(listener);
@@ -1140,6 +1441,32 @@ public class Grid<T> extends Composite {
 		this.listeners.remove(listener);
 	}
 
+	/**
+	 * Listen for positional changes to the visible rows (inserted, removed, moved and height changed).
+	 */
+	public void addRowDeltaListener(final IRowDeltaListener<T> listener) {
+		checkWidget();
+		gridModel.addRowDeltaListener(listener);
+	}
+
+	public void removeRowDeltaListener(final IRowDeltaListener<T> listener) {
+		checkWidget();
+		gridModel.removeRowDeltaListener(listener);
+	}
+
+	/**
+	 * Listen for the elements selected and de-selected (and anchor changes) rather than the whole selection.
+	 */
+	public void addSelectionDeltaListener(final ISelectionDeltaListener<T> listener) {
+		checkWidget();
+		gridModel.getSelectionModel().addSelectionDeltaListener(listener);
+	}
+
+	public void removeSelectionDeltaListener(final ISelectionDeltaListener<T> listener) {
+		checkWidget();
+		gridModel.getSelectionModel().removeSelectionDeltaListener(listener);
+	}
+
 	public void reveal(final T element) {
 		checkWidget();
 		final Column column = gridModel.getColumns().get(0);
@@ -1209,6 +1536,20 @@ public class Grid<T> extends Composite {
 		}
 	}
 
+	private class FreezeOrderListener extends MouseTrackAdapter {
+		@Override
+		public void mouseEnter(final MouseEvent e) {
+			mouseOver = true;
+			updateFrozenOrder();
+		}
+
+		@Override
+		public void mouseExit(final MouseEvent e) {
+			mouseOver = false;
+			updateFrozenOrder();
+		}
+	}
+
 	private class GridFocusListener extends FocusAdapter {
 		@Override
 		public void focusLost(final FocusEvent e) {
@@ -1237,6 +1578,7 @@ public class Grid<T> extends Composite {
 		@Override
 		public void selectionChanged() {
 			redraw();
+			updateFrozenOrder();
 
 			for (final IGridListener<T> listener : listeners) {
 				listener.selectionChanged(gridModel.getSelectionModel().getSelectedElements());
@@ -1274,6 +1616,61 @@ public class Grid<T> extends Composite {
 			}
 		}
 
+		/**
+		 * Only the contents of some cells have changed - so only those on screen are repainted.
+		 */
+		@Override
+		public void cellsUpdated(final Collection<Row<T>> rows, final Collection<Column> columns) {
+			if (isEventsSuppressed()) {
+				return;
+			}
+			
+			final Rectangle viewportArea = viewport.getViewportArea(gc);
+			final List<Column> pinnedColumns = gridModel.getPinnedColumns();
+			
+			for (final Row<T> row : rows) {
+				if (!viewport.isRowPartiallyVisible(row)) {
+					continue;
+				}
+				
+				final int y = viewport.getRowViewportY(gc, row);
+				if (y == -1) {
+					continue;
+				}
+				
+				final int height = getRowHeight(row);
+				
+				//
+				// Pinned columns aren't in the scrolling part of the viewport, so if any have changed, repaint the whole row.
+				//
+				boolean pinnedChanged = false;
+				for (final Column column : pinnedColumns) {
+					if (((columns == null) || columns.contains(column)) && gridRenderer.hasCellChanged(column, row)) {
+						pinnedChanged = true;
+					}
+				}
+				
+				if (pinnedChanged) {
+					redraw(0, y, viewportArea.x + viewportArea.width, height, false);
+					continue;
+				}
+				
+				//
+				// Otherwise only damage the on-screen cells which now look different to when they were last painted.
+				//
+				int x = viewportArea.x;
+				for (int columnIndex=viewport.getFirstColumnIndex(); columnIndex<viewport.getLastVisibleColumnIndex(); columnIndex++) {
+					final Column column = gridModel.getColumns().get(columnIndex);
+					
+					if (!pinnedColumns.contains(column) && ((columns == null) || columns.contains(column)) && gridRenderer.hasCellChanged(column, row)) {
+						redraw(x, y, viewport.getColumnWidth(x, column), height, false);
+					}
+					
+					x += column.getWidth() + gridModel.getStyleRegistry().getCellSpacingHorizontal();
+				}
+			}
+		}
+
 		@Override
 		public void elementsRemoved(Collection<T> elements) {
 			for (final IGridListener<T> listener : listeners) {
@@ -1360,5 +1757,16 @@ public class Grid<T> extends Composite {
 				listener.groupSelectorVisibilityChanged(visible);
 			}
 		}
+		
+		@Override
+		public void footerChanged() {
+			if (isEventsSuppressed()) {
+				return;
+			}
+			
+			final Rectangle viewportArea = viewport.getViewportArea(gc);
+			final int y = viewportArea.y + viewportArea.height;
+			redraw(0, y, getClientArea().width, getClientArea().height - y, false);
+		}
 	}
 }
@@ -188,7 +188,7 @@ public class GridKeyboardHandler<T> implements KeyListener {
 		//
 		final Row<T> row = gridModel.getRow(gridModel.getSelectionModel().getAnchorElement());
 		final List<Row<T>> rows = new ArrayList<>();
-		rows.addAll(gridModel.isParentRow(row) ? gridModel.getWholeGroup(row) : Collections.singletonList(row));
+		rows.addAll(gridModel.isParentRow(row) ? gridModel.getVisibleGroup(row) : Collections.singletonList(row));
 		gridModel.getSelectionModel().toggleRowSelections(rows);
 		
 	}
@@ -366,7 +366,7 @@ public class GridKeyboardHandler<T> implements KeyListener {
 			// Move the anchor up or down (if we're not already at the top or bottom of the grid).
 			//
 			final Row<T> anchorRow = gridModel.getRow(selectionModel.getAnchorElement());
-			final int rowIndex = gridModel.getRows().indexOf(anchorRow);
+			final int rowIndex = gridModel.indexOfRow(anchorRow);
 
 			if (((direction == SWT.ARROW_UP) && (rowIndex == 0)) || ((direction == SWT.ARROW_DOWN) && (rowIndex == (gridModel.getRows().size()-1)))) {
 				//
@@ -406,7 +406,7 @@ public class GridKeyboardHandler<T> implements KeyListener {
 			//
 			// Move the anchor left or right (if we're not already at the left or right edge of the grid).
 			//
-			final int columnIndex = columns.indexOf(selectionModel.getAnchorColumn());
+			final int columnIndex = (columns == gridModel.getColumns()) ? gridModel.indexOfColumn(selectionModel.getAnchorColumn()) : columns.indexOf(selectionModel.getAnchorColumn());
 
 			if (((direction == SWT.ARROW_LEFT) && (columnIndex == 0)) || ((direction == SWT.ARROW_RIGHT) && (columnIndex == (columns.size()-1)))) {
 				//
@@ -357,7 +357,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 			final Rectangle bounds = grid.getGridRenderer().getExpandImageBounds(gc, row);
 			
 			if (bounds.contains(mouseX,  mouseY)) {							
-				if (grid.getContentProvider().isCollapsed(row.getElement())) {
+				if (gridModel.getContentProvider().isCollapsed(row.getElement())) {
 					grid.expandGroups(Collections.singletonList(row.getElement()));
 					
 				} else {
@@ -417,7 +417,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 						gridModel.getSelectionModel().setSelectedColumns(Collections.singletonList(column));						
 					} else {
 						final List<Row<T>> rows = new ArrayList<>();
-						rows.addAll((gridModel.isParentRow(row) || (gridModel.getGroupSelectorColumn() == column)) ? gridModel.getWholeGroup(row) : Collections.singletonList(row));
+						rows.addAll((gridModel.isParentRow(row) || (gridModel.getGroupSelectorColumn() == column)) ? gridModel.getVisibleGroup(row) : Collections.singletonList(row));
 						gridModel.getSelectionModel().setSelectedRows(rows);
 					}
 				}
@@ -471,7 +471,7 @@ public class GridMouseHandler<T> extends MouseAdapter implements MouseMoveListen
 			// Get the rows group.
 			//
 			if (gridModel.isGroupRow(row)) {
-				final List<Row<T>> group = gridModel.getWholeGroup(row);
+				final List<Row<T>> group = gridModel.getVisibleGroup(row);
 				boolean selected = true;
 				for (final Row<T> member : group) {
 					if (!member.isSelected()) {
@@ -0,0 +1,37 @@
+package com.notlob.jgrid.listeners;
+
+/**
+ * Notified of each change to the visible rows by position - so a mirror of the grid's rows can be kept in sync without
+ * comparing whole lists.
+ *
+ * Each index is the position at the moment of the change, so applying the notifications in the order received to a copy of
+ * the visible elements keeps it identical to the grid's. Listeners must not change the grid.
+ */
+public interface IRowDeltaListener<T> {
+
+	/**
+	 * The element is now visible at the index specified.
+	 */
+	void rowInserted(final T element, final int index);
+
+	/**
+	 * The element at the index specified is no longer visible.
+	 */
+	void rowRemoved(final T element, final int index);
+
+	/**
+	 * The element has moved from one position to another (the toIndex is after the element was removed from fromIndex).
+	 */
+	void rowMoved(final T element, final int fromIndex, final int toIndex);
+
+	/**
+	 * The height of the element's row has changed.
+	 */
+	void rowHeightChanged(final T element, final int index, final int height);
+
+	/**
+	 * The rows have been re-arranged too much to describe (for example, re-sorted or cleared) - the visible elements should
+	 * be read again.
+	 */
+	void rowsReset();
+}
@@ -0,0 +1,24 @@
+package com.notlob.jgrid.listeners;
+
+import java.util.Collection;
+
+/**
+ * Notified of what has changed in the row selection - rather than being given the whole selection - so a consumer can be
+ * updated incrementally.
+ *
+ * Listeners must not change the grid.
+ */
+public interface ISelectionDeltaListener<T> {
+
+	/**
+	 * The elements have been selected and/or de-selected since the last notification. The anchor elements may be the same if
+	 * only the selection has changed.
+	 */
+	void selectionChanged(final Collection<T> addedElements, final Collection<T> removedElements, final T oldAnchorElement, final T newAnchorElement);
+
+	/**
+	 * The selection has changed too much to describe (for example, everything has been selected or the selection inverted) -
+	 * the selection should be read again.
+	 */
+	void selectionReset(final T oldAnchorElement, final T newAnchorElement);
+}
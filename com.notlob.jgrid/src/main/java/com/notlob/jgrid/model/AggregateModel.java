@@ -0,0 +1,354 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.notlob.jgrid.model.aggregation.Aggregate;
+import com.notlob.jgrid.model.aggregation.Aggregate.Accumulator;
+import com.notlob.jgrid.providers.IGridContentProvider;
+
+/**
+ * Maintains the aggregates of columns which declare one (see Column.setAggregate) on each group's parent row.
+ *
+ * Each parent row has an accumulator per aggregated column and each child row's contribution is remembered. So
+ * when a child is added, updated or removed only its own contribution is added to or taken from its parent - the other
+ * children are never re-visited. Every child of a group is included, whether or not it's filtered out.
+ *
+ * Parents whose aggregates have changed are recorded so the grid model can repaint them (and re-sort or re-filter them
+ * if an aggregated column is sorted or filtered on).
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class AggregateModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The columns which have an aggregate - the index of each is the index of its accumulator on a parent row. Each column's
+	// aggregate is kept from when they were last rebuilt, in case Column.setAggregate is called directly rather than through
+	// the grid.
+	private final List<Column> columns;
+	private final List<Aggregate> aggregates;
+
+	// The parents whose aggregates have changed since they were last taken.
+	private final Set<Row<T>> changedParents;
+
+	// Each parent row's accumulators and each aggregated child row's parent and the values (and weights) it contributed.
+	private final OrdinalMap<Accumulator[]> accumulators;
+	private final OrdinalMap<Row<T>> aggregateParents;
+	private final OrdinalMap<Object[]> aggregatedValues;
+
+	public AggregateModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.columns = new ArrayList<>();
+		this.aggregates = new ArrayList<>();
+		this.changedParents = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		this.accumulators = new OrdinalMap<>();
+		this.aggregateParents = new OrdinalMap<>();
+		this.aggregatedValues = new OrdinalMap<>();
+	}
+
+	public boolean isEnabled() {
+		return !columns.isEmpty();
+	}
+
+	/**
+	 * The columns which are aggregated.
+	 */
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * Returns true if the row is a parent row with an aggregate for the column.
+	 */
+	public boolean isAggregated(final Column column, final Row<T> row) {
+		return (accumulators.get(row) != null) && (column.getAggregate() != null) && columns.contains(column);
+	}
+
+	/**
+	 * The aggregated value of the column for the parent row, or null if it has none.
+	 */
+	public Object getValue(final Column column, final Row<T> row) {
+		final Accumulator[] rowAccumulators = accumulators.get(row);
+
+		if (rowAccumulators != null) {
+			final int index = columns.indexOf(column);
+
+			if (index != -1) {
+				return rowAccumulators[index].getValue();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns true if any aggregated column is sorted or filtered on - so a change to an aggregate can move, show or hide
+	 * the parent row.
+	 */
+	boolean affectsLayout() {
+		for (final Column column : columns) {
+			if (gridModel.getSortModel().dependsOn(column) || gridModel.getFilterModel().dependsOn(column)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns true if a change to the column's values can move, show or hide a parent row (through an aggregate of it).
+	 */
+	boolean affectsLayout(final Column changedColumn) {
+		for (int index=0; index<columns.size(); index++) {
+			final Column column = columns.get(index);
+
+			if ((column == changedColumn) || (aggregates.get(index).getWeightColumn() == changedColumn)) {
+				if (gridModel.getSortModel().dependsOn(column) || gridModel.getFilterModel().dependsOn(column)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Re-evaluate which columns are aggregated and rebuild every parent row's aggregates in a single pass over the rows.
+	 */
+	void rebuild() {
+		columns.clear();
+		aggregates.clear();
+
+		for (final Column column : gridModel.getAllColumns()) {
+			if (column.getAggregate() != null) {
+				columns.add(column);
+				aggregates.add(column.getAggregate());
+			}
+		}
+
+		rowsCleared();
+
+		if (!columns.isEmpty()) {
+			for (final Row<T> row : gridModel.getAllRows()) {
+				rowAdded(row);
+			}
+		}
+	}
+
+	/**
+	 * Called when a row has been added to the grid. If it's a parent, any of its children already in the grid are
+	 * aggregated, and if it's a child it's aggregated into its parent (if that's in the grid yet).
+	 */
+	void rowAdded(final Row<T> row) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final List<T> childElements = contentProvider.getChildren(row.getElement());
+
+		if (childElements != null) {
+			createAccumulators(row);
+
+			for (final T childElement : childElements) {
+				final Row<T> childRow = gridModel.getRow(childElement);
+
+				if ((childRow != null) && !isAttached(childRow)) {
+					attach(childRow, row);
+				}
+			}
+		}
+
+		final T parentElement = contentProvider.getParent(row.getElement());
+
+		if ((parentElement != null) && !isAttached(row)) {
+			final Row<T> parentRow = gridModel.getRow(parentElement);
+
+			if ((parentRow != null) && (accumulators.get(parentRow) != null)) {
+				attach(row, parentRow);
+			}
+		}
+	}
+
+	/**
+	 * Called when a row's element has been updated. Only the row's own contribution to its parent is re-evaluated - unless
+	 * it has moved to another group, or become (or stopped being) a parent.
+	 */
+	void rowUpdated(final Row<T> row) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final boolean parent = (contentProvider.getChildren(row.getElement()) != null);
+
+		if (parent && (accumulators.get(row) == null)) {
+			rowAdded(row);
+			return;
+
+		} else if (!parent && (accumulators.get(row) != null)) {
+			//
+			// The row has lost its children - this is rare, so look for the rows which were aggregated into it.
+			//
+			accumulators.remove(row);
+
+			for (final Row<T> other : gridModel.getAllRows()) {
+				if (aggregateParents.get(other) == row) {
+					setAggregated(other, null, null);
+				}
+			}
+		}
+
+		final T parentElement = contentProvider.getParent(row.getElement());
+		final Row<T> parentRow = (parentElement == null) ? null : gridModel.getRow(parentElement);
+		final Row<T> oldParentRow = isAttached(row) ? aggregateParents.get(row) : null;
+
+		if (parentRow != oldParentRow) {
+			if (oldParentRow != null) {
+				detach(row);
+			}
+
+			if ((parentRow != null) && (accumulators.get(parentRow) != null)) {
+				attach(row, parentRow);
+			}
+
+		} else if (oldParentRow != null) {
+			final Object[] oldValues = aggregatedValues.get(row);
+			final Object[] newValues = getValues(row);
+
+			if (!isEqual(oldValues, newValues)) {
+				final Accumulator[] parentAccumulators = accumulators.get(oldParentRow);
+
+				for (int index=0; index<parentAccumulators.length; index++) {
+					if (!Objects.equals(oldValues[index * 2], newValues[index * 2]) || !Objects.equals(oldValues[(index * 2) + 1], newValues[(index * 2) + 1])) {
+						parentAccumulators[index].remove(oldValues[index * 2], oldValues[(index * 2) + 1]);
+						parentAccumulators[index].add(newValues[index * 2], newValues[(index * 2) + 1]);
+					}
+				}
+
+				aggregatedValues.put(row, newValues);
+				changedParents.add(oldParentRow);
+			}
+		}
+	}
+
+	/**
+	 * Called when a row has been removed from the grid.
+	 */
+	void rowRemoved(final Row<T> row) {
+		if (isAttached(row)) {
+			detach(row);
+		}
+
+		//
+		// Any children left behind will see the parent has no accumulators and treat themselves as un-aggregated.
+		//
+		accumulators.remove(row);
+		setAggregated(row, null, null);
+		changedParents.remove(row);
+	}
+
+	void rowsCleared() {
+		changedParents.clear();
+		accumulators.clear();
+		aggregateParents.clear();
+		aggregatedValues.clear();
+	}
+
+	/**
+	 * The parents whose aggregates have changed since this was last called.
+	 */
+	Collection<Row<T>> takeChangedParents() {
+		if (changedParents.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		final List<Row<T>> parents = new ArrayList<>(changedParents);
+		changedParents.clear();
+		return parents;
+	}
+
+	private void createAccumulators(final Row<T> row) {
+		final Accumulator[] rowAccumulators = new Accumulator[columns.size()];
+
+		for (int index=0; index<rowAccumulators.length; index++) {
+			rowAccumulators[index] = aggregates.get(index).createAccumulator();
+		}
+
+		accumulators.put(row, rowAccumulators);
+		changedParents.add(row);
+	}
+
+	/**
+	 * A child is only aggregated if its parent still has accumulators (they're dropped when the parent is removed).
+	 */
+	private boolean isAttached(final Row<T> row) {
+		final Row<T> parentRow = aggregateParents.get(row);
+		return (parentRow != null) && (accumulators.get(parentRow) != null);
+	}
+
+	private void attach(final Row<T> childRow, final Row<T> parentRow) {
+		final Object[] values = getValues(childRow);
+		final Accumulator[] parentAccumulators = accumulators.get(parentRow);
+
+		for (int index=0; index<parentAccumulators.length; index++) {
+			parentAccumulators[index].add(values[index * 2], values[(index * 2) + 1]);
+		}
+
+		setAggregated(childRow, parentRow, values);
+		changedParents.add(parentRow);
+	}
+
+	private void detach(final Row<T> childRow) {
+		final Row<T> parentRow = aggregateParents.get(childRow);
+		final Object[] values = aggregatedValues.get(childRow);
+		final Accumulator[] parentAccumulators = accumulators.get(parentRow);
+
+		for (int index=0; index<parentAccumulators.length; index++) {
+			parentAccumulators[index].remove(values[index * 2], values[(index * 2) + 1]);
+		}
+
+		setAggregated(childRow, null, null);
+		changedParents.add(parentRow);
+	}
+
+	private void setAggregated(final Row<T> childRow, final Row<T> parentRow, final Object[] values) {
+		aggregateParents.put(childRow, parentRow);
+		aggregatedValues.put(childRow, values);
+	}
+
+	/**
+	 * The row's value and weight for each aggregated column (in pairs).
+	 */
+	private Object[] getValues(final Row<T> row) {
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final Object[] values = new Object[columns.size() * 2];
+
+		for (int index=0; index<columns.size(); index++) {
+			final Column column = columns.get(index);
+			final Column weightColumn = aggregates.get(index).getWeightColumn();
+			values[index * 2] = contentProvider.getValue(column, row.getElement());
+			values[(index * 2) + 1] = (weightColumn == null) ? null : contentProvider.getValue(weightColumn, row.getElement());
+		}
+
+		return values;
+	}
+
+	private static boolean isEqual(final Object[] values1, final Object[] values2) {
+		for (int index=0; index<values1.length; index++) {
+			if (!Objects.equals(values1[index], values2[index])) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
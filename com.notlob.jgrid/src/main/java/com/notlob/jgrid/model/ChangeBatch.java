@@ -0,0 +1,128 @@
+package com.notlob.jgrid.model;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accumulates the elements added, updated and removed during a batch (see GridModel.beginBatch) so only their net change
+ * is applied when the batch is committed.
+ *
+ * Only the net change is kept - an element added then removed in the same batch is dropped, an element removed then added
+ * again is an update, and an element updated many times is updated once. Where an update stands for a new instance (it was
+ * re-added or replaced - see GridModel.replaceElements) the instance is swapped into the row when the batch is committed.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class ChangeBatch<T> {
+
+	private final Set<T> addedElements;
+	private final Set<T> updatedElements;
+	private final Set<T> removedElements;
+
+	// The updated elements whose latest instance must be swapped into their row - by the element.
+	private final Map<T, T> replacedElements;
+
+	// The columns which have changed in the updated elements - null if any update didn't say.
+	private Set<Column> changedColumns;
+
+	public ChangeBatch() {
+		addedElements = new LinkedHashSet<>();
+		updatedElements = new LinkedHashSet<>();
+		removedElements = new LinkedHashSet<>();
+		replacedElements = new LinkedHashMap<>();
+		changedColumns = new LinkedHashSet<>();
+	}
+
+	public void elementsAdded(final Collection<T> elements) {
+		for (final T element : elements) {
+			if (removedElements.remove(element)) {
+				updatedElements.add(element);
+				replacedElements.put(element, element);
+				changedColumns = null;
+
+			} else {
+				addedElements.add(element);
+			}
+		}
+	}
+
+	/**
+	 * Record the update of elements. The changedColumns can be null if the caller doesn't know which have changed.
+	 */
+	public void elementsUpdated(final Collection<T> elements, final Collection<Column> changedColumns) {
+		for (final T element : elements) {
+			if (!addedElements.contains(element) && !removedElements.contains(element)) {
+				updatedElements.add(element);
+			}
+		}
+
+		if (changedColumns == null) {
+			this.changedColumns = null;
+
+		} else if (this.changedColumns != null) {
+			this.changedColumns.addAll(changedColumns);
+		}
+	}
+
+	/**
+	 * Record the replacement of elements with new instances. An element still to be added is simply replaced, and one 
+	 * which is to be removed is left alone.
+	 */
+	public void elementsReplaced(final Collection<T> elements) {
+		for (final T element : elements) {
+			if (addedElements.remove(element)) {
+				addedElements.add(element);
+
+			} else if (!removedElements.contains(element)) {
+				updatedElements.add(element);
+				replacedElements.put(element, element);
+				changedColumns = null;
+			}
+		}
+	}
+
+	public void elementsRemoved(final Collection<T> elements) {
+		for (final T element : elements) {
+			if (!addedElements.remove(element)) {
+				updatedElements.remove(element);
+				replacedElements.remove(element);
+				removedElements.add(element);
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return addedElements.isEmpty() && updatedElements.isEmpty() && removedElements.isEmpty();
+	}
+
+	public Set<T> getAddedElements() {
+		return addedElements;
+	}
+
+	public Set<T> getUpdatedElements() {
+		return updatedElements;
+	}
+
+	public Set<T> getRemovedElements() {
+		return removedElements;
+	}
+
+	/**
+	 * The latest instances of the updated elements which must be swapped into their rows.
+	 */
+	public Collection<T> getReplacedElements() {
+		return replacedElements.values();
+	}
+
+	/**
+	 * The columns changed by all of the updates, or null if not known.
+	 */
+	public Set<Column> getChangedColumns() {
+		return changedColumns;
+	}
+}
@@ -10,6 +10,7 @@ import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.GC;
 
 import com.notlob.jgrid.Grid;
+import com.notlob.jgrid.model.aggregation.Aggregate;
 import com.notlob.jgrid.styles.AlignmentStyle;
 
 @SuppressWarnings("rawtypes")
@@ -25,6 +26,10 @@ public class Column {
 	private boolean pinned;
 	private boolean wrap;
 	private boolean selected;
+	private int columnIndex = -1; // The position in the visible columns - so positions can be found without a list scan.
+	private Aggregate aggregate; // How the values of a group's children are summarised on the parent row.
+	private Aggregate footerAggregate; // How the values of all the visible rows are summarised in the footer row.
+	private boolean faceted; // Whether the distinct values of the column are indexed (see FacetIndex).
 	private AlignmentStyle textAlignment;
 	private AlignmentStyle imageAlignment;
 
@@ -142,6 +147,51 @@ public class Column {
 		this.selected = selected;
 	}
 	
+	public Aggregate getAggregate() {
+		return aggregate;
+	}
+	
+	/**
+	 * Summarise the values of each group's children on the parent row. Once the column has been added to a grid, use 
+	 * Grid.setAggregate so the aggregates are rebuilt.
+	 */
+	public void setAggregate(final Aggregate aggregate) {
+		this.aggregate = aggregate;
+	}
+	
+	public Aggregate getFooterAggregate() {
+		return footerAggregate;
+	}
+	
+	/**
+	 * Summarise the values of all the visible rows in the footer row. Once the column has been added to a grid, use 
+	 * Grid.setFooterAggregate so the footer is rebuilt.
+	 */
+	public void setFooterAggregate(final Aggregate footerAggregate) {
+		this.footerAggregate = footerAggregate;
+	}
+	
+	public boolean isFaceted() {
+		return faceted;
+	}
+	
+	/**
+	 * Index the distinct values of the column (see FacetIndex). Once the column has been added to a grid, use Grid.setFaceted
+	 * so the index is built.
+	 */
+	public void setFaceted(final boolean faceted) {
+		this.faceted = faceted;
+	}
+	
+	public int getColumnIndex() {
+		return columnIndex;
+	}
+	
+	// Intentionally package protected - the grid model maintains it.
+	void setColumnIndex(final int columnIndex) {
+		this.columnIndex = columnIndex;
+	}
+	
 	public boolean isPinned() {
 		return pinned;
 	}
@@ -114,6 +114,69 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 		return compareElements(row1.getElement(), row2.getElement(), REASON_SUFFIX__NON_GROUP_ROWS, row1, row2);
 	}
 
+	/**
+	 * Compare two top-level entries - each being either a group (the element is the group's parent element) or an ungrouped 
+	 * row. This follows the same rules as compare but the caller has already established which rows are groups.
+	 */
+	int compareTopLevel(final Row<T> row1, final T element1, final boolean group1, final Row<T> row2, final T element2, final boolean group2) {
+		if (group1 && !group2) {
+			switch (groupMixType) {
+			case SORT__GROUPS_ABOVE_NON_GROUPS:
+				return logResult(-1, row1, row2, REASON__ONE_GROUP_ONE_NONE_GROUP);
+				
+			case SORT__NON_GROUPS_ABOVE_GROUPS:
+				return logResult(1, row1, row2, REASON__ONE_GROUP_ONE_NONE_GROUP);
+				
+			case SORT__NON_GROUPS_WITH_GROUP_PARENTS:
+				return compareElements(element1, element2, REASON_SUFFIX__MIX_GROUP_WITH_NONE_GROUP, row1, row2);
+			}
+
+		} else if (!group1 && group2) {
+			switch (groupMixType) {
+			case SORT__GROUPS_ABOVE_NON_GROUPS:
+				return logResult(1, row1, row2, REASON__ONE_NONE_GROUP_ONE_GROUP);
+				
+			case SORT__NON_GROUPS_ABOVE_GROUPS:
+				return logResult(-1, row1, row2, REASON__ONE_NONE_GROUP_ONE_GROUP);
+				
+			case SORT__NON_GROUPS_WITH_GROUP_PARENTS:
+				return compareElements(element1, element2, REASON_SUFFIX__MIX_NONE_GROUP_WITH_GROUP, row1, row2);
+			}
+		}
+		
+		return compareElements(element1, element2, group1 ? REASON_SUFFIX__DIFFERENT_GROUPS : REASON_SUFFIX__NON_GROUP_ROWS, row1, row2);
+	}
+
+	/**
+	 * Returns true if the elements have equal values for the first keyCount columns of the specification.
+	 */
+	@SuppressWarnings("unchecked")
+	boolean isEqual(final T element1, final T element2, final SortSpecification specification, final int keyCount) {
+		for (int index=0; index<keyCount; index++) {
+			final Column column = specification.getColumn(index);
+			
+			if (column.getComparator().compare(getValue(column, element1), getValue(column, element2)) != 0) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Compare two rows known not to be in any group. Used by the SortModel when the grid has no groups at all.
+	 */
+	int compareUngrouped(final Row<T> row1, final Row<T> row2) {
+		return compareElements(row1.getElement(), row2.getElement(), REASON_SUFFIX__NON_GROUP_ROWS, row1, row2);
+	}
+
+	/**
+	 * Compare two children of the same group. Used by the SortModel once it has already grouped the rows.
+	 */
+	int compareSiblings(final Row<T> row1, final Row<T> row2) {
+		return compareElements(row1.getElement(), row2.getElement(), REASON_SUFFIX__SAME_GROUP, row1, row2);
+	}
+
 	/**
 	 * Return true if row1 is a parent of row2.
 	 */
@@ -123,10 +186,18 @@ public class DefaultRowComparator<T> implements Comparator<Row<T>> {
 
 	/**
 	 * Protect against comparisons between parent rows (that don't have a field for the sorted column)
-	 * and child rows.
+	 * and child rows. Parent rows use the column's aggregate if it has one.
 	 */
 	protected Object getValue(final Column column, final T element) {
-		if ((gridModel.getGroupRenderStyle() == GroupRenderStyle.INLINE) && gridModel.isParentElement(element) && !gridModel.getGroupByColumns().contains(column)) {
+		if (column.getAggregate() != null) {
+			final Row<T> row = gridModel.getRow(element);
+			
+			if ((row != null) && gridModel.getAggregateModel().isAggregated(column, row)) {
+				return gridModel.getAggregateModel().getValue(column, row);
+			}
+		}
+		
+		if ((gridModel.getGroupRenderStyle() == GroupRenderStyle.INLINE) && gridModel.getSortModel().hasGroups() && gridModel.isParentElement(element) && !gridModel.getGroupByColumns().contains(column)) {
 			return null;
 		}
 
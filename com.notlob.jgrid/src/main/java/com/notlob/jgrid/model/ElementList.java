@@ -0,0 +1,30 @@
+package com.notlob.jgrid.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A read-only, live view of the elements of a list of rows - nothing is copied. Because the view is live, the grid must not
+ * be changed while iterating over it.
+ *
+ * @author Stef
+ */
+public class ElementList<T> extends AbstractList<T> implements RandomAccess {
+
+	private final List<Row<T>> rows;
+
+	public ElementList(final List<Row<T>> rows) {
+		this.rows = rows;
+	}
+
+	@Override
+	public T get(final int index) {
+		return rows.get(index).getElement();
+	}
+
+	@Override
+	public int size() {
+		return rows.size();
+	}
+}
@@ -0,0 +1,117 @@
+package com.notlob.jgrid.model;
+
+/**
+ * Rows keyed by the element itself, using its hashCode and equals. This is the default index.
+ *
+ * The element is the row's own, so only each key's hash is held (to avoid re-hashing elements when the table grows).
+ *
+ * @author Stef
+ */
+public class ElementRowIndex<T> extends RowIndex<T> {
+
+	private int[] hashes;
+
+	public ElementRowIndex() {
+		super(INITIAL_CAPACITY);
+		this.hashes = new int[INITIAL_CAPACITY];
+	}
+
+	@Override
+	protected Row<T> getKeyed(final T element) {
+		final int slot = slotOf(element);
+		return slot == -1 ? null : rows[slot];
+	}
+
+	@Override
+	protected boolean putKeyed(final Row<T> row) {
+		final T element = row.getElement();
+
+		if (element == null) {
+			return false;
+		}
+
+		final int slot = slotOf(element);
+
+		if (slot != -1) {
+			return rows[slot] == row;
+		}
+
+		ensureCapacity();
+		insert(mix(element.hashCode()), row);
+		added();
+		return true;
+	}
+
+	@Override
+	protected Row<T> removeKeyed(final T element) {
+		final int slot = slotOf(element);
+		return slot == -1 ? null : removeSlot(slot);
+	}
+
+	/**
+	 * The row array (not the hash array) indicates whether a slot is in use.
+	 */
+	private int slotOf(final T element) {
+		if (element == null) {
+			return -1;
+		}
+
+		final int hash = mix(element.hashCode());
+		int slot = hash & mask;
+		while (rows[slot] != null) {
+			if ((hashes[slot] == hash) && element.equals(rows[slot].getElement())) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	private void insert(final int hash, final Row<T> row) {
+		int slot = hash & mask;
+		while (rows[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+
+		hashes[slot] = hash;
+		rows[slot] = row;
+	}
+
+	@Override
+	protected void allocateKeys(final int capacity) {
+		hashes = new int[capacity];
+	}
+
+	@Override
+	protected int hashAt(final int slot) {
+		return hashes[slot];
+	}
+
+	@Override
+	protected void moveKey(final int fromSlot, final int toSlot) {
+		hashes[toSlot] = hashes[fromSlot];
+	}
+
+	@Override
+	protected void clearKey(final int slot) {
+		hashes[slot] = 0;
+	}
+
+	@Override
+	protected Object getKeys() {
+		return hashes;
+	}
+
+	@Override
+	protected void rehash(final Row<T>[] oldRows, final Object oldKeys) {
+		final int[] oldHashes = (int[]) oldKeys;
+
+		for (int slot=0; slot<oldRows.length; slot++) {
+			if (oldRows[slot] != null) {
+				insert(oldHashes[slot], oldRows[slot]);
+			}
+		}
+	}
+}
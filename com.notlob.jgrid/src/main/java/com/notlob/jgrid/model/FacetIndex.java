@@ -0,0 +1,224 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * The distinct values of a faceted column (see Grid.setFaceted), each with how many rows have it - both overall and amongst
+ * the rows which pass the other filters (those which don't depend on the column). This is what a filter drop-down needs
+ * without visiting the rows.
+ *
+ * The values are kept sorted by the column's comparator and by their text (case-insensitive), so they can be iterated in
+ * order or looked up by a prefix of their text.
+ *
+ * The index is maintained by the grid - it must only be read.
+ *
+ * @author Stef
+ */
+public class FacetIndex {
+
+	private final Column column;
+
+	// Each distinct value's facet.
+	private final Map<Object, Facet> facetsByValue;
+
+	// The facets sorted by the column's comparator (re-sorted if the comparator is changed).
+	private Comparator<Object> comparator;
+	private NavigableSet<Facet> sortedFacets;
+
+	// The facets sorted by their lower-case text.
+	private final NavigableSet<Facet> facetsByText;
+
+	// Breaks ties between facets the comparators consider equal, so each distinct value has its own place.
+	private int nextSequence;
+
+	FacetIndex(final Column column) {
+		this.column = column;
+		this.facetsByValue = new HashMap<>();
+		this.facetsByText = new TreeSet<>(new Comparator<Facet>() {
+			@Override
+			public int compare(final Facet facet1, final Facet facet2) {
+				final int result = facet1.key.compareTo(facet2.key);
+				return (result == 0) ? Integer.compare(facet1.sequence, facet2.sequence) : result;
+			}
+		});
+
+		sortFacets();
+	}
+
+	public Column getColumn() {
+		return column;
+	}
+
+	/**
+	 * How many distinct values the column has.
+	 */
+	public int size() {
+		return facetsByValue.size();
+	}
+
+	/**
+	 * The facet of the value, or null if no row has it.
+	 */
+	public Facet getFacet(final Object value) {
+		return facetsByValue.get(value);
+	}
+
+	/**
+	 * All the facets in the column's sort order.
+	 */
+	public NavigableSet<Facet> getFacets() {
+		if (comparator != column.getComparator()) {
+			sortFacets();
+		}
+
+		return Collections.unmodifiableNavigableSet(sortedFacets);
+	}
+
+	/**
+	 * The facets whose text starts with the prefix (ignoring case), in the order of their text.
+	 */
+	public NavigableSet<Facet> getFacets(final String prefix) {
+		final String key = prefix.toLowerCase();
+		return Collections.unmodifiableNavigableSet(facetsByText.subSet(new Facet(key, -1), true, new Facet(key + Character.MAX_VALUE, -1), false));
+	}
+
+	/**
+	 * A row with the value has been indexed - filtered is whether the row passes the other filters.
+	 */
+	void add(final Object value, final boolean filtered) {
+		Facet facet = facetsByValue.get(value);
+
+		if (facet == null) {
+			facet = new Facet(value, nextSequence++);
+			facetsByValue.put(value, facet);
+			sortedFacets.add(facet);
+			facetsByText.add(facet);
+		}
+
+		facet.count++;
+
+		if (filtered) {
+			facet.filteredCount++;
+		}
+	}
+
+	/**
+	 * A row with the value has left the index. The value's facet is discarded when no row has it.
+	 */
+	void remove(final Object value, final boolean filtered) {
+		final Facet facet = facetsByValue.get(value);
+
+		if (facet == null) {
+			return;
+		}
+
+		facet.count--;
+
+		if (filtered) {
+			facet.filteredCount--;
+		}
+
+		if (facet.count == 0) {
+			facetsByValue.remove(value);
+			sortedFacets.remove(facet);
+			facetsByText.remove(facet);
+		}
+	}
+
+	/**
+	 * A row with the value now passes (or no longer passes) the other filters.
+	 */
+	void filteredChanged(final Object value, final boolean filtered) {
+		final Facet facet = facetsByValue.get(value);
+
+		if (facet != null) {
+			facet.filteredCount += filtered ? 1 : -1;
+		}
+	}
+
+	void clear() {
+		facetsByValue.clear();
+		sortedFacets.clear();
+		facetsByText.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void sortFacets() {
+		comparator = column.getComparator();
+		final NavigableSet<Facet> facets = new TreeSet<>(new Comparator<Facet>() {
+			@Override
+			public int compare(final Facet facet1, final Facet facet2) {
+				final int result = comparator.compare(facet1.value, facet2.value);
+				return (result == 0) ? Integer.compare(facet1.sequence, facet2.sequence) : result;
+			}
+		});
+
+		if (sortedFacets != null) {
+			facets.addAll(new ArrayList<>(facetsByValue.values()));
+		}
+
+		sortedFacets = facets;
+	}
+
+	/**
+	 * A distinct value of the column and how many rows have it.
+	 */
+	public static class Facet {
+		private final Object value;
+		private final String text;
+		private final String key; // The lower-case text.
+		private final int sequence;
+		private int count;
+		private int filteredCount;
+
+		private Facet(final Object value, final int sequence) {
+			this.value = value;
+			this.text = (value == null) ? "" : String.valueOf(value);
+			this.key = text.toLowerCase();
+			this.sequence = sequence;
+		}
+
+		/**
+		 * A probe for looking up facets by their lower-case text.
+		 */
+		private Facet(final String key, final int sequence) {
+			this.value = null;
+			this.text = key;
+			this.key = key;
+			this.sequence = sequence;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * How many rows have the value.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * How many rows which pass the other filters (those which don't depend on the column) have the value.
+		 */
+		public int getFilteredCount() {
+			return filteredCount;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (%s/%s)", text, filteredCount, count);
+		}
+	}
+}
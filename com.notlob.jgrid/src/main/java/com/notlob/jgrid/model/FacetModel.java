@@ -0,0 +1,403 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.notlob.jgrid.model.filtering.CollapsedGroupFilter;
+import com.notlob.jgrid.model.filtering.Filter;
+import com.notlob.jgrid.model.filtering.FilterModel;
+
+/**
+ * Maintains the FacetIndex of each faceted column (see Grid.setFaceted) - the distinct values of the column over all the
+ * rows (shown or not), with how many rows have each value overall and how many of those pass the other filters.
+ *
+ * The other filters of a column are those which hide rows but don't depend on the column (see Filter.dependsOn), so a
+ * column's filter drop-down can show what choosing each value would leave. The collapsed group filter isn't one of them.
+ *
+ * The value each row contributed to each index and whether it passed the column's other filters are remembered, so as rows
+ * are added, removed and updated only their own contribution changes. When filters are added or removed the rows which
+ * passed are only tested against the new filters, and the rows which failed are only re-tested if a filter was removed.
+ * The parent rows of the groups built by the grid (see GroupModel) aren't included.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class FacetModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The faceted columns - the index of each is the index of its FacetIndex and of a row's value.
+	private final List<Column> columns;
+	private final List<FacetIndex> indexes;
+
+	// The filters which hide rows (other than the collapsed group filter) and the version of each when last applied.
+	private List<Filter<T>> filters;
+	private int[] versions;
+
+	// For each column, which of the filters are its other filters.
+	private boolean[][] otherFilters;
+
+	// Each filter's result for the row being evaluated - 0 not yet evaluated, 1 matches, 2 doesn't.
+	private byte[] results;
+
+	// The value each indexed row contributed to each index and whether it passed the column's other filters (in pairs).
+	private final OrdinalMap<Object[]> rowValues;
+
+	public FacetModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.columns = new ArrayList<>();
+		this.indexes = new ArrayList<>();
+		this.filters = Collections.emptyList();
+		this.versions = new int[0];
+		this.otherFilters = new boolean[0][];
+		this.results = new byte[0];
+		this.rowValues = new OrdinalMap<>();
+	}
+
+	public boolean isEnabled() {
+		return !columns.isEmpty();
+	}
+
+	/**
+	 * The column's index, or null if it isn't faceted.
+	 */
+	public FacetIndex getFacetIndex(final Column column) {
+		final int index = columns.indexOf(column);
+		return (index == -1) ? null : indexes.get(index);
+	}
+
+	/**
+	 * Re-evaluate which columns are faceted and rebuild their indexes in a single pass over the rows.
+	 */
+	void rebuild() {
+		final Map<Column, FacetIndex> existingIndexes = new IdentityHashMap<>();
+
+		for (int index=0; index<columns.size(); index++) {
+			existingIndexes.put(columns.get(index), indexes.get(index));
+		}
+
+		columns.clear();
+		indexes.clear();
+
+		for (final Column column : gridModel.getAllColumns()) {
+			if (column.isFaceted()) {
+				//
+				// Keep the existing instance, a client may be holding it.
+				//
+				final FacetIndex facetIndex = existingIndexes.containsKey(column) ? existingIndexes.get(column) : new FacetIndex(column);
+				facetIndex.clear();
+				columns.add(column);
+				indexes.add(facetIndex);
+			}
+		}
+
+		rowValues.clear();
+		updateFilters();
+
+		if (!columns.isEmpty()) {
+			for (final Row<T> row : gridModel.getAllRows()) {
+				refresh(row);
+			}
+		}
+	}
+
+	/**
+	 * Called when a row has been added, removed or its element updated. Its relatives are also re-evaluated if the other
+	 * filters could pass them because of it.
+	 */
+	void rowChanged(final Row<T> row) {
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		refresh(row);
+
+		if (filters.isEmpty()) {
+			return;
+		}
+
+		final T parentElement = gridModel.getContentProvider().getParent(row.getElement());
+		final Row<T> parentRow = (parentElement == null) ? null : gridModel.getRow(parentElement);
+
+		if ((parentElement != null) && (parentRow == null)) {
+			//
+			// The parent has already gone, along with the relatives.
+			//
+			return;
+		}
+
+		if (isShowingWholeGroups() && gridModel.isGroupRow(row)) {
+			for (final Row<T> relative : gridModel.getWholeGroup(row)) {
+				if (relative != row) {
+					refresh(relative);
+				}
+			}
+
+		} else if (parentRow != null) {
+			refresh(parentRow);
+		}
+	}
+
+	/**
+	 * Start again with empty indexes - the rows have gone.
+	 */
+	void rowsCleared() {
+		rowValues.clear();
+
+		for (final FacetIndex facetIndex : indexes) {
+			facetIndex.clear();
+		}
+	}
+
+	/**
+	 * Called by the filter model when filters have been added or removed. Only the rows whose result could have changed are
+	 * re-evaluated.
+	 */
+	public void filtersChanged() {
+		final List<Filter<T>> previousFilters = filters;
+		final int[] previousVersions = versions;
+		updateFilters();
+
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		//
+		// A filter whose criteria have changed counts as removed and added.
+		//
+		final boolean[] added = new boolean[filters.size()];
+		final List<Filter<T>> removed = new ArrayList<>();
+
+		for (int index=0; index<previousFilters.size(); index++) {
+			final Filter<T> filter = previousFilters.get(index);
+			final int newIndex = indexOf(filters, filter);
+
+			if ((newIndex == -1) || (versions[newIndex] != previousVersions[index])) {
+				removed.add(filter);
+			}
+		}
+
+		for (int index=0; index<filters.size(); index++) {
+			final int previousIndex = indexOf(previousFilters, filters.get(index));
+			added[index] = (previousIndex == -1) || (previousVersions[previousIndex] != versions[index]);
+		}
+
+		//
+		// Work out which columns are affected and the new filters each passing row must also match.
+		//
+		final boolean[][] addedFilters = new boolean[columns.size()][];
+		final boolean[] anyAdded = new boolean[columns.size()];
+		final boolean[] anyRemoved = new boolean[columns.size()];
+		boolean anyAffected = false;
+
+		for (int index=0; index<columns.size(); index++) {
+			final Column column = columns.get(index);
+			addedFilters[index] = new boolean[filters.size()];
+
+			for (int filterIndex=0; filterIndex<filters.size(); filterIndex++) {
+				addedFilters[index][filterIndex] = added[filterIndex] && otherFilters[index][filterIndex];
+				anyAdded[index] |= addedFilters[index][filterIndex];
+			}
+
+			for (final Filter<T> filter : removed) {
+				anyRemoved[index] |= !filter.dependsOn(column);
+			}
+
+			anyAffected |= anyAdded[index] || anyRemoved[index];
+		}
+
+		if (!anyAffected) {
+			return;
+		}
+
+		for (final Row<T> row : gridModel.getAllRows()) {
+			final Object[] values = rowValues.get(row);
+
+			if (values == null) {
+				continue;
+			}
+
+			Arrays.fill(results, (byte) 0);
+
+			for (int index=0; index<columns.size(); index++) {
+				final boolean passed = (Boolean) values[(index * 2) + 1];
+				final boolean passes;
+
+				if (passed) {
+					//
+					// Removing filters can't fail a row - it only needs to match the new ones.
+					//
+					passes = !anyAdded[index] || matches(row, addedFilters[index]);
+
+				} else {
+					//
+					// Adding filters can't pass a row - it's only re-tested if something was removed.
+					//
+					passes = anyRemoved[index] && matches(row, otherFilters[index]);
+				}
+
+				if (passes != passed) {
+					values[(index * 2) + 1] = passes;
+					indexes.get(index).filteredChanged(values[index * 2], passes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called by the filter model when the filters have been re-applied (as something outside of the grid's knowledge may have
+	 * changed). Every row is re-tested against its other filters.
+	 */
+	public void refilter() {
+		updateFilters();
+
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		for (final Row<T> row : gridModel.getAllRows()) {
+			final Object[] values = rowValues.get(row);
+
+			if (values == null) {
+				continue;
+			}
+
+			Arrays.fill(results, (byte) 0);
+
+			for (int index=0; index<columns.size(); index++) {
+				final boolean passed = (Boolean) values[(index * 2) + 1];
+				final boolean passes = matches(row, otherFilters[index]);
+
+				if (passes != passed) {
+					values[(index * 2) + 1] = passes;
+					indexes.get(index).filteredChanged(values[index * 2], passes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Re-evaluate the row's contribution to each index - taking away what it contributed and adding its current value, if
+	 * the row is still in the grid. Nothing changes if both are the same.
+	 */
+	private void refresh(final Row<T> row) {
+		final Object[] oldValues = rowValues.get(row);
+		final Object[] newValues = ((gridModel.getRow(row.getElement()) == row) && !isExcluded(row)) ? getValues(row) : null;
+
+		for (int index=0; index<columns.size(); index++) {
+			final FacetIndex facetIndex = indexes.get(index);
+
+			if ((oldValues != null) && (newValues != null) && Objects.equals(oldValues[index * 2], newValues[index * 2])) {
+				if (!oldValues[(index * 2) + 1].equals(newValues[(index * 2) + 1])) {
+					facetIndex.filteredChanged(newValues[index * 2], (Boolean) newValues[(index * 2) + 1]);
+				}
+
+				continue;
+			}
+
+			if (oldValues != null) {
+				facetIndex.remove(oldValues[index * 2], (Boolean) oldValues[(index * 2) + 1]);
+			}
+
+			if (newValues != null) {
+				facetIndex.add(newValues[index * 2], (Boolean) newValues[(index * 2) + 1]);
+			}
+		}
+
+		rowValues.put(row, newValues);
+	}
+
+	/**
+	 * The row's value of each faceted column and whether it passes the column's other filters (in pairs).
+	 */
+	private Object[] getValues(final Row<T> row) {
+		final Object[] values = new Object[columns.size() * 2];
+		Arrays.fill(results, (byte) 0);
+
+		for (int index=0; index<columns.size(); index++) {
+			values[index * 2] = gridModel.getContentProvider().getValue(columns.get(index), row.getElement());
+			values[(index * 2) + 1] = matches(row, otherFilters[index]);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Returns true if the row matches each of the flagged filters. Each filter is only evaluated once per row, however many
+	 * columns it's another filter of.
+	 */
+	private boolean matches(final Row<T> row, final boolean[] flaggedFilters) {
+		final FilterModel<T> filterModel = gridModel.getFilterModel();
+
+		for (int index=0; index<flaggedFilters.length; index++) {
+			if (flaggedFilters[index]) {
+				if (results[index] == 0) {
+					results[index] = filterModel.matches(filters.get(index), row) ? (byte) 1 : (byte) 2;
+				}
+
+				if (results[index] == 2) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Take a copy of the filters which hide rows and work out which are each column's other filters.
+	 */
+	private void updateFilters() {
+		final FilterModel<T> filterModel = gridModel.getFilterModel();
+		filters = new ArrayList<>();
+
+		for (final Filter<T> filter : filterModel.getFilters()) {
+			if (!(filter instanceof CollapsedGroupFilter) && filterModel.doesFilterHide(filter)) {
+				filters.add(filter);
+			}
+		}
+
+		versions = new int[filters.size()];
+		otherFilters = new boolean[columns.size()][filters.size()];
+		results = new byte[filters.size()];
+
+		for (int filterIndex=0; filterIndex<filters.size(); filterIndex++) {
+			versions[filterIndex] = filters.get(filterIndex).getVersion();
+
+			for (int index=0; index<columns.size(); index++) {
+				otherFilters[index][filterIndex] = !filters.get(filterIndex).dependsOn(columns.get(index));
+			}
+		}
+	}
+
+	private boolean isShowingWholeGroups() {
+		for (final Filter<T> filter : filters) {
+			if (filter.isShowWholeGroup()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isExcluded(final Row<T> row) {
+		final GroupModel<T> groupModel = gridModel.getGroupModel();
+		return (groupModel != null) && groupModel.isGroupElement(row.getElement());
+	}
+
+	private static <T> int indexOf(final List<Filter<T>> filters, final Filter<T> filter) {
+		for (int index=0; index<filters.size(); index++) {
+			if (filters.get(index) == filter) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+}
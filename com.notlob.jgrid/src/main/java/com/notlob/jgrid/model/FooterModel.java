@@ -0,0 +1,194 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.notlob.jgrid.model.aggregation.Aggregate;
+import com.notlob.jgrid.model.aggregation.Aggregate.Accumulator;
+import com.notlob.jgrid.providers.IGridContentProvider;
+
+/**
+ * Maintains the statistics shown in the footer row - the aggregate of each column which declares one (see
+ * Column.setFooterAggregate) over all the visible rows.
+ *
+ * The values each visible row contributed are remembered, so as rows are shown, hidden, added, removed and updated only
+ * their own contribution is added to or taken from the accumulators - the visible rows are only re-scanned when the
+ * footer's columns change. The parent rows of the groups built by the grid (see GroupModel) aren't included.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class FooterModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// The columns which have a footer aggregate - the index of each is the index of its accumulator and of a row's value.
+	// Each column's aggregate is kept from when they were last rebuilt, in case Column.setFooterAggregate is called directly.
+	private final List<Column> columns;
+	private final List<Aggregate> aggregates;
+	private Accumulator[] accumulators;
+
+	// The values (and weights) each counted row contributed.
+	private final OrdinalMap<Object[]> rowValues;
+
+	// Whether any accumulator has changed since this was last taken.
+	private boolean changed;
+
+	public FooterModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.columns = new ArrayList<>();
+		this.aggregates = new ArrayList<>();
+		this.accumulators = new Accumulator[0];
+		this.rowValues = new OrdinalMap<>();
+	}
+
+	public boolean isEnabled() {
+		return !columns.isEmpty();
+	}
+
+	/**
+	 * The columns which have a footer aggregate.
+	 */
+	public List<Column> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * The column's aggregate of the visible rows, or null if it has none.
+	 */
+	public Object getValue(final Column column) {
+		final int index = columns.indexOf(column);
+		return (index == -1) ? null : accumulators[index].getValue();
+	}
+
+	/**
+	 * Re-evaluate which columns have a footer aggregate and rebuild them in a single pass over the visible rows.
+	 */
+	void rebuild() {
+		columns.clear();
+		aggregates.clear();
+
+		for (final Column column : gridModel.getAllColumns()) {
+			if (column.getFooterAggregate() != null) {
+				columns.add(column);
+				aggregates.add(column.getFooterAggregate());
+			}
+		}
+
+		rowsCleared();
+
+		if (!columns.isEmpty()) {
+			for (final Row<T> row : gridModel.getRows()) {
+				rowShown(row);
+			}
+		}
+	}
+
+	/**
+	 * Called when a row becomes visible.
+	 */
+	void rowShown(final Row<T> row) {
+		if (columns.isEmpty() || (rowValues.get(row) != null) || isExcluded(row)) {
+			return;
+		}
+
+		final Object[] values = getValues(row);
+
+		for (int index=0; index<accumulators.length; index++) {
+			accumulators[index].add(values[index * 2], values[(index * 2) + 1]);
+		}
+
+		rowValues.put(row, values);
+		changed = true;
+	}
+
+	/**
+	 * Called when a row is hidden or, if it was visible, removed from the grid. The values the row contributed are taken
+	 * away - not its current values.
+	 */
+	void rowHidden(final Row<T> row) {
+		final Object[] values = rowValues.get(row);
+
+		if (values == null) {
+			return;
+		}
+
+		for (int index=0; index<accumulators.length; index++) {
+			accumulators[index].remove(values[index * 2], values[(index * 2) + 1]);
+		}
+
+		rowValues.remove(row);
+		changed = true;
+	}
+
+	/**
+	 * Called when a visible row's element has been updated. Only the values which differ are re-accumulated.
+	 */
+	void rowUpdated(final Row<T> row) {
+		final Object[] oldValues = rowValues.get(row);
+
+		if (oldValues == null) {
+			return;
+		}
+
+		final Object[] newValues = getValues(row);
+
+		for (int index=0; index<accumulators.length; index++) {
+			if (!Objects.equals(oldValues[index * 2], newValues[index * 2]) || !Objects.equals(oldValues[(index * 2) + 1], newValues[(index * 2) + 1])) {
+				accumulators[index].remove(oldValues[index * 2], oldValues[(index * 2) + 1]);
+				accumulators[index].add(newValues[index * 2], newValues[(index * 2) + 1]);
+				changed = true;
+			}
+		}
+
+		rowValues.put(row, newValues);
+	}
+
+	/**
+	 * Start again with empty accumulators - the rows have gone.
+	 */
+	void rowsCleared() {
+		rowValues.clear();
+		accumulators = new Accumulator[columns.size()];
+
+		for (int index=0; index<accumulators.length; index++) {
+			accumulators[index] = aggregates.get(index).createAccumulator();
+		}
+
+		changed = true;
+	}
+
+	/**
+	 * Returns true if the footer's values have changed since this was last called.
+	 */
+	boolean takeChanged() {
+		final boolean wasChanged = changed;
+		changed = false;
+		return wasChanged;
+	}
+
+	private boolean isExcluded(final Row<T> row) {
+		final GroupModel<T> groupModel = gridModel.getGroupModel();
+		return (groupModel != null) && groupModel.isGroupElement(row.getElement());
+	}
+
+	/**
+	 * The row's value and weight for each footer column (in pairs).
+	 */
+	private Object[] getValues(final Row<T> row) {
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final Object[] values = new Object[columns.size() * 2];
+
+		for (int index=0; index<columns.size(); index++) {
+			final Column column = columns.get(index);
+			final Column weightColumn = aggregates.get(index).getWeightColumn();
+			values[index * 2] = contentProvider.getValue(column, row.getElement());
+			values[(index * 2) + 1] = (weightColumn == null) ? null : contentProvider.getValue(weightColumn, row.getElement());
+		}
+
+		return values;
+	}
+}
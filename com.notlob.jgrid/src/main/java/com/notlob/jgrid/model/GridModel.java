@@ -1,11 +1,15 @@
 package com.notlob.jgrid.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.eclipse.swt.graphics.GC;
 import org.slf4j.Logger;
@@ -13,8 +17,11 @@ import org.slf4j.LoggerFactory;
 
 import com.notlob.jgrid.Grid;
 import com.notlob.jgrid.Grid.GroupRenderStyle;
+import com.notlob.jgrid.listeners.IRowDeltaListener;
+import com.notlob.jgrid.model.aggregation.Aggregate;
 import com.notlob.jgrid.model.filtering.FilterModel;
 import com.notlob.jgrid.providers.IGridContentProvider;
+import com.notlob.jgrid.providers.IGridGroupProvider;
 import com.notlob.jgrid.providers.IGridLabelProvider;
 import com.notlob.jgrid.providers.IRowProvider;
 import com.notlob.jgrid.styles.CellStyle;
@@ -41,9 +48,18 @@ public class GridModel<T> {
 
 	// Rows which have been filtered out - they are not ordered.
 	private final List<Row<T>> hiddenRows;
+	
+	// A read-only view of the visible elements (in position order).
+	private final List<T> elementsView;
 
-	// All Rows (including hidden), keyed by domain element.
-	private final Map<T, Row<T>> rowsByElement;
+	// All Rows (including hidden), keyed by the domain element (or its id or key - see RowIndex).
+	private RowIndex<T> rowIndex;
+	private boolean rowsIndexedById;
+	
+	// All Rows by their ordinals (see Row.getOrdinal) and the ordinals free for re-use.
+	private final List<Row<T>> rowsByOrdinal;
+	private int[] freeOrdinals;
+	private int freeOrdinalCount;
 
 	// Visible column headers, pinned rows, etc.
 	private final List<Row<T>> columnHeaderRows;
@@ -62,6 +78,9 @@ public class GridModel<T> {
 	
 	// The column headers are represented by this row.
 	private final Row<T> columnHeaderRow;
+	
+	// The footer statistics are represented by this row.
+	private final Row<T> footerRow;
 
 	// Selection model (also Row has a selected property).
 	private final SelectionModel<T> selectionModel;
@@ -72,6 +91,23 @@ public class GridModel<T> {
 	// The filter model.
 	private final FilterModel<T> filterModel;
 
+	// Limits the visible rows to the best N (when enabled).
+	private final TopNModel<T> topNModel;
+	private final AggregateModel<T> aggregateModel;
+	
+	// Summarises the visible rows in the footer row.
+	private final FooterModel<T> footerModel;
+	
+	// Indexes the distinct values of the faceted columns.
+	private final FacetModel<T> facetModel;
+	
+	// Builds the groups from the group-by columns - only if the content provider is an IGridGroupProvider.
+	private GroupModel<T> groupModel;
+	
+	// How many rows (visible or hidden) are parent rows, and how many of those are visible - see countRow.
+	private int parentRowCount;
+	private int visibleParentRowCount;
+
 	// Visible styling model.
 	private final StyleRegistry<T> styleRegistry;
 
@@ -84,11 +120,18 @@ public class GridModel<T> {
 	// Show/hide the column headers.
 	private boolean showColumnHeaders = true;
 	
+	// Show/hide the footer row.
+	private boolean showFooter = false;
+	
 	// Are we rendering groups in columns or in-line?
 	private GroupRenderStyle groupRenderStyle = GroupRenderStyle.INLINE;
 
 	// These external listeners are notified whenever something changes.
 	private final List<IModelListener<T>> listeners;
+	
+	// These are notified of each positional change to the visible rows (unless a bulk change will notify a reset instead).
+	private final List<IRowDeltaListener<T>> rowDeltaListeners;
+	private int suppressedRowDeltas = 0;
 
 	// Providers to get / format data, images, tool-tips, etc.
 	private IGridContentProvider<T> contentProvider;
@@ -103,6 +146,17 @@ public class GridModel<T> {
 	// and stop firing rowCount-change notifications to any listeners.
 	private int suppressedEvents = 0;
 	
+	// While a batch is open, adds, updates and removes are accumulated here and applied when it's committed.
+	private ChangeBatch<T> batch;
+	private int batchDepth = 0;
+	
+	// The latest snapshot published for other threads to read (if enabled) and whether a new one is due to be published. The
+	// tracker follows the row deltas so only the chunks of rows which have changed are copied.
+	private volatile GridSnapshot<T> snapshot;
+	private long snapshotVersion;
+	private SnapshotTracker<T> snapshotTracker;
+	private boolean snapshotPending;
+	
 	private final static Logger logger = LoggerFactory.getLogger(GridModel.class);
 
 	// An internal listener so the grid can broker events to public listeners or react to internal changes.
@@ -115,6 +169,7 @@ public class GridModel<T> {
 		void filtersChanged();
 		void elementsAdded(final Collection<T> elements);
 		void elementsUpdated(final Collection<T> elements);
+		void cellsUpdated(final Collection<Row<T>> rows, final Collection<Column> columns);
 		void elementsRemoved(final Collection<T> elements);
 		void columnResized(final Column column);		
 		void columnMoved(final Column column);
@@ -122,6 +177,7 @@ public class GridModel<T> {
 		void columnSorted(final Column column);
 		void rowNumbersVisibilityChanged(final boolean visible);
 		void groupSelectorVisibilityChanged(final boolean visible);
+		void footerChanged();
 	}
 
 	public GridModel(final Grid<T> grid, final ResourceManager resourceManager, final GC gc) {
@@ -129,7 +185,10 @@ public class GridModel<T> {
 		this.resourceManager = resourceManager;
 		this.gc = gc; 
 		rows = new ArrayList<>();
-		rowsByElement = new LinkedHashMap<>();
+		elementsView = new ElementList<T>(rows);
+		rowIndex = RowIndex.create(null, false);
+		rowsByOrdinal = new ArrayList<>();
+		freeOrdinals = new int[16];
 		hiddenRows = new ArrayList<>();
 		columns = new ArrayList<>();
 		allColumns = new ArrayList<>();
@@ -137,12 +196,18 @@ public class GridModel<T> {
 		pinnedColumns = new ArrayList<>();
 		groupByColumns = new ArrayList<>();
 		listeners = new ArrayList<>();
+		rowDeltaListeners = new ArrayList<>();
 		styleRegistry = new StyleRegistry<T>(grid);
 		selectionModel = new SelectionModel<T>(this);
 		sortModel = new SortModel<T>(this);
 		filterModel = new FilterModel<T>(this);
+		topNModel = new TopNModel<T>(this);
+		aggregateModel = new AggregateModel<T>(this);
+		footerModel = new FooterModel<T>(this);
+		facetModel = new FacetModel<T>(this);
 		rowNumberColumn = new Column(null);		
 		columnHeaderRow = new Row<T>(null);
+		footerRow = new Row<T>(null);
 		groupSelectorColumn = new Column(null);
 		groupSelectorColumn.setWidth(16);
 		rowProvider = new DefaultRowProvider<T>();
@@ -177,6 +242,143 @@ public class GridModel<T> {
 		return (suppressedEvents > 0);
 	}
 	
+	/**
+	 * Start a batch. Until the (outer-most) batch is committed, added, updated and removed elements are only recorded - the 
+	 * rows don't change and no events are fired. Batches can be nested.
+	 */
+	public void beginBatch() {
+		if (batchDepth++ == 0) {
+			batch = new ChangeBatch<T>();
+		}
+	}
+	
+	public boolean isBatching() {
+		return (batch != null);
+	}
+	
+	/**
+	 * Apply the net changes recorded since beginBatch - removes, then updates, then adds. Each is applied in its own pass (and
+	 * the rows re-indexed) with its own element, selection, height and row delta events, as if it had been called directly.
+	 * Only the change and row-count events are held back, to be fired once at the end.
+	 */
+	public void commitBatch() {
+		if (batchDepth == 0) {
+			throw new IllegalStateException("No batch to commit");
+		}
+		
+		if (--batchDepth > 0) {
+			return;
+		}
+		
+		final ChangeBatch<T> changes = batch;
+		batch = null;
+		
+		if (changes.isEmpty()) {
+			return;
+		}
+		
+		if (logger.isDebugEnabled()) {
+			logger.debug("Committing batch of {} added, {} updated and {} removed elements", changes.getAddedElements().size(), changes.getUpdatedElements().size(), changes.getRemovedElements().size());
+		}
+		
+		//
+		// The grid doesn't need to redraw or recalculate anything until all of the changes are in.
+		//
+		suppressedEvents++;
+		try {
+			if (!changes.getRemovedElements().isEmpty()) {
+				removeElements(changes.getRemovedElements());
+			}
+			
+			//
+			// The updated rows are put into place before any rows are added, as each new row is inserted by a binary search.
+			//
+			if (!changes.getUpdatedElements().isEmpty()) {
+				swapElements(changes.getReplacedElements());
+				updateElements(changes.getUpdatedElements(), changes.getChangedColumns());
+			}
+			
+			if (!changes.getAddedElements().isEmpty()) {
+				addElements(changes.getAddedElements());
+			}
+			
+		} finally {
+			suppressedEvents--;
+		}
+		
+		if (!isEventsSuppressed()) {
+			fireChangeEvent();
+			fireRowCountChangedEvent();
+		}
+	}
+	
+	public boolean isSnapshotsEnabled() {
+		return (snapshotTracker != null);
+	}
+	
+	/**
+	 * When enabled, a new GridSnapshot is published after each batch of changes to the visible rows, selection, sort or
+	 * filters. Disabling discards the last snapshot.
+	 * 
+	 * While enabled, the grid model notifies row deltas (see IRowDeltaListener) to track which rows have changed.
+	 */
+	public void setSnapshotsEnabled(final boolean snapshotsEnabled) {
+		if (snapshotsEnabled == isSnapshotsEnabled()) {
+			return;
+		}
+		
+		if (snapshotsEnabled) {
+			snapshotTracker = new SnapshotTracker<T>(this);
+			snapshotTracker.rowsReset();
+			addRowDeltaListener(snapshotTracker);
+			publishSnapshot();
+			
+		} else {
+			removeRowDeltaListener(snapshotTracker);
+			snapshotTracker = null;
+			snapshotPending = false;
+			snapshot = null;
+		}
+	}
+	
+	/**
+	 * The most recently published snapshot, or null if snapshots aren't enabled. Safe to call from any thread.
+	 */
+	public GridSnapshot<T> getSnapshot() {
+		return snapshot;
+	}
+	
+	/**
+	 * Publish a snapshot of the current state now (rather than waiting for the current batch of changes to finish).
+	 */
+	public void publishSnapshot() {
+		snapshotPending = false;
+		
+		if (snapshotTracker != null) {
+			snapshot = GridSnapshot.of(++snapshotVersion, snapshotTracker, rows, selectionModel.copySelectedOrdinals(), selectionModel.isSelectionInverted(), sortModel.getSortSpecification(), filterModel.getFilters());
+		}
+	}
+	
+	/**
+	 * Something in the snapshot has changed - the visible rows (see SnapshotTracker), the selection, sort or filters. Rather 
+	 * than re-publishing for every change, a single snapshot is published once the UI thread has finished the current batch 
+	 * of work.
+	 */
+	void snapshotChanged() {
+		if ((snapshotTracker != null) && !snapshotPending) {
+			snapshotPending = true;
+			
+			grid.getDisplay().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (snapshotPending && !grid.isDisposed()) {
+						publishSnapshot();
+					}
+				}
+			});
+		}
+	}
+	
 	public GroupRenderStyle getGroupRenderStyle() {
 		return groupRenderStyle;
 	}
@@ -201,6 +403,29 @@ public class GridModel<T> {
 		return filterModel;
 	}
 
+	public TopNModel<T> getTopNModel() {
+		return topNModel;
+	}
+	
+	public AggregateModel<T> getAggregateModel() {
+		return aggregateModel;
+	}
+	
+	public FooterModel<T> getFooterModel() {
+		return footerModel;
+	}
+	
+	public FacetModel<T> getFacetModel() {
+		return facetModel;
+	}
+	
+	/**
+	 * The model which builds groups from the group-by columns, or null if the content provider isn't an IGridGroupProvider.
+	 */
+	public GroupModel<T> getGroupModel() {
+		return groupModel;
+	}
+
 	public List<Column> getColumns() {
 		return columns;
 	}
@@ -217,6 +442,10 @@ public class GridModel<T> {
 		return columnHeaderRow;
 	}
 	
+	public Row<T> getFooterRow() {
+		return footerRow;
+	}
+	
 	public Column getRowNumberColumn() {
 		return rowNumberColumn;
 	}
@@ -226,7 +455,7 @@ public class GridModel<T> {
 	}
 
 	/**
-	 * Returns all of the visible elements in the grid. Not a performant method.
+	 * Returns all of the visible elements in the grid. Not a performant method - it copies the elements, see getElementsView.
 	 */
 	public List<T> getElements() {		
 		//
@@ -240,36 +469,50 @@ public class GridModel<T> {
 		return elements;
 	}
 
+	/**
+	 * A read-only, live view of the visible elements in position order - nothing is copied.
+	 */
+	public List<T> getElementsView() {
+		return elementsView;
+	}
+	
+	/**
+	 * A read-only, live view of the visible elements from position fromIndex (inclusive) to toIndex (exclusive).
+	 */
+	public List<T> getElements(final int fromIndex, final int toIndex) {
+		return elementsView.subList(fromIndex, toIndex);
+	}
+	
+	/**
+	 * Pass each visible element to the consumer in position order. The grid must not be changed by the consumer.
+	 */
+	public void forEachVisible(final Consumer<? super T> consumer) {
+		for (int index=0; index<rows.size(); index++) {
+			consumer.accept(rows.get(index).getElement());
+		}
+	}
+
 	public Collection<T> getSelection() {
 		return selectionModel.getSelectedElements();
 	}
 
 	/**
-	 * The number of visible or hidden rows.
+	 * The number of visible or hidden rows. The parent counts are maintained as rows are added, updated, removed, shown and 
+	 * hidden so this doesn't scan the rows.
 	 */
 	public int getDetailedRowCount(final boolean visible, final RowCountScope scope) {
 
-		final Collection<Row<T>> rowsToCount = visible ? rows : hiddenRows;
+		final int rowCount = visible ? rows.size() : hiddenRows.size();
+		final int parentCount = visible ? visibleParentRowCount : (parentRowCount - visibleParentRowCount);
+		
 		switch (scope) {
 			case ALL:
-				return rowsToCount.size();
+				return rowCount;
 
 			case CHILDREN:
-				int childCount = 0;
-				for (final Row<T> row : rowsToCount) {
-					if (!isParentRow(row)) {
-						childCount++;
-					}
-				}
-				return childCount;
+				return rowCount - parentCount;
 
 			case PARENTS:
-				int parentCount = 0;
-				for (final Row<T> row : rowsToCount) {
-					if (isParentRow(row)) {
-						parentCount++;
-					}
-				}
 				return parentCount;
 		}
 
@@ -284,8 +527,11 @@ public class GridModel<T> {
 		return hiddenRows;
 	}
 
+	/**
+	 * All rows, including hidden ones, in no particular order.
+	 */
 	public Collection<Row<T>> getAllRows() {
-		return rowsByElement.values();
+		return rowIndex.values();
 	}
 
 	public List<Row<T>> getColumnHeaderRows() {
@@ -297,11 +543,110 @@ public class GridModel<T> {
 	}
 
 	public Row<T> getRow(final T element) {
-		return rowsByElement.get(element);
+		return rowIndex.get(element);
 	}
-
-	Map<T, Row<T>> getRowsByElement() {
-		return rowsByElement;
+	
+	/**
+	 * The row with the ordinal specified, or null if it's free.
+	 */
+	Row<T> getRowByOrdinal(final int ordinal) {
+		return rowsByOrdinal.get(ordinal);
+	}
+	
+	/**
+	 * Give a row being added an ordinal - a number unique amongst the grid's rows, re-used once the row is removed. Models
+	 * hold their state for each row by its ordinal (i.e. the selection model's bits) rather than in maps.
+	 */
+	private void allocateOrdinal(final Row<T> row) {
+		final int ordinal;
+		
+		if (freeOrdinalCount > 0) {
+			ordinal = freeOrdinals[--freeOrdinalCount];
+			rowsByOrdinal.set(ordinal, row);
+			
+		} else {
+			ordinal = rowsByOrdinal.size();
+			rowsByOrdinal.add(row);
+		}
+		
+		row.setOrdinal(this, ordinal);
+	}
+	
+	/**
+	 * The row has been removed - its ordinal can be re-used.
+	 */
+	private void releaseOrdinal(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		
+		if (ordinal != -1) {
+			rowsByOrdinal.set(ordinal, null);
+			row.setOrdinal(null, -1);
+			
+			if (freeOrdinalCount == freeOrdinals.length) {
+				freeOrdinals = Arrays.copyOf(freeOrdinals, freeOrdinalCount * 2);
+			}
+			
+			freeOrdinals[freeOrdinalCount++] = ordinal;
+		}
+	}
+	
+	/**
+	 * All the rows have been removed.
+	 */
+	private void releaseOrdinals() {
+		for (final Row<T> row : rowsByOrdinal) {
+			if (row != null) {
+				row.setOrdinal(null, -1);
+			}
+		}
+		
+		rowsByOrdinal.clear();
+		freeOrdinalCount = 0;
+	}
+	
+	/**
+	 * Find the row by the content provider's element id. Only available if the rows are indexed by id.
+	 */
+	public Row<T> getRowById(final String elementId) {
+		return rowIndex.getById(elementId);
+	}
+	
+	public boolean isRowsIndexedById() {
+		return rowsIndexedById;
+	}
+	
+	/**
+	 * Index the rows by the content provider's element id rather than by the element itself (so rows can be found and 
+	 * updated by id, and any element with the same id finds the row). Ignored if the content provider is an 
+	 * IGridElementKeyProvider - the rows are always indexed by the key.
+	 */
+	public void setRowsIndexedById(final boolean rowsIndexedById) {
+		if (this.rowsIndexedById != rowsIndexedById) {
+			this.rowsIndexedById = rowsIndexedById;
+			rekeyRows();
+		}
+	}
+	
+	/**
+	 * Re-key any existing rows in the most appropriate index for the content provider.
+	 */
+	private void rekeyRows() {
+		final IGridContentProvider<T> keyedBy = (groupModel == null) ? contentProvider : groupModel.getContentProvider();
+		final RowIndex<T> oldIndex = rowIndex;
+		rowIndex = RowIndex.create(keyedBy, rowsIndexedById);
+		
+		for (final Row<T> row : oldIndex.values()) {
+			if (!rowIndex.put(row)) {
+				logger.warn("Row {} has no key or the same key as another row - it can only be found by its element", row);
+			}
+		}
+	}
+	
+	/**
+	 * Find the row by the element key. Only available if the content provider is an IGridElementKeyProvider.
+	 */
+	public Row<T> getRowByKey(final long elementKey) {
+		return rowIndex.getByKey(elementKey);
 	}
 
 	public void setLabelProvider(final IGridLabelProvider<T> labelProvider) {
@@ -309,12 +654,38 @@ public class GridModel<T> {
 	}
 
 	public void setContentProvider(final IGridContentProvider<T> contentProvider) {
-		this.contentProvider = contentProvider;
+		final List<T> oldGroupElements = (groupModel == null) ? Collections.<T>emptyList() : groupModel.getGroupElements();
+		
+		//
+		// If the provider can create group elements, the groups are built from the group-by columns and the group model 
+		// stands in for the provider.
+		//
+		if (contentProvider instanceof IGridGroupProvider) {
+			@SuppressWarnings("unchecked")
+			final IGridGroupProvider<T> groupProvider = (IGridGroupProvider<T>) contentProvider;
+			groupModel = new GroupModel<T>(this, contentProvider, groupProvider);
+			this.contentProvider = groupModel;
+			
+		} else {
+			groupModel = null;
+			this.contentProvider = contentProvider;
+		}
+		
+		rekeyRows();
+		
+		for (final Row<T> row : rowIndex.values()) {
+			sortModel.rowAdded(row);
+			countRow(row);
+		}
 
 		//
 		// The mandatory filter needs the contentprovider.
 		//
 		clearFilters();
+		
+		if (!oldGroupElements.isEmpty() || ((groupModel != null) && groupModel.isEnabled())) {
+			regroup(oldGroupElements);
+		}
 	}
 	
 	public IRowProvider<T> getRowProvider() {
@@ -355,12 +726,31 @@ public class GridModel<T> {
 		final boolean anyWereVisible = !this.columns.isEmpty();
 		boolean anyNowVisible = false;
 
+		boolean anyAggregated = false;
+		boolean anyFooterAggregated = false;
+		boolean anyFaceted = false;
+
 		for (final Column column : columns) {
 			addColumn(column);
 			anyNowVisible |= column.isVisible();
+			anyAggregated |= (column.getAggregate() != null);
+			anyFooterAggregated |= (column.getFooterAggregate() != null);
+			anyFaceted |= column.isFaceted();
 		}
 
 		rebuildVisibleColumns();
+		
+		if (anyAggregated) {
+			aggregateModel.rebuild();
+		}
+		
+		if (anyFooterAggregated) {
+			footerModel.rebuild();
+		}
+		
+		if (anyFaceted) {
+			facetModel.rebuild();
+		}
 
 		if (!anyWereVisible && anyNowVisible && showColumnHeaders) {
 			//
@@ -380,16 +770,36 @@ public class GridModel<T> {
 		sortModel.removeColumn(column);
 		allColumns.remove(column);
 		columns.remove(column);
+		column.setColumnIndex(-1);
 		groupByColumns.remove(column);
 		pinnedColumns.remove(column);
 	}
 
 	public void removeColumns(final List<Column> columns) {
+		boolean anyAggregated = false;
+		boolean anyFooterAggregated = false;
+		boolean anyFaceted = false;
+		
 		for (final Column column : new ArrayList<>(columns)) {
 			removeColumn(column);
+			anyAggregated |= (column.getAggregate() != null);
+			anyFooterAggregated |= (column.getFooterAggregate() != null);
+			anyFaceted |= column.isFaceted();
 		}
 
 		rebuildVisibleColumns();
+		
+		if (anyAggregated) {
+			aggregateModel.rebuild();
+		}
+		
+		if (anyFooterAggregated) {
+			footerModel.rebuild();
+		}
+		
+		if (anyFaceted) {
+			facetModel.rebuild();
+		}
 
 		if (this.columns.isEmpty() && !columnHeaderRows.isEmpty()) {
 			columnHeaderRows.clear();
@@ -399,6 +809,10 @@ public class GridModel<T> {
 	}
 
 	public void rebuildVisibleColumns() {
+		for (final Column column : columns) {
+			column.setColumnIndex(-1);
+		}
+		
 		columns.clear();
 
 		for (final Column column : allColumns) {
@@ -406,6 +820,31 @@ public class GridModel<T> {
 				columns.add(column);
 			}
 		}
+		
+		reindexColumns();
+	}
+	
+	private void reindexColumns() {
+		for (int columnIndex=0; columnIndex<columns.size(); columnIndex++) {
+			columns.get(columnIndex).setColumnIndex(columnIndex);
+		}
+	}
+	
+	/**
+	 * The column's position in the visible columns, or -1 if it's not visible.
+	 */
+	public int indexOfColumn(final Column column) {
+		if (column == null) {
+			return -1;
+		}
+		
+		final int columnIndex = column.getColumnIndex();
+		
+		if ((columnIndex >= 0) && (columnIndex < columns.size()) && (columns.get(columnIndex) == column)) {
+			return columnIndex;
+		}
+		
+		return columns.indexOf(column);
 	}
 	
 	/**
@@ -431,6 +870,8 @@ public class GridModel<T> {
 				columns.add(insertIndex, columnToMove);
 			}
 			
+			reindexColumns();
+			
 			//
 			// Move the column in the full list of columns.
 			//
@@ -468,10 +909,30 @@ public class GridModel<T> {
 	 * Returns the rows which are visible after the operation.
 	 */
 	public Collection<Row<T>> addElements(final Collection<T> elements) {
+		if (batch != null) {
+			batch.elementsAdded(elements);
+			return Collections.emptyList();
+		}
+		
 		int heightDelta = 0;
 		final Collection<Row<T>> rowsShown = new ArrayList<Row<T>>();
+		final List<Row<T>> groupRowsAdded = new ArrayList<Row<T>>();
 		
 		for (final T element : elements) {
+			//
+			// If the element starts a new group, add the group's parent row first.
+			//
+			final T groupElement = (groupModel == null) ? null : groupModel.elementAdded(element);
+			
+			if (groupElement != null) {
+				final Row<T> groupRow = addGroupRow(groupElement);
+				groupRowsAdded.add(groupRow);
+				
+				if (groupRow.isVisible()) {
+					heightDelta += getRowHeight(groupRow);
+				}
+			}
+			
 			//
 			// Add a row for the element.
 			//
@@ -484,10 +945,21 @@ public class GridModel<T> {
 			}
 		}
 		
+		//
+		// The new groups' parents were filtered before they had any children.
+		//
+		for (final Row<T> groupRow : groupRowsAdded) {
+			heightDelta += checkRowVisibility(groupRow);
+		}
+		
+		final boolean selectionChanged = enforceTopN(rowsShown);
+		heightDelta += topNModel.getHeightDelta();
+		
 		//
 		// Re-seed the row-indexes if there's been any move or show/hiding.
 		//
 		reindex();
+		heightDelta += updateAggregatedParents();
 		
 		if (heightDelta != 0) {
 			fireHeightChangeEvent(heightDelta);
@@ -496,50 +968,116 @@ public class GridModel<T> {
 		fireElementsAddedEvent(elements);		
 		fireRowCountChangedEvent();
 		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+		
 		return rowsShown;
 	}
 
+	/**
+	 * Add a row for the parent element of a new group (see GroupModel).
+	 */
+	private Row<T> addGroupRow(final T groupElement) {
+		final Row<T> groupRow = rowProvider.createRow(groupElement);
+		groupRow.setHeight(labelProvider.getDefaultRowHeight(groupElement));
+		addRow(groupRow);
+		return groupRow;
+	}
+
 	private boolean addRow(final Row<T> row) {
 
 		//
 		// Cache the row by it's domain element.
 		//
-		rowsByElement.put(row.getElement(), row);
+		if (!rowIndex.put(row)) {
+			logger.warn("Element {} has no key or the same key as another row - it can only be found by the element itself", row.getElement());
+		}
+		
+		allocateOrdinal(row);
+		sortModel.rowAdded(row);
+		filterModel.rowChanged(row);
+		selectionModel.rowAdded(row);
+		countRow(row);
 		
 		//
 		// Check the filter model.
 		//
-		if (filterModel.match(row)) {
+		final boolean visible = filterModel.match(row);
+		
+		if (visible) {
 			//
 			// Make the row visible.
 			//
 			showRow(row);
-			return true;
 
 		} else {
 			hideRow(row);
 		}
+		
+		//
+		// Aggregate the row once it's in place - its parent can then be moved if need be (see updateAggregatedParents).
+		//
+		aggregateModel.rowAdded(row);
+		facetModel.rowChanged(row);
 
-		return false;
+		return visible;
 	}
 
 	public void removeElements(final Collection<T> elements) {
+		if (batch != null) {
+			batch.elementsRemoved(elements);
+			return;
+		}
+		
 		int heightDelta = 0;
 		int lastSelectedIndex = -1;
 		boolean selectionChanged = false;
 		
 		for (final T element : elements) {
-			final Row<T> row = rowsByElement.get(element);
+			final Row<T> row = rowIndex.remove(element);
 			if (row != null) {
-				heightDelta -= getRowHeight(row);
-				rows.remove(row);
-				hiddenRows.remove(row);
-				rowsByElement.remove(element);
+				//
+				// While the row is still in its group, so its relatives can be re-evaluated.
+				//
+				facetModel.rowChanged(row);
+				filterModel.rowChanged(row);
+				
+				if (groupModel != null) {
+					groupModel.elementRemoved(row.getElement());
+				}
+				
+				aggregateModel.rowRemoved(row);
+				footerModel.rowHidden(row);
+				sortModel.rowRemoved(row);
+				uncountRow(row);
+				
+				if (topNModel.isPooled(row)) {
+					//
+					// Pooled rows aren't visible so they don't affect the height.
+					//
+					topNModel.unpool(row);
+					removeHiddenRow(row);
+					
+				} else if (row.isVisible()) {
+					heightDelta -= getRowHeight(row);
+					
+					final int index = indexOfVisibleRow(row);
+					if (index != -1) {
+						rows.remove(index);
+						fireRowRemovedEvent(row, index);
+					}
+					
+				} else {
+					removeHiddenRow(row);
+				}
 	
 				if (row.isSelected()) {
 					selectionChanged |= selectionModel.removeRow(row);
 					lastSelectedIndex = Math.max(lastSelectedIndex, row.getRowIndex());
 				}
+				
+				releaseOrdinal(row);
 	
 				if (row.isPinned()) {
 					columnHeaderRows.remove(row);
@@ -563,17 +1101,21 @@ public class GridModel<T> {
 					
 					if ((nextIndex >= 0) && (nextIndex <= (rows.size()) && !rows.isEmpty())) {
 						final Row<T> row = rows.get(Math.min(nextIndex, rows.size() - 1));
-						final List<Row<T>> rowsToSelect = isGroupRow(row) ? getWholeGroup(row) : Collections.singletonList(row); 
+						final List<Row<T>> rowsToSelect = isGroupRow(row) ? getVisibleGroup(row) : Collections.singletonList(row); 
 						selectionModel.setSelectedRows(rowsToSelect);
 					}
 				}
 				break;
 		}
 		
+		selectionChanged |= enforceTopN(Collections.<Row<T>>emptyList());
+		heightDelta += topNModel.getHeightDelta();
+		
 		//
 		// Reseed the row-indexes if there's been any move or show/hiding.
 		//
 		reindex();
+		heightDelta += updateAggregatedParents();
 
 		if (heightDelta != 0) {
 			fireHeightChangeEvent(heightDelta);
@@ -585,6 +1127,8 @@ public class GridModel<T> {
 		if (selectionChanged) {
 			fireSelectionChangedEvent();
 		}
+		
+		removeEmptiedGroups();
 	}
 	
 	/**
@@ -612,111 +1156,95 @@ public class GridModel<T> {
 
 	/**
 	 * Returns the rows which are visible after the operation.
+	 * 
+	 * If no row was moved, shown or hidden and no heights changed, only the cells are repainted (and only those which now
+	 * look different).
 	 */
 	public Collection<Row<T>> updateElements(final Collection<T> elements) {
+		if (batch != null) {
+			batch.elementsUpdated(elements, null);
+			return Collections.emptyList();
+		}
+		
 		int heightDelta = 0;
 		final Collection<Row<T>> rowsShown = new ArrayList<Row<T>>();
+		final int rowCount = rows.size();
+		boolean rearranged = false;
+		
+		//
+		// Rows aren't moved until the whole batch has been evaluated - otherwise each would be placed amongst others in the 
+		// batch which may still be out of place.
+		//
+		if (elements.size() > 1) {
+			sortModel.deferMoves();
+		}
 		
 		for (T element : elements) {
-			final Row<T> row = rowsByElement.get(element);
+			final Row<T> row = rowIndex.get(element);
 						
 			if (row != null) {
-				//
-				// Should the row be shown/hidden?
-				//
-				final boolean visible = filterModel.match(row);
+				final boolean wasVisible = row.isVisible();
+				final int oldIndex = row.getRowIndex();
 				
-				if (visible) {
-					rowsShown.add(row);
-				}
+				heightDelta += updateRow(row);
 				
-				if (visible && row.isVisible()) {
-					//
-					// Should the row move?
-					//
-					final int expectedIndex = sortModel.getSortedRowIndex(row);
-					final Row<T> rowAtIndex = expectedIndex < rows.size() ? rows.get(expectedIndex) : null /* We need to add to the list here */;
-					
-					if (row != rowAtIndex) {
-						if (isParentRow(row)) {
-							//
-							// Move the row to the correct position.
-							//
-							moveRow(row);
-
-							//
-							// If this was a group row that has moved, bring all the children with it.
-							//
-							moveVisibleChildren(row);
-							
-						} else if (isChildElement(row.getElement())) {
-							//
-							// Move the child row within it's group.
-							//
-							final Row<T> parentRow = getRow(getParentOrOwnElement(row));
-							moveVisibleChildren(parentRow);
-							
-						} else {
-							//
-							// Move non-group rows.
-							//
-							moveRow(row);
-						}
-					}
-					
-					//
-					// Check if the row's height is accurate.
-					//				
-					heightDelta += getUpdatedRowHeightDelta(row);
-					
-				} else if (visible && !row.isVisible()) {
-					//
-					// Reveal the row.
-					//
-					showRow(row);
-					heightDelta += getRowHeight(row);
-					
-					if (isParentElement(row.getElement())) {
-						//
-						// If it's a parent, check its kiddies.
-						//
-						heightDelta += checkChildVisibility(row);
-						
-					} else if (isChildElement(row.getElement())) {
-						//
-						// If it's a sprog, check the parent.
-						//
-						heightDelta += checkParentVisibility(row);
-					}
-					
-				} else if (!visible && row.isVisible()) {
-					//
-					// Hide the row.
-					//
-					hideRow(row);				
-					heightDelta -= getRowHeight(row);
-					
-					if (isParentElement(row.getElement())) {
-						//
-						// If it's a parent, check the sprogs.
-						//
-						heightDelta += checkChildVisibility(row);
-						
-					} else if (isChildElement(row.getElement())) {
-						//
-						// If it's a sprog, check the parent.
-						//
-						heightDelta += checkParentVisibility(row);
-					}
+				if (!rearranged) {
+					rearranged = (wasVisible != row.isVisible()) || isGroupRow(row) || (row.isVisible() && ((oldIndex < 0) || (oldIndex >= rows.size()) || (rows.get(oldIndex) != row)));
 				}
 				
+				if (row.isVisible()) {
+					rowsShown.add(row);
+				}
 			}
 		}
 		
 		//
-		// Reseed the row-indexes if there's been any move or show/hiding.
+		// Parents whose aggregates have changed may need repainting or even moving.
 		//
-		reindex();
+		final Collection<Row<T>> parentsChanged = new ArrayList<Row<T>>();
+		heightDelta += updateAggregatedParents(parentsChanged);
+		rearranged |= (!parentsChanged.isEmpty() && aggregateModel.affectsLayout());
+		
+		//
+		// Take the updated rows (and parents) which are now out of order out, and put them back into place. This must follow
+		// the parents' updates, as their groups are ordered by their aggregates which have already changed.
+		//
+		if (elements.size() > 1) {
+			rearranged |= sortModel.placeDeferredMoves();
+		}
+		
+		final boolean selectionChanged = enforceTopN(rowsShown);
+		final boolean swapped = (topNModel.getSwapCount() > 0);
+		heightDelta += topNModel.getHeightDelta();
+		rearranged |= (rowCount != rows.size());
+		
+		if (!rearranged && !swapped && (heightDelta == 0)) {
+			//
+			// Nothing has moved - the row-indexes are still good and only the cell content can have changed.
+			//
+			fireElementsUpdatedEvent(elements);
+			fireCellsUpdatedEvent(rowsShown, null);
+			
+			if (!parentsChanged.isEmpty()) {
+				fireCellsUpdatedEvent(parentsChanged, null);
+			}
+			
+			return rowsShown;
+		}
+		
+		if (rearranged || !topNModel.isEnabled()) {
+			//
+			// Reseed the row-indexes if there's been any move or show/hiding.
+			//
+			reindex();
+			
+		} else {
+			//
+			// Rows have only been swapped in or out of the top N. Hidden rows are never shifted in this mode so only the
+			// visible rows need re-indexing.
+			//
+			reindex(0, rows.size());
+		}
 
 		//
 		// If the height of the rows has changed, adjust the grid's scroll-bars.
@@ -727,196 +1255,1359 @@ public class GridModel<T> {
 		}
 		fireElementsUpdatedEvent(elements);
 		fireChangeEvent();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+		
+		//
+		// Elements may have left groups which are now empty.
+		//
+		removeEmptiedGroups();
 
 		return rowsShown;
 	}
 	
 	/**
-	 * Remove child rows and re-insert them into the correct location.
+	 * Update the elements when the caller knows which columns have changed. If none of the columns are sorted, filtered on,
+	 * grouped by or wrapped, the rows can't move, show, hide or change height - so only the cells are repainted. Otherwise 
+	 * (or if changedColumns is null) this is the same as updateElements.
+	 * 
+	 * The elements' parents and children must not have changed. Returns the rows which are visible after the operation.
 	 */
-	private void moveVisibleChildren(final Row<T> parentRow) {
-		final List<Row<T>> children = getVisibleChildren(parentRow);
-		children.sort(sortModel.getRowComparator());
-		rows.removeAll(children);
-
+	public Collection<Row<T>> updateElements(final Collection<T> elements, final Collection<Column> changedColumns) {
+		if (batch != null) {
+			batch.elementsUpdated(elements, changedColumns);
+			return Collections.emptyList();
+		}
+		
+		if ((changedColumns == null) || affectsLayout(changedColumns)) {
+			return updateElements(elements);
+		}
+		
+		final Collection<Row<T>> rowsShown = new ArrayList<Row<T>>();
+		
+		for (final T element : elements) {
+			final Row<T> row = rowIndex.get(element);
+			
+			if (row != null) {
+				//
+				// Cached sort orders and filter results (for other sorts and filters) may depend on the columns.
+				//
+				aggregateModel.rowUpdated(row);
+				footerModel.rowUpdated(row);
+				facetModel.rowChanged(row);
+				sortModel.rowAdded(row);
+				filterModel.rowChanged(row);
+				countRow(row);
+				
+				if (row.isVisible()) {
+					rowsShown.add(row);
+				}
+			}
+		}
+		
 		//
-		// We can't use the cached index as we're potentially in a loop of row's being shuffled around.
+		// The changed columns don't affect the layout - even through an aggregate - so the parents only need repainting.
 		//
-		rows.addAll(rows.indexOf(parentRow), children);
+		final Collection<Row<T>> parentsChanged = new ArrayList<Row<T>>();
+		updateAggregatedParents(parentsChanged);
+		
+		fireElementsUpdatedEvent(elements);
+		fireCellsUpdatedEvent(rowsShown, changedColumns);
+		
+		if (!parentsChanged.isEmpty()) {
+			fireCellsUpdatedEvent(parentsChanged, null);
+		}
+		
+		return rowsShown;
 	}
 	
 	/**
-	 * Remove the row and insert back where it belongs.
+	 * Returns true if a change to any of the columns could move, show, hide or resize a row.
 	 */
-	private void moveRow(final Row<T> row) {
-		rows.remove(row);
+	private boolean affectsLayout(final Collection<Column> changedColumns) {
+		for (final Column column : changedColumns) {
+			if (column.isWrap() || groupByColumns.contains(column) || sortModel.dependsOn(column) || filterModel.dependsOn(column) || aggregateModel.affectsLayout(column)) {
+				return true;
+			}
+		}
 		
-		final int newConcreatedIndex = sortModel.getSortedRowIndex(row);
-		rows.add(newConcreatedIndex, row);
-		row.setRowIndex(newConcreatedIndex);
+		return false;
 	}
-
+	
 	/**
-	 * Get the cached height of a row, then force it to be recalculated (because value-changed may have caused styling to change).
-	 * Return the delta between the old and new heights. 
+	 * Update a single row found by the content provider's element id. Returns the row, or null if there isn't one.
 	 */
-	private int getUpdatedRowHeightDelta(final Row<T> row) {
-		final int oldHeight = getRowHeight(row);
-		row.setHeight(labelProvider.getDefaultRowHeight(row.getElement()));
-		final int newHeight = getRowHeight(row);
+	public Row<T> updateElementById(final String elementId) {
+		return updateElement(rowIndex.getById(elementId));
+	}
+	
+	/**
+	 * Update a single row found by its element key. Returns the row, or null if there isn't one.
+	 * 
+	 * Only available if the content provider is an IGridElementKeyProvider.
+	 */
+	public Row<T> updateElementByKey(final long elementKey) {
+		return updateElement(rowIndex.getByKey(elementKey));
+	}
+	
+	/**
+	 * Unlike updateElements, the rows are only re-indexed if the row has actually been moved, shown or hidden. Otherwise only 
+	 * the alternate background of the row (and the row after it) is re-evaluated.
+	 */
+	private Row<T> updateElement(final Row<T> row) {
+		if (row == null) {
+			return null;
+		}
 		
-		return newHeight - oldHeight;
+		if (batch != null) {
+			batch.elementsUpdated(Collections.singletonList(row.getElement()), null);
+			return row;
+		}
+		
+		final boolean wasVisible = row.isVisible();
+		final int oldIndex = row.getRowIndex();
+		final Collection<Row<T>> parentsChanged = new ArrayList<Row<T>>();
+		int heightDelta = updateRow(row) + updateAggregatedParents(parentsChanged);
+		final boolean selectionChanged = enforceTopN(Collections.<Row<T>>emptyList());
+		heightDelta += topNModel.getHeightDelta();
+		
+		if ((wasVisible != row.isVisible()) || isGroupRow(row) || !parentsChanged.isEmpty()) {
+			reindex();
+			
+		} else if (topNModel.isEnabled()) {
+			//
+			// Rows may have been swapped in or out of the top N. Hidden rows are never shifted in this mode so only the
+			// visible rows need re-indexing.
+			//
+			reindex(0, rows.size());
+			
+		} else if (row.isVisible()) {
+			if ((oldIndex < 0) || (oldIndex >= rows.size()) || (rows.get(oldIndex) != row)) {
+				reindex();
+				
+			} else if (heightDelta == 0) {
+				//
+				// The row hasn't moved or changed height - only repaint its cells which now look different.
+				//
+				fireElementsUpdatedEvent(Collections.singletonList(row.getElement()));
+				fireCellsUpdatedEvent(Collections.singletonList(row), null);
+				return row;
+				
+			} else {
+				reindexAlternateBackground(oldIndex);
+				reindexAlternateBackground(oldIndex + 1);
+			}
+		}
+		
+		if (heightDelta != 0) {
+			fireHeightChangeEvent(heightDelta);
+			fireRowCountChangedEvent();
+		}
+		fireElementsUpdatedEvent(Collections.singletonList(row.getElement()));
+		fireChangeEvent();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+		
+		removeEmptiedGroups();
+		
+		return row;
 	}
 	
 	/**
-	 * Check the visibility of all the child rows - and show/hide as appropriate.
+	 * Re-evaluate the row's filter, sort position and height - showing, hiding or moving it as required.
 	 * 
-	 * The change in total row heights is returned.
+	 * The change in total row heights is returned. The rows are NOT re-indexed.
 	 */
-	private int checkChildVisibility(final Row<T> parentRow) {
+	private int updateRow(final Row<T> row) {
 		int heightDelta = 0;
 		
-		final List<Row<T>> children = getChildren(parentRow);
-		for (Row<T> childRow : children) {
-			heightDelta += checkRowVisibility(childRow);
+		//
+		// If the element's group-by values have changed it moves to another group (see GroupModel).
+		//
+		final T oldGroupElement = (groupModel != null) ? groupModel.getParent(row.getElement()) : null;
+		final boolean regrouped = (groupModel != null) && groupModel.elementUpdated(row.getElement());
+		final Row<T> oldGroupRow = (regrouped && (oldGroupElement != null)) ? getRow(oldGroupElement) : null;
+		Row<T> groupRow = null;
+		
+		if (regrouped) {
+			//
+			// Take the row out of the visible rows (it's put back below) so that a new group's parent row, and then the row 
+			// itself, are positioned amongst rows which are all in order. Unlike hideRow, the row stays selected.
+			//
+			if (row.isVisible()) {
+				final int index = indexOfVisibleRow(row);
+				rows.remove(index);
+				fireRowRemovedEvent(row, index);
+				row.setRowIndex(-1);
+				hiddenRows.add(row);
+				row.setHiddenRowIndex(hiddenRows.size() - 1);
+				setRowVisible(row, false);
+				heightDelta -= getRowHeight(row);
+			}
+			
+			final T groupElement = getParentElement(row.getElement());
+			
+			if (getRow(groupElement) == null) {
+				groupRow = addGroupRow(groupElement);
+				
+				if (groupRow.isVisible()) {
+					heightDelta += getRowHeight(groupRow);
+				}
+			}
+		}
+		
+		//
+		// The element may have joined or left a group, and any cached sort orders or filter results must re-evaluate it.
+		//
+		sortModel.rowAdded(row);
+		filterModel.rowChanged(row);
+		countRow(row);
+		
+		//
+		// A row outside of the top N is treated as hidden until it's been re-evaluated and re-ranked.
+		//
+		topNModel.unpool(row);
+		
+		//
+		// Should the row be shown/hidden?
+		//
+		final boolean visible = filterModel.match(row);
+		
+		if (visible && row.isVisible()) {
+			//
+			// Should the row move? While the order is frozen (or a batch is being updated), the row stays put and is put into
+			// place later.
+			//
+			if (sortModel.isDeferringMoves()) {
+				sortModel.deferMove(row);
+				
+			} else if (!sortModel.isInSortedPosition(row, indexOfVisibleRow(row)) || (isParentRow(row) && !isGroupInSortedPosition(row))) {
+				if (isParentRow(row)) {
+					//
+					// Move the whole group (the row and its visible children) to the correct position.
+					//
+					moveGroup(row.getElement(), true);
+					
+				} else if (isChildElement(row.getElement())) {
+					final T parentElement = getParentElement(row.getElement());
+					
+					if (isNextToGroup(row, parentElement)) {
+						//
+						// Move the child row within it's group.
+						//
+						moveGroup(parentElement, false);
+						
+					} else {
+						//
+						// The row has joined the group from elsewhere, so move it on its own.
+						//
+						moveRow(row);
+					}
+					
+				} else {
+					//
+					// Move non-group rows.
+					//
+					moveRow(row);
+				}
+			}
+			
+			//
+			// Check if the row's height is accurate.
+			//				
+			heightDelta += getUpdatedRowHeightDelta(row);
+			
+		} else if (visible && !row.isVisible()) {
+			//
+			// Reveal the row.
+			//
+			showRow(row);
+			heightDelta += getRowHeight(row);
+			
+			if (isParentElement(row.getElement())) {
+				//
+				// If it's a parent, check its kiddies.
+				//
+				heightDelta += checkChildVisibility(row);
+				
+			} else if (isChildElement(row.getElement())) {
+				//
+				// If it's a sprog, check the parent.
+				//
+				heightDelta += checkParentVisibility(row);
+			}
+			
+		} else if (!visible && row.isVisible()) {
+			//
+			// Hide the row.
+			//
+			hideRow(row);				
+			heightDelta -= getRowHeight(row);
+			
+			if (isParentElement(row.getElement())) {
+				//
+				// If it's a parent, check the sprogs.
+				//
+				heightDelta += checkChildVisibility(row);
+				
+			} else if (isChildElement(row.getElement())) {
+				//
+				// If it's a sprog, check the parent.
+				//
+				heightDelta += checkParentVisibility(row);
+			}
+		}
+		
+		if (regrouped) {
+			//
+			// A new group's parent was filtered before it had any children.
+			//
+			if (groupRow != null) {
+				heightDelta += checkRowVisibility(groupRow);
+			}
+			
+			if (!row.isVisible() && row.isSelected()) {
+				selectionModel.removeRow(row);
+			}
+		}
+		
+		//
+		// Re-aggregate the row once it's in place - its parent is dealt with afterwards (see updateAggregatedParents).
+		//
+		aggregateModel.rowUpdated(row);
+		footerModel.rowUpdated(row);
+		facetModel.rowChanged(row);
+		
+		if (oldGroupRow != null) {
+			//
+			// The rest of the old group may have been shown by the row.
+			//
+			facetModel.rowChanged(oldGroupRow);
 		}
 		
 		return heightDelta;
 	}
 	
 	/**
-	 * Check the visibility of any parent row - and show/hide as appropriate.
+	 * Returns true if the visible row is next to another member of the group.
+	 */
+	private boolean isNextToGroup(final Row<T> row, final T groupElement) {
+		final int index = indexOfVisibleRow(row);
+		return ((index > 0) && (getGroupElement(rows.get(index - 1)) == groupElement)) 
+				|| ((index != -1) && (index < (rows.size() - 1)) && (getGroupElement(rows.get(index + 1)) == groupElement));
+	}
+	
+	/**
+	 * Swap each element into its existing row (found as per getRow - by an equal element, or the same id or key if the rows
+	 * are indexed by them), then run the rows through the normal update path (filtering, sorting, row heights). This allows 
+	 * immutable elements to be replaced without losing the row's state (selection, pinning, animation, etc.) and without 
+	 * the cost of a remove and re-add.
 	 * 
-	 * The change in total row heights is returned.
+	 * Elements with no existing row are ignored. Returns the rows which are visible after the operation.
+	 */
+	public Collection<Row<T>> replaceElements(final Collection<T> elements) {
+		if (batch != null) {
+			batch.elementsReplaced(elements);
+			return Collections.emptyList();
+		}
+		
+		return updateElements(swapElements(elements));
+	}
+	
+	/**
+	 * Swap each element into its existing row. Returns the elements which have a row.
+	 */
+	private List<T> swapElements(final Collection<T> elements) {
+		final List<T> replacedElements = new ArrayList<>(elements.size());
+		
+		for (final T element : elements) {
+			final Row<T> row = rowIndex.get(element);
+			
+			if (row == null) {
+				logger.warn("Cannot find row to replace for element " + contentProvider.getElementId(element));
+				
+			} else {
+				final T oldElement = row.getElement();
+				
+				if (oldElement != element) {
+					row.setElement(element);
+					selectionModel.replaceElement(oldElement, element);
+					
+					if ((snapshotTracker != null) && row.isVisible()) {
+						snapshotTracker.rowChanged(indexOfVisibleRow(row));
+					}
+					
+					if (groupModel != null) {
+						groupModel.replaceElement(oldElement, element);
+					}
+				}
+				
+				replacedElements.add(element);
+			}
+		}
+		
+		return replacedElements;
+	}
+	
+	/**
+	 * Re-sort the group's contiguous range of visible rows. If the group's position may have changed, the range is moved
+	 * as a single block to where it now belongs.
+	 * 
+	 * The row indexes (and group ranges) of the rows affected are kept valid as we're potentially in a loop of rows being 
+	 * shuffled around.
+	 */
+	private void moveGroup(final T groupElement, final boolean reposition) {
+		final int start = locateVisibleGroup(groupElement);
+		
+		if (start == -1) {
+			return;
+		}
+		
+		final Row<T> groupRow = getRow(groupElement);
+		final int end = start + groupRow.getGroupRowCount();
+		
+		if (!reposition) {
+			//
+			// The group's members are all that move, so sort them in-place.
+			//
+			final List<Row<T>> oldRows = hasRowDeltaListeners() ? new ArrayList<>(rows.subList(start, end)) : null;
+			Collections.sort(rows.subList(start, end), sortModel.getRowComparator());
+			reindex(start, end);
+			
+			if (oldRows != null) {
+				fireRowsMovedEvents(oldRows, start, start);
+			}
+			
+		} else {
+			final List<Row<T>> group = new ArrayList<>(rows.subList(start, end));
+			final List<Row<T>> oldRows = hasRowDeltaListeners() ? new ArrayList<>(group) : null;
+			Collections.sort(group, sortModel.getRowComparator());
+			rows.subList(start, end).clear();
+			
+			final int insertIndex = sortModel.getSortedRowIndex(group.get(0));
+			rows.addAll(insertIndex, group);
+			reindex(Math.min(start, insertIndex), Math.max(end, insertIndex + group.size()));
+			
+			if (oldRows != null) {
+				fireRowsMovedEvents(oldRows, start, insertIndex);
+			}
+		}
+	}
+	
+	private boolean isGroupInSortedPosition(final Row<T> parentRow) {
+		final int start = locateVisibleGroup(parentRow.getElement());
+		return (start == -1) || sortModel.isGroupInSortedPosition(parentRow, start, start + parentRow.getGroupRowCount());
+	}
+	
+	/**
+	 * Find the start of the group's contiguous range of visible rows, or -1 if there are none. 
+	 * 
+	 * The range recorded against the group's row is used if it's still accurate, otherwise the range is re-measured and 
+	 * recorded again.
+	 */
+	private int locateVisibleGroup(final T groupElement) {
+		final Row<T> groupRow = getRow(groupElement);
+		
+		if (groupRow == null) {
+			return -1;
+		}
+		
+		int start = groupRow.getGroupRowIndex();
+		int end = start + groupRow.getGroupRowCount();
+		
+		if ((groupRow.getGroupRowCount() > 0) && (start >= 0) && (end <= rows.size())
+				&& (getGroupElement(rows.get(start)) == groupElement) && (getGroupElement(rows.get(end - 1)) == groupElement)
+				&& ((start == 0) || (getGroupElement(rows.get(start - 1)) != groupElement))
+				&& ((end == rows.size()) || (getGroupElement(rows.get(end)) != groupElement))) {
+			return start;
+		}
+		
+		//
+		// The recorded range is stale, find any visible member of the group then measure the run of rows around it.
+		//
+		int memberIndex = -1;
+		
+		if (groupRow.isVisible()) {
+			memberIndex = indexOfVisibleRow(groupRow);
+			
+		} else {
+			for (final Row<T> childRow : getVisibleChildren(groupRow)) {
+				memberIndex = indexOfVisibleRow(childRow);
+				break;
+			}
+		}
+		
+		if (memberIndex == -1) {
+			groupRow.setGroupRange(-1, 0);
+			return -1;
+		}
+		
+		start = memberIndex;
+		while ((start > 0) && (getGroupElement(rows.get(start - 1)) == groupElement)) {
+			start--;
+		}
+		
+		end = memberIndex + 1;
+		while ((end < rows.size()) && (getGroupElement(rows.get(end)) == groupElement)) {
+			end++;
+		}
+		
+		groupRow.setGroupRange(start, end - start);
+		return start;
+	}
+	
+	/**
+	 * After rows have been added or removed (and the rows re-indexed) take the parents whose aggregates have changed. If they
+	 * could have moved, the rows are re-indexed again. Returns the change in total row heights.
+	 */
+	private int updateAggregatedParents() {
+		final Collection<Row<T>> parentsChanged = new ArrayList<Row<T>>();
+		final int heightDelta = updateAggregatedParents(parentsChanged);
+		
+		if (!parentsChanged.isEmpty() && aggregateModel.affectsLayout()) {
+			reindex();
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Take the parents whose aggregates have changed. Any cached sort orders and filter results for them are discarded and, 
+	 * if an aggregated column is sorted or filtered on, they're re-evaluated like an updated row. The visible parents are 
+	 * added to the collection specified (if any) to be repainted. Parents which move are placed together, after they've all
+	 * been updated.
+	 * 
+	 * Returns the change in total row heights. The rows are NOT re-indexed.
+	 */
+	private int updateAggregatedParents(final Collection<Row<T>> parentsChanged) {
+		int heightDelta = 0;
+		Collection<Row<T>> parents = aggregateModel.takeChangedParents();
+		
+		//
+		// Each group moved on its own would be placed amongst others whose aggregates have also changed, so they're placed
+		// together once they've all been updated (unless the caller is already deferring moves).
+		//
+		final boolean placeParents = !parents.isEmpty() && aggregateModel.affectsLayout() && !sortModel.isDeferringMoves();
+		
+		if (placeParents) {
+			sortModel.deferMoves();
+		}
+		
+		while (!parents.isEmpty()) {
+			final boolean affectsLayout = aggregateModel.affectsLayout();
+			
+			for (final Row<T> parentRow : parents) {
+				if (affectsLayout) {
+					heightDelta += updateRow(parentRow);
+					
+				} else {
+					sortModel.rowAdded(parentRow);
+					filterModel.rowChanged(parentRow);
+				}
+				
+				if ((parentsChanged != null) && parentRow.isVisible()) {
+					parentsChanged.add(parentRow);
+				}
+			}
+			
+			//
+			// Updating a parent can change the aggregates of its own parent.
+			//
+			parents = aggregateModel.takeChangedParents();
+		}
+		
+		if (placeParents) {
+			sortModel.placeDeferredMoves();
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Summarise the values of the column for each group's children on the parent rows (or stop, if the aggregate is null). The 
+	 * aggregates are rebuilt in a single pass and kept up-to-date as rows are added, updated and removed.
+	 */
+	public void setAggregate(final Column column, final Aggregate aggregate) {
+		column.setAggregate(aggregate);
+		aggregateModel.rebuild();
+		
+		for (final Row<T> parentRow : aggregateModel.takeChangedParents()) {
+			sortModel.rowAdded(parentRow);
+			filterModel.rowChanged(parentRow);
+		}
+		
+		if (filterModel.dependsOn(column)) {
+			filterModel.applyFilters();
+		}
+		
+		if (sortModel.dependsOn(column)) {
+			sortModel.refresh();
+			reindex();
+		}
+		
+		fireChangeEvent();
+	}
+	
+	/**
+	 * Summarise the column's values of all the visible rows in the footer row (or stop, if the aggregate is null). The footer 
+	 * is rebuilt in a single pass and kept up-to-date as rows are shown, hidden, added, updated and removed.
+	 */
+	public void setFooterAggregate(final Column column, final Aggregate aggregate) {
+		column.setFooterAggregate(aggregate);
+		footerModel.rebuild();
+		fireChangeEvent();
+	}
+	
+	/**
+	 * Index the distinct values of the column (or stop). The index is built in a single pass and kept up-to-date as rows are
+	 * added, updated and removed and as filters change.
+	 */
+	public void setFaceted(final Column column, final boolean faceted) {
+		column.setFaceted(faceted);
+		facetModel.rebuild();
+	}
+	
+	/**
+	 * The value of the cell. For a parent row, the column's aggregate of its children (if the column has one), otherwise
+	 * the content provider's value. Filters should use this to match aggregated values.
+	 */
+	public Object getValue(final Column column, final Row<T> row) {
+		if ((column.getAggregate() != null) && aggregateModel.isAggregated(column, row)) {
+			return aggregateModel.getValue(column, row);
+		}
+		
+		return contentProvider.getValue(column, row.getElement());
+	}
+	
+	/**
+	 * The row's position in the visible rows, or -1 if it's not visible. The row's cached index is kept accurate, so this
+	 * doesn't scan the rows.
+	 */
+	public int indexOfRow(final Row<T> row) {
+		return ((row == null) || !row.isVisible()) ? -1 : indexOfVisibleRow(row);
+	}
+	
+	/**
+	 * The row's position in the visible rows - using the cached index if it's accurate.
+	 */
+	private int indexOfVisibleRow(final Row<T> row) {
+		final int rowIndex = row.getRowIndex();
+		
+		if ((rowIndex >= 0) && (rowIndex < rows.size()) && (rows.get(rowIndex) == row)) {
+			return rowIndex;
+		}
+		
+		return rows.indexOf(row);
+	}
+	
+	/**
+	 * The element which represents the row's group - it's parent, or itself if it's a parent. Null for rows not in a group.
+	 */
+	private T getGroupElement(final Row<T> row) {
+		final T parent = contentProvider.getParent(row.getElement());
+		
+		if (parent != null) {
+			return parent;
+		}
+		
+		return isParentRow(row) ? row.getElement() : null;
+	}
+	
+	/**
+	 * Remove the row and insert back where it belongs.
+	 */
+	private void moveRow(final Row<T> row) {
+		final int oldIndex = indexOfVisibleRow(row);
+		rows.remove(oldIndex);
+		
+		final int newConcreatedIndex = sortModel.getSortedRowIndex(row);
+		rows.add(newConcreatedIndex, row);
+		
+		if (oldIndex != newConcreatedIndex) {
+			fireRowMovedEvent(row, oldIndex, newConcreatedIndex);
+		}
+		
+		//
+		// Only the rows between the old and new positions have shifted.
+		//
+		reindex(Math.min(oldIndex, newConcreatedIndex), Math.max(oldIndex, newConcreatedIndex) + 1);
+	}
+
+	/**
+	 * Get the cached height of a row, then force it to be recalculated (because value-changed may have caused styling to change).
+	 * Return the delta between the old and new heights. 
+	 */
+	private int getUpdatedRowHeightDelta(final Row<T> row) {
+		final int oldHeight = getRowHeight(row);
+		row.setHeight(labelProvider.getDefaultRowHeight(row.getElement()));
+		final int newHeight = getRowHeight(row);
+		
+		if ((newHeight != oldHeight) && hasRowDeltaListeners()) {
+			fireRowHeightChangedEvent(row, indexOfVisibleRow(row));
+		}
+		
+		return newHeight - oldHeight;
+	}
+	
+	/**
+	 * Check the visibility of all the child rows - and show/hide as appropriate.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int checkChildVisibility(final Row<T> parentRow) {
+		int heightDelta = 0;
+		
+		final List<Row<T>> children = getChildren(parentRow);
+		for (Row<T> childRow : children) {
+			heightDelta += checkRowVisibility(childRow);
+		}
+		
+		return heightDelta;
+	}
+	
+	/**
+	 * Check the visibility of any parent row - and show/hide as appropriate.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int checkParentVisibility(final Row<T> childRow) {
+		final T parent = getParentElement(childRow.getElement());
+		
+		if (parent != null) {
+			final Row<T> parentRow = getRow(parent);
+			
+			if (parentRow != null) {
+				return checkRowVisibility(parentRow);
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Check the visibility of the row - and show/hide as appropriate.
+	 * 
+	 * The change in total row heights is returned.
+	 */
+	private int checkRowVisibility(final Row<T> row) {
+		int heightDelta = 0;
+		final boolean shouldBeVisible = filterModel.match(row);
+
+		if (topNModel.isPooled(row)) {
+			//
+			// A row outside of the top N stays in the pool while it matches (it's re-ranked when the top N is enforced).
+			//
+			if (!shouldBeVisible) {
+				topNModel.unpool(row);
+			}
+
+		} else if (!row.isVisible() && shouldBeVisible) {
+			showRow(row);
+			heightDelta += getRowHeight(row);
+			
+		} else if (row.isVisible() && !shouldBeVisible) {
+			hideRow(row);				
+			heightDelta -= getRowHeight(row);
+		}
+		
+		return heightDelta;
+	}
+	
+	private void reindexAlternateBackground(final int rowIndex) {
+		if ((rowIndex > 0) && (rowIndex < rows.size())) {
+			rows.get(rowIndex).setAlternateBackground(labelProvider.shouldAlternateBackground(rows.get(rowIndex-1), rows.get(rowIndex)));
+		}
+	}
+	
+	public void reindex() {
+		reindex(0);
+		
+		if (logger.isTraceEnabled()) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("Reindexed - Visible Rows\n");
+			for (Row<T> row : rows) {
+				sb.append(String.format("%s->%s\n", contentProvider.getElementId(row.getElement()), row));
+			}
+			sb.append("Hidden Rows");
+			for (Row<T> row : hiddenRows) {
+				sb.append(String.format("%s->%s\n", contentProvider.getElementId(row.getElement()), row));
+			}
+		}
+	}
+
+	/**
+	 * Re-seed the visible row indexes from the specified position onwards (the rows above it are assumed to be correct already), 
+	 * and all the hidden row indexes.
+	 */
+	private void reindex(final int fromRowIndex) {
+		int startIndex = Math.max(0, Math.min(fromRowIndex, rows.size()));
+		
+		//
+		// Start from the beginning of any group which straddles the index, so it's range is measured in full.
+		//
+		if (startIndex > 0) {
+			final T groupElement = getGroupElement(rows.get(startIndex - 1));
+			
+			while ((groupElement != null) && (startIndex > 0) && (getGroupElement(rows.get(startIndex - 1)) == groupElement)) {
+				startIndex--;
+			}
+		}
+		
+		reindex(startIndex, rows.size());
+		
+		int hiddenRowIndex = 0;
+		for (Row<T> row : hiddenRows) {
+			row.setHiddenRowIndex(hiddenRowIndex++);
+		}
+	}
+
+	/**
+	 * Re-seed the row indexes, alternate backgrounds and group ranges of the visible rows in the range specified.
+	 * 
+	 * The range must start at the beginning of a group and end at the end of one.
+	 */
+	private void reindex(final int fromRowIndex, final int toRowIndex) {
+		T groupElement = null;
+		Row<T> groupRow = null;
+		
+		for (int rowIndex=fromRowIndex; rowIndex<toRowIndex; rowIndex++) {
+			final Row<T> row = rows.get(rowIndex);
+			row.setRowIndex(rowIndex);
+			
+			if (rowIndex == 0) {
+				row.setAlternateBackground(false);
+			} else {
+				row.setAlternateBackground(labelProvider.shouldAlternateBackground(rows.get(rowIndex-1), row));
+			}
+			
+			//
+			// Record the range of each group against the group's row.
+			//
+			final T rowGroupElement = getGroupElement(row);
+			
+			if (rowGroupElement != groupElement) {
+				groupElement = rowGroupElement;
+				groupRow = (groupElement == null) ? null : getRow(groupElement);
+				
+				if (groupRow != null) {
+					groupRow.setGroupRange(rowIndex, 0);
+				}
+			}
+			
+			if (groupRow != null) {
+				groupRow.setGroupRange(groupRow.getGroupRowIndex(), groupRow.getGroupRowCount() + 1);
+			}
+		}
+	}
+
+	public void clearElements() {
+		//
+		// Clear all selections.
+		//
+		selectionModel.clear(false);
+		
+		//
+		// Clear rows.
+		//
+		rows.clear();
+		hiddenRows.clear();
+		rowIndex.clear();
+		aggregateModel.rowsCleared();
+		footerModel.rowsCleared();
+		facetModel.rowsCleared();
+		
+		if (groupModel != null) {
+			groupModel.clear();
+		}
+		
+		releaseOrdinals();
+		selectionModel.rowsCleared();
+		sortModel.rowsCleared();
+		filterModel.rowsCleared();
+		topNModel.rowsCleared();
+		parentRowCount = 0;
+		visibleParentRowCount = 0;
+		fireRowsResetEvent();
+
+		fireChangeEvent();
+	}
+	
+	public void showRow(final Row<T> row) {
+		showRow(row, true);
+	}
+	
+	/**
+	 * Flag the row as visible or hidden, keeping the visible parent count and the footer up-to-date. The caller is 
+	 * responsible for moving the row between the visible and hidden rows.
+	 */
+	void setRowVisible(final Row<T> row, final boolean visible) {
+		if (visible != row.isVisible()) {
+			row.setVisible(visible);
+			
+			if (visible) {
+				selectionModel.rowShown(row);
+				footerModel.rowShown(row);
+				
+			} else {
+				footerModel.rowHidden(row);
+			}
+			
+			if (row.isCountedParent()) {
+				visibleParentRowCount += visible ? 1 : -1;
+			}
+		}
+	}
+	
+	/**
+	 * Called when a row is added or updated (an element can gain or lose its children).
+	 */
+	private void countRow(final Row<T> row) {
+		final boolean parent = isParentRow(row);
+		
+		//
+		// The sort model needs to know if the row is in a group - it's worked out here so the content provider is only asked once.
+		//
+		sortModel.rowGrouped(row, parent || ((row.getElement() != null) && isChildElement(row.getElement())));
+		
+		if (parent != row.isCountedParent()) {
+			row.setCountedParent(parent);
+			parentRowCount += parent ? 1 : -1;
+			
+			if (row.isVisible()) {
+				visibleParentRowCount += parent ? 1 : -1;
+			}
+		}
+	}
+	
+	/**
+	 * Called when a row is removed.
+	 */
+	private void uncountRow(final Row<T> row) {
+		if (row.isCountedParent()) {
+			row.setCountedParent(false);
+			parentRowCount--;
+			
+			if (row.isVisible()) {
+				visibleParentRowCount--;
+			}
+		}
+	}
+	
+	public void showRow(final Row<T> row, final boolean removeFromOppsosite) {
+		final int insertIndex = sortModel.getSortedRowIndex(row);
+
+		if (insertIndex >= 0) {			
+			rows.add(insertIndex, row);
+			row.setRowIndex(insertIndex);
+			
+		} else {
+			rows.add(row);
+			row.setRowIndex(rows.size()-1);
+		}
+		
+		fireRowInsertedEvent(row, row.getRowIndex());
+
+		if (removeFromOppsosite) {
+			removeHiddenRow(row);
+		}
+		
+		if (sortModel.isDeferringMoves()) {
+			sortModel.deferMove(row);
+		}
+		
+		setRowVisible(row, true);
+		
+		if (logger.isTraceEnabled()) {
+			logger.trace("Element {} shown at {}", getElementId(row), row.getRowIndex());
+		}
+	}
+
+	public void hideRow(final Row<T> row) {
+		hideRow(row, true);
+	}
+	
+	public void hideRow(final Row<T> row, final boolean removeFromOppsosite) {
+		if (removeFromOppsosite) {
+			final int index = indexOfVisibleRow(row);
+			
+			if (index != -1) {
+				rows.remove(index);
+				fireRowRemovedEvent(row, index);
+			}
+			
+			row.setRowIndex(-1);
+		}
+		
+		if (row.isSelected()) {
+			selectionModel.removeRow(row);
+		}
+				
+		hiddenRows.add(row);
+		row.setHiddenRowIndex(hiddenRows.size()-1);
+		setRowVisible(row, false);
+		
+		if (logger.isTraceEnabled()) {
+			logger.trace("Element {} hidden", getElementId(row));
+		}
+	}
+
+	/**
+	 * Show and hide many rows at once. Rather than inserting/removing one row at a time, the visible and hidden lists are each 
+	 * compacted in a single pass and the rows being shown are sorted and merged into position.
+	 * 
+	 * The rows are re-indexed but no events are fired. Returns true if a selected row was hidden.
+	 */
+	public boolean setRowsVisible(final Collection<Row<T>> rowsToShow, final Collection<Row<T>> rowsToHide) {
+		boolean selectionChanged = false;
+		final int[] hiddenIndexes = hasRowDeltaListeners() ? getRowIndexes(rowsToHide) : null;
+		
+		for (final Row<T> row : rowsToHide) {
+			if (row.isSelected()) {
+				selectionChanged |= selectionModel.removeRow(row);
+			}
+			
+			setRowVisible(row, false);
+			row.setRowIndex(-1);
+		}
+		
+		for (final Row<T> row : rowsToShow) {
+			setRowVisible(row, true);
+			row.setHiddenRowIndex(-1);
+		}
+		
+		if (!rowsToHide.isEmpty()) {
+			compactRows(rows, 0, false);
+		}
+		
+		if (!rowsToShow.isEmpty()) {
+			compactRows(hiddenRows, 0, true);
+		}
+		
+		hiddenRows.addAll(rowsToHide);
+		sortModel.mergeRows(rowsToShow);
+		
+		if (topNModel.isEnabled()) {
+			//
+			// Re-select the top N if many rows have been shown, otherwise just swap rows in and out at the boundary. Either way,
+			// a reset is notified rather than the individual rows.
+			//
+			suppressedRowDeltas++;
+			
+			if (rowsToShow.size() > topNModel.getTopN()) {
+				selectionChanged |= topNModel.rebuild();
+				
+			} else {
+				selectionChanged |= topNModel.enforce();
+			}
+			
+			suppressedRowDeltas--;
+		}
+		
+		reindex();
+		
+		if (hiddenIndexes != null) {
+			if (topNModel.isEnabled()) {
+				fireRowsResetEvent();
+				
+			} else {
+				fireRowsRemovedEvents(rowsToHide, hiddenIndexes);
+				fireRowsInsertedEvents(rowsToShow);
+			}
+		}
+		
+		return selectionChanged;
+	}
+
+	/**
+	 * Collapse or expand the specified groups.
+	 * 
+	 * Only the immediate children of the groups are re-evaluated by the filter model and they are removed/inserted as a block, 
+	 * rather than re-filtering every row in the grid.
+	 */
+	public void setGroupsCollapsed(final Collection<T> elements, final boolean collapsed) {
+		final List<Row<T>> rowsToHide = new ArrayList<>();
+		final List<List<Row<T>>> groupsToShow = new ArrayList<>();
+		
+		for (final T element : elements) {
+			contentProvider.setCollapsed(element, collapsed);
+			
+			final Row<T> parentRow = getRow(element);
+			if (parentRow != null) {
+				checkGroupVisibility(parentRow, rowsToHide, groupsToShow);
+			}
+		}
+		
+		applyGroupVisibility(rowsToHide, groupsToShow);
+	}
+	
+	/**
+	 * Collapse or expand all the visible groups in a single pass of the rows.
+	 */
+	public void setAllGroupsCollapsed(final boolean collapsed) {
+		final List<Row<T>> rowsToHide = new ArrayList<>();
+		final List<List<Row<T>>> groupsToShow = new ArrayList<>();
+		final List<Row<T>> parentRows = new ArrayList<>();
+		
+		for (final Row<T> row : rows) {
+			if (isParentRow(row)) {
+				parentRows.add(row);
+			}
+		}
+		
+		for (final Row<T> parentRow : parentRows) {
+			contentProvider.setCollapsed(parentRow.getElement(), collapsed);
+			checkGroupVisibility(parentRow, rowsToHide, groupsToShow);
+		}
+		
+		applyGroupVisibility(rowsToHide, groupsToShow);
+	}
+	
+	/**
+	 * Run the group's children through the filter model and gather the ones which need hiding or showing.
+	 */
+	private void checkGroupVisibility(final Row<T> parentRow, final List<Row<T>> rowsToHide, final List<List<Row<T>>> groupsToShow) {
+		final List<Row<T>> rowsToShow = new ArrayList<>();
+		
+		//
+		// The group's collapsed state has changed, so any cached filter results must re-evaluate it.
+		//
+		filterModel.rowChanged(parentRow);
+		
+		for (final Row<T> childRow : getChildren(parentRow)) {
+			final boolean shouldBeVisible = filterModel.match(childRow);
+
+			if (topNModel.isPooled(childRow)) {
+				//
+				// A row outside of the top N stays in the pool while it matches (it's re-ranked when the top N is enforced).
+				//
+				if (!shouldBeVisible) {
+					topNModel.unpool(childRow);
+				}
+
+			} else if (childRow.isVisible() && !shouldBeVisible) {
+				rowsToHide.add(childRow);
+				
+			} else if (!childRow.isVisible() && shouldBeVisible) {
+				rowsToShow.add(childRow);
+			}
+		}
+		
+		if (!rowsToShow.isEmpty()) {
+			groupsToShow.add(rowsToShow);
+		}
+	}
+	
+	/**
+	 * Remove the rows to hide and insert each group of rows to show as a contiguous block (the comparator keeps a group's 
+	 * children together). Only the rows from the first change onwards are re-indexed.
+	 */
+	private void applyGroupVisibility(final List<Row<T>> rowsToHide, final List<List<Row<T>>> groupsToShow) {
+		int heightDelta = 0;
+		int firstChangedIndex = rows.size();
+		boolean selectionChanged = false;
+		final int[] hiddenIndexes = hasRowDeltaListeners() ? getRowIndexes(rowsToHide) : null;
+		
+		//
+		// Hide rows - flag them first then compact the visible list in one pass.
+		//
+		if (!rowsToHide.isEmpty()) {
+			for (final Row<T> row : rowsToHide) {
+				firstChangedIndex = Math.min(firstChangedIndex, row.getRowIndex());
+				selectionChanged |= row.isSelected();
+				heightDelta -= getRowHeight(row);
+				hideRow(row, false);
+				row.setRowIndex(-1);
+			}
+			
+			compactRows(rows, firstChangedIndex, false);
+		}
+		
+		//
+		// Show rows - work out where each block lives in the (now compacted) visible list.
+		//
+		if (!groupsToShow.isEmpty()) {
+			final List<RowBlock<T>> blocks = new ArrayList<>();
+			int firstHiddenIndex = hiddenRows.size();
+			
+			for (final List<Row<T>> group : groupsToShow) {
+				Collections.sort(group, sortModel.getRowComparator());
+				
+				for (final Row<T> row : group) {
+					firstHiddenIndex = Math.min(firstHiddenIndex, row.getHiddenRowIndex());
+					heightDelta += getRowHeight(row);
+					setRowVisible(row, true);
+					row.setHiddenRowIndex(-1);
+				}
+				
+				final int insertIndex = sortModel.getSortedRowIndex(group.get(0));
+				
+				if ((group.size() == 1) || (insertIndex == sortModel.getSortedRowIndex(group.get(group.size()-1)))) {
+					blocks.add(new RowBlock<T>(insertIndex, group));
+					
+				} else {
+					//
+					// A custom comparator hasn't kept the group contiguous, insert each row on its own.
+					//
+					for (final Row<T> row : group) {
+						blocks.add(new RowBlock<T>(sortModel.getSortedRowIndex(row), Collections.singletonList(row)));
+					}
+				}
+			}
+			
+			compactRows(hiddenRows, firstHiddenIndex, true);
+			firstChangedIndex = Math.min(firstChangedIndex, insertBlocks(blocks));
+		}
+		
+		if (logger.isTraceEnabled()) {
+			logger.trace("Groups hid {} row(s) and showed {} group(s) from index {}", rowsToHide.size(), groupsToShow.size(), firstChangedIndex);
+		}
+		
+		if (topNModel.isEnabled()) {
+			suppressedRowDeltas++;
+			selectionChanged |= topNModel.enforce();
+			heightDelta += topNModel.getHeightDelta();
+			suppressedRowDeltas--;
+			firstChangedIndex = 0;
+		}
+		
+		reindex(firstChangedIndex);
+		
+		if ((hiddenIndexes != null) && topNModel.isEnabled()) {
+			fireRowsResetEvent();
+			
+		} else if (hiddenIndexes != null) {
+			fireRowsRemovedEvents(rowsToHide, hiddenIndexes);
+			
+			final List<Row<T>> rowsShown = new ArrayList<>();
+			for (final List<Row<T>> group : groupsToShow) {
+				rowsShown.addAll(group);
+			}
+			fireRowsInsertedEvents(rowsShown);
+		}
+		
+		if (heightDelta != 0) {
+			fireHeightChangeEvent(heightDelta);
+		}
+		
+		fireRowCountChangedEvent();
+		fireChangeEvent();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+	}
+	
+	/**
+	 * Compact the list (from the index specified) in a single pass, dropping either the visible or the hidden rows.
 	 */
-	private int checkParentVisibility(final Row<T> childRow) {
-		final T parent = getParentElement(childRow.getElement());
+	private void compactRows(final List<Row<T>> list, final int fromIndex, final boolean dropVisible) {
+		int writeIndex = fromIndex;
 		
-		if (parent != null) {
-			final Row<T> parentRow = getRow(parent);
+		for (int readIndex=fromIndex; readIndex<list.size(); readIndex++) {
+			final Row<T> row = list.get(readIndex);
 			
-			if (parentRow != null) {
-				return checkRowVisibility(parentRow);
+			if (row.isVisible() != dropVisible) {
+				list.set(writeIndex++, row);
 			}
 		}
-		return 0;
+		
+		list.subList(writeIndex, list.size()).clear();
 	}
 	
 	/**
-	 * Check the visibility of the row - and show/hide as appropriate.
-	 * 
-	 * The change in total row heights is returned.
+	 * Remove a row from the hidden rows. They're in no particular order, so the last hidden row is moved into the gap rather
+	 * than shifting all the rows after it.
 	 */
-	private int checkRowVisibility(final Row<T> row) {
-		int heightDelta = 0;
-		final boolean shouldBeVisible = filterModel.match(row);
+	void removeHiddenRow(final Row<T> row) {
+		int index = row.getHiddenRowIndex();
 		
-		if (!row.isVisible() && shouldBeVisible) {
-			showRow(row);
-			heightDelta += getRowHeight(row);
-			
-		} else if (row.isVisible() && !shouldBeVisible) {
-			hideRow(row);				
-			heightDelta -= getRowHeight(row);
+		if ((index < 0) || (index >= hiddenRows.size()) || (hiddenRows.get(index) != row)) {
+			index = hiddenRows.indexOf(row);
 		}
 		
-		return heightDelta;
-	}
-	
-	public void reindex() {
-		int rowIndex = 0;
-		for (Row<T> row : rows) {
-			row.setRowIndex(rowIndex++);
+		if (index != -1) {
+			final Row<T> lastRow = hiddenRows.remove(hiddenRows.size() - 1);
 			
-			if (rowIndex == 1) {
-				row.setAlternateBackground(false);
-			} else {
-				row.setAlternateBackground(labelProvider.shouldAlternateBackground(rows.get(rowIndex-2), row));
+			if (lastRow != row) {
+				hiddenRows.set(index, lastRow);
+				lastRow.setHiddenRowIndex(index);
 			}
 		}
 		
-		rowIndex = 0;
-		for (Row<T> row : hiddenRows) {
-			row.setHiddenRowIndex(rowIndex++);
-		}
+		row.setHiddenRowIndex(-1);
+	}
+	
+	/**
+	 * If only the top N rows are to be shown, swap rows in and out at the boundary. Any rows which are no longer visible are
+	 * dropped from the rows shown. Returns true if the selection has changed - the change in total row heights is then
+	 * available from the TopNModel.
+	 */
+	private boolean enforceTopN(final Collection<Row<T>> rowsShown) {
+		final boolean selectionChanged = topNModel.enforce();
 		
-		if (logger.isTraceEnabled()) {
-			final StringBuilder sb = new StringBuilder();
-			sb.append("Reindexed - Visible Rows\n");
-			for (Row<T> row : rows) {
-				sb.append(String.format("%s->%s\n", contentProvider.getElementId(row.getElement()), row));
-			}
-			sb.append("Hidden Rows");
-			for (Row<T> row : hiddenRows) {
-				sb.append(String.format("%s->%s\n", contentProvider.getElementId(row.getElement()), row));
+		if (topNModel.isEnabled()) {
+			final Iterator<Row<T>> iterator = rowsShown.iterator();
+			while (iterator.hasNext()) {
+				if (!iterator.next().isVisible()) {
+					iterator.remove();
+				}
 			}
 		}
-	}
-
-	public void clearElements() {
-		//
-		// Clear all selections.
-		//
-		selectionModel.clear(false);
 		
-		//
-		// Clear rows.
-		//
-		rows.clear();
-		hiddenRows.clear();
-		rowsByElement.clear();
-
-		fireChangeEvent();
-	}
-	
-	public void showRow(final Row<T> row) {
-		showRow(row, true);
+		return selectionChanged;
 	}
 	
-	public void showRow(final Row<T> row, final boolean removeFromOppsosite) {
-		final int insertIndex = sortModel.getSortedRowIndex(row);
-
-		if (insertIndex >= 0) {			
-			rows.add(insertIndex, row);
-			row.setRowIndex(insertIndex);
-			
-		} else {
-			rows.add(row);
-			row.setRowIndex(rows.size()-1);
-		}
-
-		if (removeFromOppsosite) {
-			hiddenRows.remove(row);
-			row.setHiddenRowIndex(-1);
+	/**
+	 * Insert the blocks of rows into the visible rows at their (pre-insertion) indexes. Returns the lowest index changed.
+	 */
+	private int insertBlocks(final List<RowBlock<T>> blocks) {
+		if (blocks.size() == 1) {
+			final RowBlock<T> block = blocks.get(0);
+			rows.addAll(block.index, block.rows);
+			return block.index;
 		}
 		
-		row.setVisible(true);
+		//
+		// Order the blocks by position (and blocks at the same position by their first row), then splice them in with a single pass.
+		//
+		Collections.sort(blocks, new Comparator<RowBlock<T>>() {
+			@Override
+			public int compare(final RowBlock<T> block1, final RowBlock<T> block2) {
+				final int result = Integer.compare(block1.index, block2.index);
+				return (result != 0) ? result : sortModel.getRowComparator().compare(block1.rows.get(0), block2.rows.get(0));
+			}
+		});
+		
+		final int firstIndex = blocks.get(0).index;
+		final List<Row<T>> tail = new ArrayList<>(rows.subList(firstIndex, rows.size()));
+		rows.subList(firstIndex, rows.size()).clear();
 		
-		if (logger.isTraceEnabled()) {
-			logger.trace("Element {} shown at {}", getElementId(row), row.getRowIndex());
+		int tailIndex = 0;
+		for (final RowBlock<T> block : blocks) {
+			while ((firstIndex + tailIndex) < block.index) {
+				rows.add(tail.get(tailIndex++));
+			}
+			
+			rows.addAll(block.rows);
 		}
-	}
-
-	public void hideRow(final Row<T> row) {
-		hideRow(row, true);
+		
+		rows.addAll(tail.subList(tailIndex, tail.size()));		
+		return firstIndex;
 	}
 	
-	public void hideRow(final Row<T> row, final boolean removeFromOppsosite) {
-		if (removeFromOppsosite) {
-			rows.remove(row);
-			row.setRowIndex(-1);
-		}
-		
-		if (row.isSelected()) {
-			selectionModel.removeRow(row);
-		}
-				
-		hiddenRows.add(row);
-		row.setHiddenRowIndex(hiddenRows.size()-1);
-		row.setVisible(false);
+	/**
+	 * A contiguous run of rows to insert at an index in the visible rows.
+	 */
+	private static class RowBlock<T> {
+		private final int index;
+		private final List<Row<T>> rows;
 		
-		if (logger.isTraceEnabled()) {
-			logger.trace("Element {} hidden", getElementId(row));
+		private RowBlock(final int index, final List<Row<T>> rows) {
+			this.index = index;
+			this.rows = rows;
 		}
 	}
 
@@ -931,6 +2622,7 @@ public class GridModel<T> {
 		}
 
 		rebuildVisibleColumns();
+		regroup();
 		fireChangeEvent();
 	}
 
@@ -944,6 +2636,7 @@ public class GridModel<T> {
 		
 		groupByColumns.removeAll(columns);		
 		rebuildVisibleColumns();
+		regroup();
 		fireChangeEvent();
 	}
 
@@ -960,9 +2653,264 @@ public class GridModel<T> {
 		// Rebuild the model's groups
 		//
 		groupByColumns.clear();
+		regroup();
 		fireChangeEvent();
 	}
+	
+	/**
+	 * If the group model builds the groups, rebuild them for the current group-by columns.
+	 */
+	private void regroup() {
+		if (groupModel != null) {
+			regroup(groupModel.getGroupElements());
+		}
+	}
+	
+	/**
+	 * Rebuild the groups in a single pass. The rows of the old groups' parents are dropped (in one pass of the visible and 
+	 * hidden rows), rows are added for the new groups' parents, then every row is re-evaluated and the rows are re-filtered 
+	 * and re-sorted once.
+	 */
+	private void regroup(final Collection<T> oldGroupElements) {
+		boolean selectionChanged = false;
+		
+		if (!oldGroupElements.isEmpty()) {
+			final Set<Row<T>> oldGroupRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>(oldGroupElements.size()));
+			
+			for (final T element : oldGroupElements) {
+				final Row<T> row = rowIndex.remove(element);
+				
+				if (row != null) {
+					aggregateModel.rowRemoved(row);
+					footerModel.rowHidden(row);
+					sortModel.rowRemoved(row);
+					filterModel.rowChanged(row);
+					uncountRow(row);
+					
+					if (topNModel.isPooled(row)) {
+						topNModel.unpool(row);
+					}
+					
+					if (row.isSelected()) {
+						selectionChanged |= selectionModel.removeRow(row);
+					}
+					
+					releaseOrdinal(row);
+					
+					if (row.isPinned()) {
+						columnHeaderRows.remove(row);
+					}
+					
+					oldGroupRows.add(row);
+				}
+			}
+			
+			removeRows(rows, oldGroupRows);
+			removeRows(hiddenRows, oldGroupRows);
+		}
+		
+		//
+		// Build the new groups (if there are any group-by columns), each parent row starts hidden and is revealed by the filters.
+		//
+		if (groupModel != null) {
+			for (final T groupElement : groupModel.rebuild(rowIndex.values())) {
+				final Row<T> row = rowProvider.createRow(groupElement);
+				row.setHeight(labelProvider.getDefaultRowHeight(groupElement));
+				if (!rowIndex.put(row)) {
+					logger.warn("Group element {} has no key or the same key as another row - it can only be found by the element itself", groupElement);
+				}
+				
+				allocateOrdinal(row);
+				selectionModel.rowAdded(row);
+				hideRow(row, false);
+			}
+		}
+		
+		//
+		// Every row may have joined or left a group.
+		//
+		for (final Row<T> row : rowIndex.values()) {
+			sortModel.rowAdded(row);
+			filterModel.rowChanged(row);
+			countRow(row);
+		}
+		
+		aggregateModel.rebuild();
+		aggregateModel.takeChangedParents();
+		
+		reindex();
+		filterModel.applyFilters();
+		sortModel.refresh();
+		reindex();
+		
+		if (selectionChanged) {
+			fireSelectionChangedEvent();
+		}
+	}
+	
+	/**
+	 * Remove the rows from the list in a single pass.
+	 */
+	private void removeRows(final List<Row<T>> list, final Set<Row<T>> rowsToRemove) {
+		int writeIndex = 0;
+		
+		for (int readIndex=0; readIndex<list.size(); readIndex++) {
+			final Row<T> row = list.get(readIndex);
+			
+			if (!rowsToRemove.contains(row)) {
+				list.set(writeIndex++, row);
+			}
+		}
+		
+		list.subList(writeIndex, list.size()).clear();
+	}
+	
+	/**
+	 * Remove the parents of any groups which have been emptied (see GroupModel).
+	 */
+	private void removeEmptiedGroups() {
+		if (groupModel != null) {
+			final List<T> groupElements = groupModel.takeEmptiedGroupElements();
+			
+			if (!groupElements.isEmpty()) {
+				removeElements(groupElements);
+			}
+		}
+	}
 
+	public void addRowDeltaListener(final IRowDeltaListener<T> listener) {
+		rowDeltaListeners.add(listener);
+	}
+	
+	public void removeRowDeltaListener(final IRowDeltaListener<T> listener) {
+		rowDeltaListeners.remove(listener);
+	}
+	
+	boolean hasRowDeltaListeners() {
+		return !rowDeltaListeners.isEmpty() && (suppressedRowDeltas == 0);
+	}
+	
+	void fireRowInsertedEvent(final Row<T> row, final int index) {
+		if (hasRowDeltaListeners()) {
+			for (final IRowDeltaListener<T> listener : rowDeltaListeners) {
+				listener.rowInserted(row.getElement(), index);
+			}
+		}
+	}
+	
+	void fireRowRemovedEvent(final Row<T> row, final int index) {
+		if (hasRowDeltaListeners()) {
+			for (final IRowDeltaListener<T> listener : rowDeltaListeners) {
+				listener.rowRemoved(row.getElement(), index);
+			}
+		}
+	}
+	
+	void fireRowMovedEvent(final Row<T> row, final int fromIndex, final int toIndex) {
+		if (hasRowDeltaListeners()) {
+			for (final IRowDeltaListener<T> listener : rowDeltaListeners) {
+				listener.rowMoved(row.getElement(), fromIndex, toIndex);
+			}
+		}
+	}
+	
+	void fireRowHeightChangedEvent(final Row<T> row, final int index) {
+		if (hasRowDeltaListeners()) {
+			for (final IRowDeltaListener<T> listener : rowDeltaListeners) {
+				listener.rowHeightChanged(row.getElement(), index, getRowHeight(row));
+			}
+		}
+	}
+	
+	void fireRowsResetEvent() {
+		if (hasRowDeltaListeners()) {
+			for (final IRowDeltaListener<T> listener : rowDeltaListeners) {
+				listener.rowsReset();
+			}
+		}
+	}
+	
+	/**
+	 * The current positions of the visible rows specified (before they're hidden).
+	 */
+	private int[] getRowIndexes(final Collection<Row<T>> visibleRows) {
+		final int[] indexes = new int[visibleRows.size()];
+		int index = 0;
+		
+		for (final Row<T> row : visibleRows) {
+			indexes[index++] = indexOfVisibleRow(row);
+		}
+		
+		return indexes;
+	}
+	
+	/**
+	 * Notify the removal of the rows from the positions they had - last position first, so each position is still valid when
+	 * it's notified.
+	 */
+	private void fireRowsRemovedEvents(final Collection<Row<T>> rowsRemoved, final int[] indexes) {
+		if (rowsRemoved.isEmpty()) {
+			return;
+		}
+		
+		final List<Row<T>> removed = new ArrayList<>(rowsRemoved);
+		final Integer[] order = new Integer[indexes.length];
+		for (int index=0; index<order.length; index++) {
+			order[index] = index;
+		}
+		
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer index1, final Integer index2) {
+				return Integer.compare(indexes[index2], indexes[index1]);
+			}
+		});
+		
+		for (final Integer index : order) {
+			if (indexes[index] != -1) {
+				fireRowRemovedEvent(removed.get(index), indexes[index]);
+			}
+		}
+	}
+	
+	/**
+	 * Notify the insertion of the (now visible and re-indexed) rows - first position first, so the rows after each one are
+	 * still to be inserted when it's notified.
+	 */
+	private void fireRowsInsertedEvents(final Collection<Row<T>> rowsInserted) {
+		final List<Row<T>> inserted = new ArrayList<>();
+		for (final Row<T> row : rowsInserted) {
+			if (row.isVisible()) {
+				inserted.add(row);
+			}
+		}
+		
+		Collections.sort(inserted, new Comparator<Row<T>>() {
+			@Override
+			public int compare(final Row<T> row1, final Row<T> row2) {
+				return Integer.compare(row1.getRowIndex(), row2.getRowIndex());
+			}
+		});
+		
+		for (final Row<T> row : inserted) {
+			fireRowInsertedEvent(row, row.getRowIndex());
+		}
+	}
+	
+	/**
+	 * A block of rows which started at fromIndex (in the order given) is now at toIndex (possibly in a different order). It's 
+	 * notified as removed then inserted again.
+	 */
+	private void fireRowsMovedEvents(final List<Row<T>> oldRows, final int fromIndex, final int toIndex) {
+		for (final Row<T> row : oldRows) {
+			fireRowRemovedEvent(row, fromIndex);
+		}
+		
+		for (int index=toIndex; index<toIndex + oldRows.size(); index++) {
+			fireRowInsertedEvent(rows.get(index), index);
+		}
+	}
+	
 	public void addListener(final IModelListener<T> listener) {
 		listeners.add(listener);
 	}
@@ -975,6 +2923,8 @@ public class GridModel<T> {
 	 * Causes the grid to rebuild the viewport and scrollbars, redraw, then notify clients.
 	 */
 	public void fireChangeEvent() {
+		footerModel.takeChanged();
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.modelChanged();
 		}
@@ -1010,6 +2960,25 @@ public class GridModel<T> {
 		}
 	}
 	
+	public void fireCellsUpdatedEvent(final Collection<Row<T>> rows, final Collection<Column> columns) {
+		for (final IModelListener<T> listener : listeners) {
+			listener.cellsUpdated(rows, columns);
+		}
+		
+		//
+		// The whole grid isn't being redrawn, so the footer must be told if the cells have changed its values.
+		//
+		if (footerModel.takeChanged() && showFooter) {
+			fireFooterChangedEvent();
+		}
+	}
+	
+	public void fireFooterChangedEvent() {
+		for (final IModelListener<T> listener : listeners) {
+			listener.footerChanged();
+		}
+	}
+	
 	public void fireElementsRemovedEvent(final Collection<T> elements) {
 		for (final IModelListener<T> listener : listeners) {
 			listener.elementsRemoved(elements);
@@ -1017,6 +2986,9 @@ public class GridModel<T> {
 	}
 	
 	public void fireSelectionChangedEvent() {
+		snapshotChanged();
+		selectionModel.fireSelectionDelta();
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.selectionChanged();
 		}
@@ -1029,6 +3001,8 @@ public class GridModel<T> {
 	}
 	
 	public void fireFiltersChangedEvent() {
+		snapshotChanged();
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.filtersChanged();
 		}
@@ -1053,6 +3027,8 @@ public class GridModel<T> {
 	}
 	
 	public void fireColumnSortedEvent(Column column) {
+		snapshotChanged();
+		
 		for (final IModelListener<T> listener : listeners) {
 			listener.columnSorted(column);
 		}
@@ -1113,6 +3089,15 @@ public class GridModel<T> {
 		fireChangeEvent();
 	}
 	
+	public boolean isShowFooter() {
+		return showFooter;
+	}
+	
+	public void setShowFooter(final boolean showFooter) {
+		this.showFooter = showFooter;
+		fireChangeEvent();
+	}
+	
 	public void pinColumn(final Column column) {
 		if (!pinnedColumns.contains(column)) {
 			pinnedColumns.add(column);
@@ -1134,7 +3119,7 @@ public class GridModel<T> {
 	}
 
 	public int getRowHeight(final Row<T> row) {
-		final CellStyle cellStyle = (row == columnHeaderRow) ? styleRegistry.getHeaderStyle() : styleRegistry.getDefaultStyle();
+		final CellStyle cellStyle = (row == columnHeaderRow) ? styleRegistry.getHeaderStyle() : (row == footerRow) ? styleRegistry.getFooterStyle() : styleRegistry.getDefaultStyle();
 		return row.getHeight(resourceManager, gc, cellStyle);
 	}
 
@@ -1209,7 +3194,7 @@ public class GridModel<T> {
 			//
 			// If this row has a parent. Include all the parent's children/grand-children.
 			//
-			final Row<T> parentRow = rowsByElement.get(parentElement);
+			final Row<T> parentRow = rowIndex.get(parentElement);
 			group.addAll(getAllChildren(parentRow));
 
 		} else if (childElements != null) {
@@ -1242,6 +3227,23 @@ public class GridModel<T> {
 		return group;
 	}
 
+	/**
+	 * If the row is in a group return the group's contiguous range of visible rows (the parent and its visible children). The 
+	 * list returned is a read-only view over the visible rows, not a copy.
+	 * 
+	 * Unlike getWholeGroup, hidden rows are not included.
+	 */
+	public List<Row<T>> getVisibleGroup(final Row<T> row) {
+		final T groupElement = getGroupElement(row);
+		final int start = (groupElement == null) ? -1 : locateVisibleGroup(groupElement);
+		
+		if (start == -1) {
+			return Collections.emptyList();
+		}
+		
+		return Collections.unmodifiableList(rows.subList(start, start + getRow(groupElement).getGroupRowCount()));
+	}
+
 	/**
 	 * Return immediate children from this row.
 	 */
@@ -1251,7 +3253,7 @@ public class GridModel<T> {
 
 		if (childElements != null) {
 			for (final T childElement : childElements) {
-				final Row<T> childRow = rowsByElement.get(childElement);
+				final Row<T> childRow = rowIndex.get(childElement);
 				if (childRow != null) {
 					children.add(childRow);
 				}
@@ -1267,7 +3269,7 @@ public class GridModel<T> {
 
 		if (childElements != null) {
 			for (final T childElement : childElements) {
-				final Row<T> childRow = rowsByElement.get(childElement);
+				final Row<T> childRow = rowIndex.get(childElement);
 				if (childRow != null && childRow.isVisible()) {
 					children.add(childRow);
 				}
@@ -1282,7 +3284,7 @@ public class GridModel<T> {
 		final StringBuilder sb = new StringBuilder();
 		sb.append(String.format("%s\n", this.getClass().getSimpleName()));
 		sb.append(String.format("Show Row Numbers: %s\n", showRowNumbers));
-		sb.append(String.format("Rows: %s (%s selected)\n", rowsByElement.size(), selectionModel.getSelectedElements().size()));
+		sb.append(String.format("Rows: %s (%s selected)\n", rowIndex.size(), selectionModel.getSelectedElements().size()));
 
 		sb.append(String.format("Columns (%s total %s shown)\n", allColumns.size(), columns.size()));
 		for (final Column column : allColumns) {
@@ -0,0 +1,191 @@
+package com.notlob.jgrid.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.notlob.jgrid.model.filtering.Filter;
+
+/**
+ * An immutable copy of what the grid is showing - the visible elements in order, the selection, the sort and the filters
+ * (with the version each filter had).
+ *
+ * Snapshots are published by the grid model on the UI thread and can be read from any thread without locking. Each has a
+ * version which increases with every snapshot published.
+ *
+ * The visible elements are held in chunks which are shared between snapshots - only the chunks where rows have been
+ * inserted, removed, moved or replaced since the last snapshot are copied (see SnapshotTracker). The selection is a copy of
+ * the selection model's bits and only resolved into elements if it's asked for. The elements themselves are not copied, so
+ * readers should only rely on their immutable state.
+ *
+ * @author Stef
+ */
+public final class GridSnapshot<T> {
+
+	private final long version;
+	private final ChunkedList<T> elements;
+	private final BitSet selectedOrdinals;
+	private final boolean selectionInverted;
+	private final SortSpecification sortSpecification;
+	private final List<Filter<T>> filters;
+	private final int[] filterVersions;
+
+	// The selected elements - resolved when they're first asked for.
+	private volatile Set<T> selection;
+
+	private GridSnapshot(final long version, final ChunkedList<T> elements, final BitSet selectedOrdinals, final boolean selectionInverted, final SortSpecification sortSpecification, final List<Filter<T>> filters) {
+		this.version = version;
+		this.elements = elements;
+		this.selectedOrdinals = selectedOrdinals;
+		this.selectionInverted = selectionInverted;
+		this.sortSpecification = sortSpecification;
+		this.filters = filters;
+		this.filterVersions = new int[filters.size()];
+
+		for (int index=0; index<filterVersions.length; index++) {
+			filterVersions[index] = filters.get(index).getVersion();
+		}
+	}
+
+	/**
+	 * Take a new snapshot from the tracker's chunks, copying only the dirty ones. The selected ordinals must be a copy the
+	 * selection model won't change.
+	 */
+	static <T> GridSnapshot<T> of(final long version, final SnapshotTracker<T> tracker, final List<Row<T>> rows, final BitSet selectedOrdinals, final boolean selectionInverted, final SortSpecification sortSpecification, final Collection<Filter<T>> filters) {
+		final List<SnapshotTracker.Chunk> chunks = tracker.takeChunks(rows);
+		final Object[][] elementChunks = new Object[chunks.size()][];
+		final int[][] ordinalChunks = new int[chunks.size()][];
+
+		for (int chunkIndex=0; chunkIndex<elementChunks.length; chunkIndex++) {
+			elementChunks[chunkIndex] = chunks.get(chunkIndex).getElements();
+			ordinalChunks[chunkIndex] = chunks.get(chunkIndex).getOrdinals();
+		}
+
+		return new GridSnapshot<T>(
+				version,
+				new ChunkedList<T>(elementChunks, ordinalChunks),
+				selectedOrdinals,
+				selectionInverted,
+				sortSpecification,
+				Collections.unmodifiableList(new ArrayList<Filter<T>>(filters)));
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * The visible elements in position order.
+	 */
+	public List<T> getElements() {
+		return elements;
+	}
+
+	/**
+	 * Whether the visible element at the position specified is selected.
+	 */
+	public boolean isSelected(final int index) {
+		final int ordinal = elements.getOrdinal(index);
+		return (ordinal != -1) && (selectedOrdinals.get(ordinal) != selectionInverted);
+	}
+
+	/**
+	 * The selected elements. The first call visits each visible element.
+	 */
+	public Set<T> getSelection() {
+		Set<T> selection = this.selection;
+
+		if (selection == null) {
+			final Set<T> selectedElements = new HashSet<>();
+
+			for (int index=0; index<elements.size(); index++) {
+				if (isSelected(index)) {
+					selectedElements.add(elements.get(index));
+				}
+			}
+
+			selection = Collections.unmodifiableSet(selectedElements);
+			this.selection = selection;
+		}
+
+		return selection;
+	}
+
+	public SortSpecification getSortSpecification() {
+		return sortSpecification;
+	}
+
+	public List<Filter<T>> getFilters() {
+		return filters;
+	}
+
+	/**
+	 * The version the filter at the index specified (in getFilters) had when the snapshot was taken - a filter whose version
+	 * has since changed no longer describes the elements.
+	 */
+	public int getFilterVersion(final int index) {
+		return filterVersions[index];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Snapshot %s: %s rows, %s chunks", version, elements.size(), elements.chunks.length);
+	}
+
+	/**
+	 * A read-only list over the chunks, which can be different sizes - each is found by a binary search of their starts.
+	 */
+	private static class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+		private final Object[][] chunks;
+		private final int[][] ordinals;
+		private final int[] starts;
+		private final int size;
+
+		private ChunkedList(final Object[][] chunks, final int[][] ordinals) {
+			this.chunks = chunks;
+			this.ordinals = ordinals;
+			this.starts = new int[chunks.length];
+
+			int size = 0;
+			for (int chunkIndex=0; chunkIndex<chunks.length; chunkIndex++) {
+				starts[chunkIndex] = size;
+				size += chunks[chunkIndex].length;
+			}
+
+			this.size = size;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T get(final int index) {
+			final int chunkIndex = chunkIndexOf(index);
+			return (T) chunks[chunkIndex][index - starts[chunkIndex]];
+		}
+
+		private int getOrdinal(final int index) {
+			final int chunkIndex = chunkIndexOf(index);
+			return ordinals[chunkIndex][index - starts[chunkIndex]];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		private int chunkIndexOf(final int index) {
+			if ((index < 0) || (index >= size)) {
+				throw new IndexOutOfBoundsException(String.format("Index %s, size %s", index, size));
+			}
+
+			final int found = Arrays.binarySearch(starts, index);
+			return (found >= 0) ? found : (-found - 2);
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+import com.notlob.jgrid.providers.IGridGroupProvider;
+
+/**
+ * Builds the groups from the grid's group-by columns when the content provider is an IGridGroupProvider.
+ *
+ * Each element is hashed into a group by its values of the group-by columns (all of them form a single key, groups aren't
+ * nested). A new group gets a parent element from the IGridGroupProvider, which the grid shows as the group's parent row.
+ * Each member remembers its group and its position in the group's children, so an element can join or leave a group
+ * without the other members being visited.
+ *
+ * While there are group-by columns this stands in for the content provider - the parent, children and collapsed state of
+ * each element come from the groups and everything else is delegated.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class GroupModel<T> implements IGridContentProvider<T> {
+
+	private final GridModel<T> gridModel;
+	private final IGridContentProvider<T> contentProvider;
+	private final IGridGroupProvider<T> groupProvider;
+
+	// The groups keyed by their values of the group-by columns.
+	private final Map<List<Object>, Group<T>> groups;
+
+	// The membership of each element - including each group's parent element.
+	private final Map<T, Member<T>> members;
+
+	// Groups whose last member has left since they were last taken.
+	private final List<Group<T>> emptiedGroups;
+
+	public GroupModel(final GridModel<T> gridModel, final IGridContentProvider<T> contentProvider, final IGridGroupProvider<T> groupProvider) {
+		this.gridModel = gridModel;
+		this.contentProvider = contentProvider;
+		this.groupProvider = groupProvider;
+		this.groups = new HashMap<>();
+		this.members = new IdentityHashMap<>();
+		this.emptiedGroups = new ArrayList<>();
+	}
+
+	/**
+	 * The client's content provider, which this stands in for.
+	 */
+	IGridContentProvider<T> getContentProvider() {
+		return contentProvider;
+	}
+
+	/**
+	 * Returns true if the grid is grouped by any columns.
+	 */
+	public boolean isEnabled() {
+		return !gridModel.getGroupByColumns().isEmpty();
+	}
+
+	/**
+	 * Returns true if the element is the parent of one of the groups.
+	 */
+	public boolean isGroupElement(final T element) {
+		final Member<T> member = members.get(element);
+		return (member != null) && (member.index == -1);
+	}
+
+	/**
+	 * The parent elements of all the groups.
+	 */
+	public List<T> getGroupElements() {
+		final List<T> groupElements = new ArrayList<>(groups.size());
+
+		for (final Group<T> group : groups.values()) {
+			groupElements.add(group.element);
+		}
+
+		return groupElements;
+	}
+
+	/**
+	 * Discard the groups and rebuild them from the rows' elements in a single pass. The parent elements of the new groups are
+	 * returned - the grid must add rows for them.
+	 */
+	List<T> rebuild(final Collection<Row<T>> rows) {
+		clear();
+
+		final List<T> groupElements = new ArrayList<>();
+
+		if (isEnabled()) {
+			for (final Row<T> row : rows) {
+				final T groupElement = elementAdded(row.getElement());
+
+				if (groupElement != null) {
+					groupElements.add(groupElement);
+				}
+			}
+		}
+
+		return groupElements;
+	}
+
+	/**
+	 * Called before a row is added for the element. If the element starts a new group, the group's parent element is
+	 * returned - the grid must add a row for it (before the element's own row).
+	 */
+	T elementAdded(final T element) {
+		if (!isEnabled()) {
+			return null;
+		}
+
+		final List<Object> key = getKey(element);
+		Group<T> group = groups.get(key);
+		T groupElement = null;
+
+		if (group == null) {
+			groupElement = groupProvider.createGroupElement(Collections.unmodifiableList(new ArrayList<>(gridModel.getGroupByColumns())), Collections.unmodifiableList(key));
+			group = new Group<T>(key, groupElement);
+			groups.put(key, group);
+			members.put(groupElement, new Member<T>(group, -1));
+		}
+
+		join(element, group);
+		return groupElement;
+	}
+
+	/**
+	 * Called when an element has been updated, before its row is re-evaluated. If its group-by values have changed it alone
+	 * leaves its group and joins another, and true is returned. If that's a new group, the grid must add a row for the
+	 * group's parent element.
+	 */
+	boolean elementUpdated(final T element) {
+		final Member<T> member = members.get(element);
+
+		if ((member == null) || (member.index == -1)) {
+			return false;
+		}
+
+		final List<Object> key = getKey(element);
+
+		if (key.equals(member.group.key)) {
+			return false;
+		}
+
+		leave(element, member);
+		elementAdded(element);
+		return true;
+	}
+
+	/**
+	 * Called when the element's row has been removed. If it was the last member of its group the group is emptied - the grid
+	 * should then remove the group's parent (see takeEmptiedGroupElements).
+	 */
+	void elementRemoved(final T element) {
+		final Member<T> member = members.get(element);
+
+		if (member == null) {
+			return;
+		}
+
+		if (member.index == -1) {
+			//
+			// The group's parent has gone - usually because the group is empty.
+			//
+			members.remove(element);
+
+			if (groups.get(member.group.key) == member.group) {
+				groups.remove(member.group.key);
+			}
+
+		} else {
+			leave(element, member);
+		}
+	}
+
+	/**
+	 * The row's element has been swapped for another instance.
+	 */
+	void replaceElement(final T oldElement, final T newElement) {
+		final Member<T> member = members.remove(oldElement);
+
+		if (member != null) {
+			members.put(newElement, member);
+
+			if (member.index != -1) {
+				member.group.children.set(member.index, newElement);
+			}
+		}
+	}
+
+	/**
+	 * The parent elements of the groups which are still empty after members have left. The groups are discarded, the grid
+	 * must remove their rows.
+	 */
+	List<T> takeEmptiedGroupElements() {
+		if (emptiedGroups.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		final List<T> groupElements = new ArrayList<>();
+
+		for (final Group<T> group : emptiedGroups) {
+			if (group.children.isEmpty() && (groups.get(group.key) == group)) {
+				groups.remove(group.key);
+				groupElements.add(group.element);
+			}
+		}
+
+		emptiedGroups.clear();
+		return groupElements;
+	}
+
+	void clear() {
+		groups.clear();
+		members.clear();
+		emptiedGroups.clear();
+	}
+
+	private List<Object> getKey(final T element) {
+		final List<Column> groupByColumns = gridModel.getGroupByColumns();
+		final List<Object> key = new ArrayList<>(groupByColumns.size());
+
+		for (final Column column : groupByColumns) {
+			key.add(contentProvider.getValue(column, element));
+		}
+
+		return key;
+	}
+
+	private void join(final T element, final Group<T> group) {
+		members.put(element, new Member<T>(group, group.children.size()));
+		group.children.add(element);
+	}
+
+	/**
+	 * Remove the element from its group's children by moving the last child into its place.
+	 */
+	private void leave(final T element, final Member<T> member) {
+		final List<T> children = member.group.children;
+		final T lastChild = children.remove(children.size() - 1);
+
+		if (lastChild != element) {
+			children.set(member.index, lastChild);
+			members.get(lastChild).index = member.index;
+		}
+
+		members.remove(element);
+
+		if (children.isEmpty()) {
+			emptiedGroups.add(member.group);
+		}
+	}
+
+	@Override
+	public String getElementId(final T element) {
+		return contentProvider.getElementId(element);
+	}
+
+	@Override
+	public int getNaturalIndex(final T element) {
+		return contentProvider.getNaturalIndex(element);
+	}
+
+	@Override
+	public Object getValue(final Column column, final T element) {
+		return contentProvider.getValue(column, element);
+	}
+
+	@Override
+	public T getParent(final T element) {
+		if (!isEnabled()) {
+			return contentProvider.getParent(element);
+		}
+
+		final Member<T> member = members.get(element);
+		return ((member == null) || (member.index == -1)) ? null : member.group.element;
+	}
+
+	@Override
+	public List<T> getChildren(final T element) {
+		if (!isEnabled()) {
+			return contentProvider.getChildren(element);
+		}
+
+		final Member<T> member = members.get(element);
+		return ((member == null) || (member.index != -1)) ? null : member.group.readOnlyChildren;
+	}
+
+	@Override
+	public boolean isCollapsed(final T element) {
+		final Member<T> member = members.get(element);
+
+		if ((member != null) && (member.index == -1)) {
+			return member.group.collapsed;
+		}
+
+		return contentProvider.isCollapsed(element);
+	}
+
+	@Override
+	public void setCollapsed(final T element, final boolean collapsed) {
+		final Member<T> member = members.get(element);
+
+		if ((member != null) && (member.index == -1)) {
+			member.group.collapsed = collapsed;
+
+		} else {
+			contentProvider.setCollapsed(element, collapsed);
+		}
+	}
+
+	private static class Group<T> {
+		private final List<Object> key;
+		private final T element;
+		private final List<T> children;
+		private final List<T> readOnlyChildren;
+		private boolean collapsed;
+
+		private Group(final List<Object> key, final T element) {
+			this.key = key;
+			this.element = element;
+			this.children = new ArrayList<>();
+			this.readOnlyChildren = Collections.unmodifiableList(children);
+		}
+	}
+
+	/**
+	 * An element's group and its index in the group's children (or -1 if it's the group's parent).
+	 */
+	private static class Member<T> {
+		private final Group<T> group;
+		private int index;
+
+		private Member(final Group<T> group, final int index) {
+			this.group = group;
+			this.index = index;
+		}
+	}
+}
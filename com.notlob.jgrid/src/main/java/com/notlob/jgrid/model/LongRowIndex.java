@@ -0,0 +1,120 @@
+package com.notlob.jgrid.model;
+
+import com.notlob.jgrid.providers.IGridElementKeyProvider;
+
+/**
+ * Rows keyed by a primitive long from an IGridElementKeyProvider. Lookups neither allocate nor box.
+ *
+ * The rows aren't keyed by the element id, so they can't be found by it - only by their key.
+ *
+ * @author Stef
+ */
+public class LongRowIndex<T> extends RowIndex<T> {
+
+	private final IGridElementKeyProvider<T> keyProvider;
+	private long[] keys;
+
+	public LongRowIndex(final IGridElementKeyProvider<T> keyProvider) {
+		super(INITIAL_CAPACITY);
+		this.keyProvider = keyProvider;
+		this.keys = new long[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public Row<T> getByKey(final long key) {
+		final int slot = slotOf(key);
+		return slot == -1 ? null : rows[slot];
+	}
+
+	@Override
+	protected Row<T> getKeyed(final T element) {
+		return getByKey(keyProvider.getElementKey(element));
+	}
+
+	@Override
+	protected boolean putKeyed(final Row<T> row) {
+		final long key = keyProvider.getElementKey(row.getElement());
+		final int slot = slotOf(key);
+
+		if (slot != -1) {
+			return rows[slot] == row;
+		}
+
+		ensureCapacity();
+		insert(key, row);
+		added();
+		return true;
+	}
+
+	@Override
+	protected Row<T> removeKeyed(final T element) {
+		final int slot = slotOf(keyProvider.getElementKey(element));
+		return slot == -1 ? null : removeSlot(slot);
+	}
+
+	private static int hash(final long key) {
+		return mix((int) (key ^ (key >>> 32)));
+	}
+
+	/**
+	 * As zero is a valid key, the row array (not the key array) indicates whether a slot is in use.
+	 */
+	private int slotOf(final long key) {
+		int slot = hash(key) & mask;
+		while (rows[slot] != null) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	private void insert(final long key, final Row<T> row) {
+		int slot = hash(key) & mask;
+		while (rows[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		rows[slot] = row;
+	}
+
+	@Override
+	protected void allocateKeys(final int capacity) {
+		keys = new long[capacity];
+	}
+
+	@Override
+	protected int hashAt(final int slot) {
+		return hash(keys[slot]);
+	}
+
+	@Override
+	protected void moveKey(final int fromSlot, final int toSlot) {
+		keys[toSlot] = keys[fromSlot];
+	}
+
+	@Override
+	protected void clearKey(final int slot) {
+		keys[slot] = 0;
+	}
+
+	@Override
+	protected Object getKeys() {
+		return keys;
+	}
+
+	@Override
+	protected void rehash(final Row<T>[] oldRows, final Object oldKeys) {
+		final long[] oldLongKeys = (long[]) oldKeys;
+
+		for (int slot=0; slot<oldRows.length; slot++) {
+			if (oldRows[slot] != null) {
+				insert(oldLongKeys[slot], oldRows[slot]);
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.notlob.jgrid.model;
+
+import java.util.Arrays;
+
+/**
+ * A value for each of some of the grid's rows, held by the row's ordinal (see GridModel.allocateOrdinal). This lets a
+ * model keep its own state for the rows it's interested in, rather than every row having a field for it.
+ *
+ * The row is held alongside its value, so a row which isn't in the grid (or a later row given the same ordinal) never
+ * sees a value which wasn't put for it. Values should still be removed when their row leaves the grid.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+class OrdinalMap<V> {
+
+	// Each row and its value, in pairs, at the row's ordinal.
+	private Object[] entries;
+
+	// How many rows have a value.
+	private int size;
+
+	OrdinalMap() {
+		this.entries = new Object[32];
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(final Row<?> row) {
+		final int index = row.getOrdinal() * 2;
+		return ((index >= 0) && (index < entries.length) && (entries[index] == row)) ? (V) entries[index + 1] : null;
+	}
+
+	/**
+	 * Set the row's value - null removes it. The row must be in the grid.
+	 */
+	void put(final Row<?> row, final V value) {
+		if (value == null) {
+			remove(row);
+			return;
+		}
+
+		final int index = row.getOrdinal() * 2;
+
+		if (index < 0) {
+			throw new IllegalArgumentException("The row isn't in the grid");
+		}
+
+		if (index >= entries.length) {
+			entries = Arrays.copyOf(entries, Math.max(index + 2, entries.length * 2));
+		}
+
+		if (entries[index] != row) {
+			if (entries[index] == null) {
+				size++;
+			}
+
+			entries[index] = row;
+		}
+
+		entries[index + 1] = value;
+	}
+
+	void remove(final Row<?> row) {
+		final int index = row.getOrdinal() * 2;
+
+		if ((index >= 0) && (index < entries.length) && (entries[index] == row)) {
+			entries[index] = null;
+			entries[index + 1] = null;
+			size--;
+		}
+	}
+
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(entries, null);
+			size = 0;
+		}
+	}
+}
@@ -13,13 +13,17 @@ import com.notlob.jgrid.util.ResourceManager;
 public class Row<T> {
 
 	private boolean visible;
-	private boolean selected;
+	private GridModel<T> gridModel; // The row's selection state is held by the grid's selection model (by ordinal).
+	private int ordinal = -1; // A number unique to the row amongst the grid's rows (re-used once the row is removed).
 	private boolean pinned;
 	private boolean alternateBackground;
 	private int height;
 	private int rowIndex = -1; // Allows updateElements to be implemented without an indexOf and remove to be called without using objects (and therefore list scans).
 	private int hiddenRowIndex = -1; // Allows remove to be called without using objects (and therefore list scans).
-	private final T element;
+	private int groupRowIndex = -1; // If this is a group's parent row, where the group's contiguous range of visible rows starts.
+	private int groupRowCount = 0;  // And how many visible rows are in the range (including this row if visible).
+	private boolean countedParent; // Whether the row was a parent row when the grid model last counted it.
+	private T element;
 	
 	// An animation frame counter.
 	private int frame;
@@ -79,9 +83,36 @@ public class Row<T> {
 		this.hiddenRowIndex = hiddenRowIndex;
 	}
 
+	public int getGroupRowIndex() {
+		return groupRowIndex;
+	}
+	
+	public int getGroupRowCount() {
+		return groupRowCount;
+	}
+	
+	// Intentionally package protected - the grid model maintains the group ranges.
+	void setGroupRange(final int groupRowIndex, final int groupRowCount) {
+		this.groupRowIndex = groupRowIndex;
+		this.groupRowCount = groupRowCount;
+	}
+
+	boolean isCountedParent() {
+		return countedParent;
+	}
+	
+	void setCountedParent(final boolean countedParent) {
+		this.countedParent = countedParent;
+	}
+	
 	public T getElement() {
 		return element;
 	}
+	
+	// Intentionally package protected - lets the grid model swap in a replacement instance of the same element.
+	void setElement(final T element) {
+		this.element = element;
+	}
 
 	public boolean isVisible() {
 		return visible;
@@ -92,12 +123,17 @@ public class Row<T> {
 	}
 
 	public boolean isSelected() {
-		return selected;
+		return (gridModel != null) && gridModel.getSelectionModel().isSelected(this);
 	}
 
-	// Intentionally package protected - let the selection model use it.
-	void setSelected(final boolean selected) {
-		this.selected = selected;
+	int getOrdinal() {
+		return ordinal;
+	}
+	
+	// Intentionally package protected - the grid model allocates the ordinals.
+	void setOrdinal(final GridModel<T> gridModel, final int ordinal) {
+		this.gridModel = gridModel;
+		this.ordinal = ordinal;
 	}
 
 	public boolean isPinned() {
@@ -151,6 +187,6 @@ public class Row<T> {
 	@Override
 	public String toString() {
 		return String.format("Row : Index [%s] HiddenIndex [%s] Selected [%s] Height [%s] Pinned [%s] Alternate [%s] : %s", 
-				rowIndex, hiddenRowIndex, selected, height, pinned, alternateBackground, element);
+				rowIndex, hiddenRowIndex, isSelected(), height, pinned, alternateBackground, element);
 	}
 }
@@ -0,0 +1,148 @@
+package com.notlob.jgrid.model;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshots of the visible rows from recent states of the grid (such as the row order for a sort specification, or the
+ * rows shown by a set of filters), least recently used first.
+ *
+ * Rather than keeping every snapshot up-to-date as rows change, each entry collects the rows that have been added,
+ * updated or removed since it was taken. When the entry is used again, only those rows need re-evaluating. An entry which
+ * has accumulated too many changes is discarded, as starting from scratch would be cheaper.
+ *
+ * The budget is the total number of rows held across all the entries. The number of entries can also be limited.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class RowCache<K, T> {
+
+	private final Map<K, Entry<T>> entries;
+	private int budget;
+	private int maxEntries;
+	private int cachedRowCount;
+
+	public RowCache(final int budget, final int maxEntries) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.budget = budget;
+		this.maxEntries = maxEntries;
+	}
+
+	public int getBudget() {
+		return budget;
+	}
+
+	public void setBudget(final int budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(final int maxEntries) {
+		this.maxEntries = maxEntries;
+		evict();
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Cache the rows against the key (replacing any existing entry).
+	 */
+	public void put(final K key, final List<Row<T>> rows) {
+		remove(key);
+
+		if ((rows.size() <= budget) && (maxEntries > 0)) {
+			final Entry<T> entry = new Entry<T>(rows.toArray(RowCache.<T>newRows(rows.size())));
+			entries.put(key, entry);
+			cachedRowCount += entry.rows.length;
+			evict();
+		}
+	}
+
+	/**
+	 * Remove and return the entry for the key, or null if there isn't one.
+	 */
+	public Entry<T> remove(final K key) {
+		final Entry<T> entry = entries.remove(key);
+
+		if (entry != null) {
+			cachedRowCount -= entry.rows.length;
+		}
+
+		return entry;
+	}
+
+	public void clear() {
+		entries.clear();
+		cachedRowCount = 0;
+	}
+
+	/**
+	 * Record that the row has been added, removed or its values may have changed.
+	 */
+	public void rowChanged(final Row<T> row) {
+		final Iterator<Entry<T>> iterator = entries.values().iterator();
+
+		while (iterator.hasNext()) {
+			final Entry<T> entry = iterator.next();
+
+			if (entry.dirtyRows.add(row) && (entry.dirtyRows.size() > (entry.rows.length / 2))) {
+				iterator.remove();
+				cachedRowCount -= entry.rows.length;
+			}
+		}
+	}
+
+	/**
+	 * Discard the least recently used entries until we're within budget.
+	 */
+	private void evict() {
+		final Iterator<Entry<T>> iterator = entries.values().iterator();
+
+		while (((cachedRowCount > budget) || (entries.size() > maxEntries)) && iterator.hasNext()) {
+			cachedRowCount -= iterator.next().rows.length;
+			iterator.remove();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Row<T>[] newRows(final int size) {
+		return (Row<T>[]) new Row<?>[size];
+	}
+
+	public static class Entry<T> {
+		private final Row<T>[] rows;
+		private final Set<Row<T>> dirtyRows;
+
+		private Entry(final Row<T>[] rows) {
+			this.rows = rows;
+			this.dirtyRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		}
+
+		/**
+		 * The rows in the order they were cached.
+		 */
+		public Row<T>[] getRows() {
+			return rows;
+		}
+
+		/**
+		 * The rows added, removed or updated since the entry was cached.
+		 */
+		public Set<Row<T>> getDirtyRows() {
+			return dirtyRows;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A binary heap of rows, with either the best or the worst row (by a comparator) at its head. Each row's position in the
+ * heap is held by its ordinal (see GridModel.allocateOrdinal), so any row can be removed without searching for it.
+ *
+ * The rows mustn't change while they're in the heap - a row which is re-evaluated must be removed first.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+class RowHeap<T> {
+
+	// If true the worst row is at the head, otherwise the best.
+	private final boolean worstFirst;
+
+	private final List<Row<T>> rows;
+
+	// Each row's index in the heap plus one (zero if it's not in the heap), by the row's ordinal.
+	private int[] positions;
+
+	private Comparator<Row<T>> comparator;
+
+	RowHeap(final boolean worstFirst) {
+		this.worstFirst = worstFirst;
+		this.rows = new ArrayList<>();
+		this.positions = new int[16];
+	}
+
+	/**
+	 * The heap must be empty, or the comparator must order the rows the same way as the last one.
+	 */
+	void setComparator(final Comparator<Row<T>> comparator) {
+		this.comparator = comparator;
+	}
+
+	int size() {
+		return rows.size();
+	}
+
+	boolean isEmpty() {
+		return rows.isEmpty();
+	}
+
+	boolean contains(final Row<T> row) {
+		return indexOf(row) != -1;
+	}
+
+	/**
+	 * The rows in no particular order.
+	 */
+	List<Row<T>> getRows() {
+		return Collections.unmodifiableList(rows);
+	}
+
+	/**
+	 * The best (or worst) row - or null if the heap is empty.
+	 */
+	Row<T> peek() {
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	Row<T> poll() {
+		final Row<T> row = rows.get(0);
+		removeAt(0);
+		return row;
+	}
+
+	void add(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+
+		if (ordinal >= positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(ordinal + 1, positions.length * 2));
+		}
+
+		rows.add(row);
+		positions[ordinal] = rows.size();
+		siftUp(rows.size() - 1);
+	}
+
+	/**
+	 * Returns false if the row wasn't in the heap.
+	 */
+	boolean remove(final Row<T> row) {
+		final int index = indexOf(row);
+
+		if (index == -1) {
+			return false;
+		}
+
+		removeAt(index);
+		return true;
+	}
+
+	void clear() {
+		rows.clear();
+		Arrays.fill(positions, 0);
+	}
+
+	private int indexOf(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		return ((ordinal != -1) && (ordinal < positions.length)) ? positions[ordinal] - 1 : -1;
+	}
+
+	private void removeAt(final int index) {
+		positions[rows.get(index).getOrdinal()] = 0;
+		final Row<T> last = rows.remove(rows.size() - 1);
+
+		if (index < rows.size()) {
+			//
+			// Fill the gap with the last row, then move it up or down to its place.
+			//
+			set(index, last);
+			siftDown(index);
+			siftUp(indexOf(last));
+		}
+	}
+
+	private void siftUp(int index) {
+		final Row<T> row = rows.get(index);
+
+		while (index > 0) {
+			final int parentIndex = (index - 1) / 2;
+			final Row<T> parent = rows.get(parentIndex);
+
+			if (compare(row, parent) >= 0) {
+				break;
+			}
+
+			set(index, parent);
+			index = parentIndex;
+		}
+
+		set(index, row);
+	}
+
+	private void siftDown(int index) {
+		final Row<T> row = rows.get(index);
+		final int size = rows.size();
+
+		while (true) {
+			int childIndex = (index * 2) + 1;
+
+			if (childIndex >= size) {
+				break;
+			}
+
+			if (((childIndex + 1) < size) && (compare(rows.get(childIndex + 1), rows.get(childIndex)) < 0)) {
+				childIndex++;
+			}
+
+			if (compare(rows.get(childIndex), row) >= 0) {
+				break;
+			}
+
+			set(index, rows.get(childIndex));
+			index = childIndex;
+		}
+
+		set(index, row);
+	}
+
+	private void set(final int index, final Row<T> row) {
+		rows.set(index, row);
+		positions[row.getOrdinal()] = index + 1;
+	}
+
+	/**
+	 * Negative if row1 belongs nearer the head.
+	 */
+	private int compare(final Row<T> row1, final Row<T> row2) {
+		final int result = comparator.compare(row1, row2);
+		return worstFirst ? -result : result;
+	}
+}
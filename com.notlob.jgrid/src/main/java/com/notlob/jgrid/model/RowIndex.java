@@ -0,0 +1,304 @@
+package com.notlob.jgrid.model;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+import com.notlob.jgrid.providers.IGridElementKeyProvider;
+
+/**
+ * All Rows (including hidden) keyed by their element.
+ *
+ * This is an open-addressing (linear-probing) hash table with parallel key and row arrays, so there are no entry
+ * objects per row. Removal shifts subsequent entries back rather than leaving tombstones, so lookups stay short 
+ * regardless of churn.
+ *
+ * The sub-classes decide what the key is. By default it's the element itself (using its hashCode and equals). The rows
+ * can be keyed by the content provider's getElementId instead (see GridModel.setRowsIndexedById), or by a long if the
+ * content provider is an IGridElementKeyProvider.
+ *
+ * A row whose key is null, or already in use by another row, is held apart from the table - it can only be found by its
+ * element (by identity) until its key is free.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public abstract class RowIndex<T> {
+
+	protected final static int INITIAL_CAPACITY = 64;
+
+	// Rows are only allowed to fill this proportion of the table before it grows.
+	private final static float LOAD_FACTOR = 0.6f;
+
+	protected Row<T>[] rows;
+	protected int mask;
+	private int size;
+	private int threshold;
+
+	// The rows which couldn't be keyed, by their element's identity.
+	private final Map<T, Row<T>> unkeyedRows;
+
+	// A read-only view of all the rows in the index (in no particular order).
+	private final Collection<Row<T>> values;
+
+	/**
+	 * The sub-class allocates its own key array(s) of the same capacity, as its fields aren't initialised yet.
+	 */
+	protected RowIndex(final int capacity) {
+		allocateRows(capacity);
+		unkeyedRows = new IdentityHashMap<>();
+		values = new Values();
+	}
+
+	/**
+	 * Create the most appropriate index for the content provider. The rows are keyed by the element unless the content
+	 * provider is an IGridElementKeyProvider, or they're to be indexed by the element id.
+	 */
+	public static <T> RowIndex<T> create(final IGridContentProvider<T> contentProvider, final boolean indexedById) {
+		if (contentProvider instanceof IGridElementKeyProvider) {
+			@SuppressWarnings("unchecked")
+			final IGridElementKeyProvider<T> keyProvider = (IGridElementKeyProvider<T>) contentProvider;
+			return new LongRowIndex<T>(keyProvider);
+		}
+
+		if (indexedById && (contentProvider != null)) {
+			return new StringRowIndex<T>(contentProvider);
+		}
+
+		return new ElementRowIndex<T>();
+	}
+
+	public Row<T> get(final T element) {
+		if (!unkeyedRows.isEmpty()) {
+			final Row<T> row = unkeyedRows.get(element);
+
+			if (row != null) {
+				return row;
+			}
+		}
+
+		return getKeyed(element);
+	}
+
+	/**
+	 * Index the row by its element's key. Returns false if the key is null or another row already has it - the row can
+	 * then only be found by its element.
+	 */
+	public boolean put(final Row<T> row) {
+		if (putKeyed(row)) {
+			return true;
+		}
+
+		unkeyedRows.put(row.getElement(), row);
+		return false;
+	}
+
+	public Row<T> remove(final T element) {
+		if (!unkeyedRows.isEmpty()) {
+			final Row<T> row = unkeyedRows.remove(element);
+
+			if (row != null) {
+				return row;
+			}
+		}
+
+		final Row<T> row = removeKeyed(element);
+
+		if ((row != null) && !unkeyedRows.isEmpty()) {
+			//
+			// A row held apart may have been waiting for the key.
+			//
+			final Iterator<Row<T>> iterator = unkeyedRows.values().iterator();
+			while (iterator.hasNext()) {
+				if (putKeyed(iterator.next())) {
+					iterator.remove();
+				}
+			}
+		}
+
+		return row;
+	}
+
+	/**
+	 * Look-up a row by the content provider's element id. Only supported if the index is keyed by the id.
+	 */
+	public Row<T> getById(final String elementId) {
+		throw new UnsupportedOperationException("Rows can only be found by their id if they're indexed by id");
+	}
+
+	/**
+	 * Look-up a row by the IGridElementKeyProvider's key. Only supported if the index is keyed by long - otherwise the
+	 * elements have no key.
+	 */
+	public Row<T> getByKey(final long elementKey) {
+		throw new UnsupportedOperationException("Rows can only be found by a key if the content provider is an IGridElementKeyProvider");
+	}
+
+	/**
+	 * The row in the table with the element's key - or null.
+	 */
+	protected abstract Row<T> getKeyed(final T element);
+
+	/**
+	 * Put the row in the table. Returns false (and the row isn't put) if its key is null or in use by another row.
+	 */
+	protected abstract boolean putKeyed(final Row<T> row);
+
+	/**
+	 * Remove the row with the element's key from the table. Returns the row, or null if there isn't one.
+	 */
+	protected abstract Row<T> removeKeyed(final T element);
+
+	/**
+	 * Allocate the key array(s) for a table of the given capacity.
+	 */
+	protected abstract void allocateKeys(final int capacity);
+
+	/**
+	 * The hash of the key held in the slot.
+	 */
+	protected abstract int hashAt(final int slot);
+
+	protected abstract void moveKey(final int fromSlot, final int toSlot);
+
+	protected abstract void clearKey(final int slot);
+
+	/**
+	 * Re-insert every row from the old table into the (newly allocated) current table.
+	 */
+	protected abstract void rehash(final Row<T>[] oldRows, final Object oldKeys);
+
+	/**
+	 * The current key array(s), passed back into rehash when the table grows.
+	 */
+	protected abstract Object getKeys();
+
+	public int size() {
+		return size + unkeyedRows.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public void clear() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+		unkeyedRows.clear();
+	}
+
+	public Collection<Row<T>> values() {
+		return values;
+	}
+
+	private void allocate(final int capacity) {
+		allocateRows(capacity);
+		allocateKeys(capacity);
+	}
+
+	private void allocateRows(final int capacity) {
+		rows = newRows(capacity);
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Row<T>[] newRows(final int capacity) {
+		return (Row<T>[]) new Row<?>[capacity];
+	}
+
+	/**
+	 * Called by the sub-classes before inserting a new key - grows the table if needed.
+	 */
+	protected void ensureCapacity() {
+		if (size >= threshold) {
+			final Row<T>[] oldRows = rows;
+			final Object oldKeys = getKeys();
+			allocate(rows.length * 2);
+			rehash(oldRows, oldKeys);
+		}
+	}
+
+	protected void added() {
+		size++;
+	}
+
+	/**
+	 * Empty the slot and shift any following entries in the same probe sequence back into the gap.
+	 */
+	protected Row<T> removeSlot(int slot) {
+		final Row<T> removed = rows[slot];
+		size--;
+
+		int next = (slot + 1) & mask;
+		while (rows[next] != null) {
+			final int home = hashAt(next) & mask;
+
+			//
+			// If the entry's home slot isn't cyclically between the gap and where it lives, it can fill the gap.
+			//
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				rows[slot] = rows[next];
+				moveKey(next, slot);
+				slot = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		rows[slot] = null;
+		clearKey(slot);
+		return removed;
+	}
+
+	/**
+	 * Spread the bits of a hash code so sequential ids don't cluster.
+	 */
+	protected static int mix(final int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private class Values extends AbstractCollection<Row<T>> {
+		@Override
+		public Iterator<Row<T>> iterator() {
+			return new Iterator<Row<T>>() {
+				private final Row<T>[] table = rows;
+				private final Iterator<Row<T>> unkeyedIterator = unkeyedRows.values().iterator();
+				private int slot = advance(0);
+
+				private int advance(int from) {
+					while ((from < table.length) && (table[from] == null)) {
+						from++;
+					}
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return (slot < table.length) || unkeyedIterator.hasNext();
+				}
+
+				@Override
+				public Row<T> next() {
+					if (slot >= table.length) {
+						return unkeyedIterator.next();
+					}
+
+					final Row<T> row = table[slot];
+					slot = advance(slot + 1);
+					return row;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return RowIndex.this.size();
+		}
+	}
+}
@@ -1,20 +1,50 @@
 package com.notlob.jgrid.model;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.notlob.jgrid.Grid.SelectionStyle;
-
+import com.notlob.jgrid.listeners.ISelectionDeltaListener;
+
+/**
+ * The selected rows (or columns) and the anchor.
+ *
+ * Each row is given an ordinal by the grid model and the selection is a bit per ordinal - rather than a set of elements. When
+ * the selection is inverted, a clear bit means the row is selected. So everything can be selected, de-selected or the 
+ * selection inverted without visiting each row, and selecting a range of rows just sets their bits. The selected elements 
+ * are only looked-up when they're iterated.
+ *
+ * Hidden rows are never selected - a row's bit is reset whenever it's shown.
+ */
 public class SelectionModel<T> {
 
 	private final GridModel<T> gridModel;
+	
+	// A bit for each row ordinal (see GridModel.allocateOrdinal). If inverted, a set bit means the row is NOT selected.
+	private final BitSet selectedOrdinals;
+	private boolean inverted;
+	private int selectedCount;
+	
+	// A read-only view of the selected elements.
 	private final Set<T> selectedElements;
+	
+	// The changes since the selection listeners were last notified - only recorded if there are delta listeners.
+	private final List<ISelectionDeltaListener<T>> deltaListeners;
+	private final Set<T> addedElements;
+	private final Set<T> removedElements;
+	private boolean selectionReset;
+	private T notifiedAnchorElement;
+	
 	private final List<Column> selectedColumns;
 	private T anchorElement;		// The anchor is the current cell cursor.
 	private Column anchorColumn;	//
@@ -28,7 +58,11 @@ public class SelectionModel<T> {
 
 	public SelectionModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
-		selectedElements = new HashSet<>();
+		selectedOrdinals = new BitSet();
+		selectedElements = new SelectedElements();
+		deltaListeners = new ArrayList<>();
+		addedElements = new LinkedHashSet<>();
+		removedElements = new LinkedHashSet<>();
 		selectedColumns = new ArrayList<>();
 	}
 	
@@ -102,9 +136,149 @@ public class SelectionModel<T> {
 		return lastParentAnchorColumn;
 	}
 
+	/**
+	 * A read-only, live view of the selected elements. The elements are looked-up as it's iterated.
+	 */
 	public Set<T> getSelectedElements() {
 		return selectedElements;
 	}
+	
+	/**
+	 * A read-only, live view of the selected elements - nothing is copied.
+	 */
+	public Set<T> getSelectedElementsView() {
+		return selectedElements;
+	}
+	
+	public int getSelectedCount() {
+		return selectedCount;
+	}
+	
+	boolean isSelected(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		return (ordinal != -1) && row.isVisible() && (selectedOrdinals.get(ordinal) != inverted);
+	}
+	
+	/**
+	 * A copy of the bit for each row ordinal (see isSelectionInverted for what a set bit means).
+	 */
+	BitSet copySelectedOrdinals() {
+		return (BitSet) selectedOrdinals.clone();
+	}
+	
+	boolean isSelectionInverted() {
+		return inverted;
+	}
+	
+	/**
+	 * Select or de-select the (visible) row. Returns true if it's changed.
+	 */
+	private boolean setSelected(final Row<T> row, final boolean selected) {
+		if ((row.getOrdinal() == -1) || (isSelected(row) == selected)) {
+			return false;
+		}
+		
+		selectedOrdinals.set(row.getOrdinal(), selected != inverted);
+		selectedCount += selected ? 1 : -1;
+		
+		if (!deltaListeners.isEmpty() && !selectionReset) {
+			final T element = row.getElement();
+			
+			if (selected) {
+				if (!removedElements.remove(element)) {
+					addedElements.add(element);
+				}
+				
+			} else if (!addedElements.remove(element)) {
+				removedElements.add(element);
+			}
+		}
+		
+		return true;
+	}
+	
+	public void addSelectionDeltaListener(final ISelectionDeltaListener<T> listener) {
+		if (deltaListeners.isEmpty()) {
+			notifiedAnchorElement = anchorElement;
+		}
+		
+		deltaListeners.add(listener);
+	}
+	
+	public void removeSelectionDeltaListener(final ISelectionDeltaListener<T> listener) {
+		deltaListeners.remove(listener);
+	}
+	
+	/**
+	 * The selection has changed in a way which isn't worth describing element by element.
+	 */
+	private void resetDelta() {
+		if (!deltaListeners.isEmpty()) {
+			selectionReset = true;
+			addedElements.clear();
+			removedElements.clear();
+		}
+	}
+	
+	/**
+	 * Called by the grid model when the selection changed event is fired - notify the delta listeners of the changes since
+	 * they were last notified.
+	 */
+	void fireSelectionDelta() {
+		final T oldAnchorElement = notifiedAnchorElement;
+		notifiedAnchorElement = anchorElement;
+		
+		if (deltaListeners.isEmpty()) {
+			return;
+		}
+		
+		if (selectionReset) {
+			selectionReset = false;
+			
+			for (final ISelectionDeltaListener<T> listener : deltaListeners) {
+				listener.selectionReset(oldAnchorElement, anchorElement);
+			}
+			
+		} else if (!addedElements.isEmpty() || !removedElements.isEmpty() || (oldAnchorElement != anchorElement)) {
+			final List<T> added = new ArrayList<>(addedElements);
+			final List<T> removed = new ArrayList<>(removedElements);
+			addedElements.clear();
+			removedElements.clear();
+			
+			for (final ISelectionDeltaListener<T> listener : deltaListeners) {
+				listener.selectionChanged(added, removed, oldAnchorElement, anchorElement);
+			}
+		}
+	}
+	
+	/**
+	 * Called by the grid model when a row is added (once it's been given an ordinal) - its ordinal may have been another
+	 * row's, so its bit is reset.
+	 */
+	void rowAdded(final Row<T> row) {
+		selectedOrdinals.set(row.getOrdinal(), inverted);
+	}
+	
+	/**
+	 * Called by the grid model when a row is shown - hidden rows are never selected, whatever their bit says.
+	 */
+	void rowShown(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		
+		if (ordinal != -1) {
+			selectedOrdinals.set(ordinal, inverted);
+		}
+	}
+	
+	/**
+	 * Called by the grid model when all the rows have been removed.
+	 */
+	void rowsCleared() {
+		selectedOrdinals.clear();
+		inverted = false;
+		selectedCount = 0;
+		resetDelta();
+	}
 
 	private void selectRow(final Row<T> row) {
 		if (selectionStyle == SelectionStyle.SINGLE_ROW_BASED) {
@@ -112,14 +286,12 @@ public class SelectionModel<T> {
 		}
 		
 		if (row.isVisible()) {
-			row.setSelected(true);
-			selectedElements.add(row.getElement());
+			setSelected(row, true);
 		}
 	}
 
 	private void unselectRow(final Row<T> row) {
-		row.setSelected(false);
-		selectedElements.remove(row.getElement());
+		setSelected(row, false);
 		
 		if (row.getElement() == anchorElement) {
 			anchorElement = null;
@@ -154,7 +326,7 @@ public class SelectionModel<T> {
 				break;
 			
 			case ROW_BASED:
-				setSelectedRows(gridModel.getRows());
+				selectAllRows();
 				break;
 				
 			case SINGLE_CELL_BASED:
@@ -165,16 +337,70 @@ public class SelectionModel<T> {
 		}
 	}
 
-	public void clear(final boolean notify) {
-		for (final Object element : selectedElements) {
-			gridModel.getRowsByElement().get(element).setSelected(false);
+	/**
+	 * Select every visible row - without visiting them.
+	 */
+	private void selectAllRows() {
+		clear(false);
+		resetDelta();
+		selectedOrdinals.clear();
+		inverted = true;
+		selectedCount = gridModel.getRows().size();
+		
+		if (gridModel.getRows().isEmpty()) {
+			anchorElement = null;
+			anchorColumn = null;
+			
+		} else {
+			anchorElement = gridModel.getRows().get(0).getElement();
+			
+			if (anchorColumn  == null && !gridModel.getColumns().isEmpty()) {
+				anchorColumn = gridModel.getColumns().get(0);
+			}
 		}
 		
+		gridModel.fireSelectionChangedEvent();
+	}
+	
+	/**
+	 * Select the visible rows which aren't selected and de-select those which are. Only applies to row-based selections.
+	 */
+	public void invertSelection() {
+		if (selectionStyle != SelectionStyle.ROW_BASED) {
+			return;
+		}
+		
+		inverted = !inverted;
+		selectedCount = gridModel.getRows().size() - selectedCount;
+		resetDelta();
+		
+		//
+		// Hidden rows' bits flip meaning too - but hidden rows are never selected and their bits are reset when shown.
+		//
+		gridModel.fireSelectionChangedEvent();
+	}
+
+	public void clear(final boolean notify) {
 		for (final Column column : selectedColumns) {
 			column.setSelected(false);
 		}
 
-		selectedElements.clear();
+		if (!deltaListeners.isEmpty() && !selectionReset && (selectedCount > 0)) {
+			if (inverted) {
+				resetDelta();
+				
+			} else {
+				for (final T element : selectedElements) {
+					if (!addedElements.remove(element)) {
+						removedElements.add(element);
+					}
+				}
+			}
+		}
+		
+		selectedOrdinals.clear();
+		inverted = false;
+		selectedCount = 0;
 		selectedColumns.clear();
 
 		if (notify) {
@@ -256,7 +482,7 @@ public class SelectionModel<T> {
 		//
 		for (final Row<T> row : rowsToToggle) {
 			if (gridModel.isParentRow(row)) {
-				for (Row<T> child : gridModel.getWholeGroup(row)) {
+				for (Row<T> child : gridModel.getVisibleGroup(row)) {
 					if ((child != row) && (child.isSelected() == row.isSelected())) {
 						fullListToToggle.add(child);
 					}
@@ -320,8 +546,7 @@ public class SelectionModel<T> {
 		//
 		// Clear the rows selection state.
 		//
-		final boolean removed = selectedElements.remove(row.getElement());
-		row.setSelected(false);
+		final boolean removed = setSelected(row, false);
 
 		if (anchorElement == row.getElement()) {
 			//
@@ -334,21 +559,48 @@ public class SelectionModel<T> {
 		return removed;
 	}
 
+	/**
+	 * Called when a row's element has been replaced with a new instance, so the selection tracks the new instance.
+	 */
+	void replaceElement(final T oldElement, final T newElement) {
+		if (anchorElement == oldElement) {
+			anchorElement = newElement;
+		}
+		
+		if (notifiedAnchorElement == oldElement) {
+			notifiedAnchorElement = newElement;
+		}
+		
+		if (addedElements.remove(oldElement)) {
+			addedElements.add(newElement);
+		}
+		
+		if (removedElements.remove(oldElement)) {
+			removedElements.add(newElement);
+		}
+	}
+
 	public void selectRange(final Row<T> row, final boolean keepExisting) {
-		final int anchorRowIndex = anchorElement == null ? 0 : gridModel.getRows().indexOf(gridModel.getRow(anchorElement));
-		final int selectionRowIndex = gridModel.getRows().indexOf(row);
+		final int anchorRowIndex = anchorElement == null ? 0 : Math.max(0, gridModel.indexOfRow(gridModel.getRow(anchorElement)));
+		final int selectionRowIndex = gridModel.indexOfRow(row);
+		
+		if (selectionRowIndex == -1) {
+			return;
+		}
+		
 		final int lowerIndex = anchorRowIndex <= selectionRowIndex ? anchorRowIndex : selectionRowIndex;
 		final int upperIndex = anchorRowIndex > selectionRowIndex ? anchorRowIndex : selectionRowIndex;
-		final List<Row<T>> rowsToSelect = new ArrayList<>();
-
-		for (int rowIndex=lowerIndex; rowIndex<=upperIndex; rowIndex++) {
-			rowsToSelect.add(gridModel.getRows().get(rowIndex));
-		}
+		final List<Row<T>> rowsToSelect = gridModel.getRows().subList(lowerIndex, upperIndex + 1);
 
 		if (!keepExisting) {
 			clear(false);
 		}
 
+		//
+		// Ordinals are handed out as rows are added, not by position, so a contiguous range of rows is a scattering of bits - 
+		// each row's bit is set in turn (which is cheap) rather than holding the range of positions, which would have to be 
+		// re-mapped whenever rows move.
+		//
 		for (final Row<T> toSelect : rowsToSelect) {
 			selectRow(toSelect);
 		}
@@ -362,8 +614,13 @@ public class SelectionModel<T> {
 	}
 	
 	public void selectRange(final Column column, final boolean keepExisting) {
-		final int anchorColumnIndex = anchorColumn == null ? 0 : gridModel.getColumns().indexOf(anchorColumn);
-		final int selectionColumnIndex = gridModel.getColumns().indexOf(column);
+		final int anchorColumnIndex = anchorColumn == null ? 0 : Math.max(0, gridModel.indexOfColumn(anchorColumn));
+		final int selectionColumnIndex = gridModel.indexOfColumn(column);
+		
+		if (selectionColumnIndex == -1) {
+			return;
+		}
+		
 		final int lowerIndex = anchorColumnIndex <= selectionColumnIndex ? anchorColumnIndex : selectionColumnIndex;
 		final int upperIndex = anchorColumnIndex > selectionColumnIndex ? anchorColumnIndex : selectionColumnIndex;
 		final List<Column> columnsToSelect = new ArrayList<>();
@@ -418,13 +675,14 @@ public class SelectionModel<T> {
 	 *
 	 * Also don't allow a parent row to be selected unless all it's children are.
 	 *
-	 * We only need to check the first and last rows in the list (we're assuming they are in screen order).
+	 * We only need to check the first and last rows in the list (we're assuming they are in screen order). Only the visible rows
+	 * in the group are considered, as hidden rows can't be selected.
 	 */
 	private void checkGroupSelection(final List<Row<T>> rowsToSelect) {
 		if (selectGroupIfAllChildrenSelected && !rowsToSelect.isEmpty()) {
 			final Row<T> firstRow = rowsToSelect.get(0);
 			if (gridModel.isGroupRow(firstRow)) {
-				checkGroup(gridModel.getWholeGroup(firstRow));
+				checkGroup(gridModel.getVisibleGroup(firstRow));
 			}
 
 			//
@@ -433,7 +691,7 @@ public class SelectionModel<T> {
 			if (rowsToSelect.size() > 1) {
 				final Row<T> lastRow = rowsToSelect.get(rowsToSelect.size()-1);
 				if (gridModel.isGroupRow(lastRow)) {
-					checkGroup(gridModel.getWholeGroup(lastRow));
+					checkGroup(gridModel.getVisibleGroup(lastRow));
 				}
 			}
 		}
@@ -452,10 +710,93 @@ public class SelectionModel<T> {
 			}
 		}
 
+		if (parentRow == null) {
+			//
+			// The parent row has been filtered out.
+			//
+			return;
+		}
+
 		if (allChildrenSelected) {
 			selectRow(parentRow);
 		} else {
 			unselectRow(parentRow);
 		}
 	}
+	
+	/**
+	 * The selected elements - looked-up as they're iterated. If the selection isn't inverted, only the set bits are visited,
+	 * otherwise the visible rows are.
+	 */
+	private class SelectedElements extends AbstractSet<T> {
+		
+		@Override
+		public int size() {
+			return selectedCount;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean contains(final Object element) {
+			final Row<T> row = gridModel.getRow((T) element);
+			return (row != null) && isSelected(row);
+		}
+		
+		@Override
+		public void clear() {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private final boolean byOrdinal = !inverted;
+				private int position = -1;
+				private Row<T> next = advance();
+				
+				private Row<T> advance() {
+					while (true) {
+						if (byOrdinal) {
+							position = selectedOrdinals.nextSetBit(position + 1);
+							
+							if (position == -1) {
+								return null;
+							}
+							
+							final Row<T> row = gridModel.getRowByOrdinal(position);
+							if ((row != null) && row.isVisible()) {
+								return row;
+							}
+							
+						} else {
+							if (++position >= gridModel.getRows().size()) {
+								return null;
+							}
+							
+							final Row<T> row = gridModel.getRows().get(position);
+							if (isSelected(row)) {
+								return row;
+							}
+						}
+					}
+				}
+				
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+				
+				@Override
+				public T next() {
+					if (next == null) {
+						throw new NoSuchElementException();
+					}
+					
+					final T element = next.getElement();
+					next = advance();
+					return element;
+				}
+			};
+		}
+	}
 }
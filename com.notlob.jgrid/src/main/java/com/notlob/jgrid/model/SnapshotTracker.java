@@ -0,0 +1,216 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.notlob.jgrid.listeners.IRowDeltaListener;
+
+/**
+ * Mirrors the visible rows as the chunks of the last snapshot published (see GridSnapshot), marking the chunks the row
+ * deltas touch as dirty. Only the dirty chunks are copied from the rows when the next snapshot is taken - the others are
+ * shared with the last snapshot.
+ *
+ * Chunks vary in size, so a row inserted or removed only changes the chunk it's in - not every chunk after it.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+class SnapshotTracker<T> implements IRowDeltaListener<T> {
+
+	// The most rows copied into a new chunk. A run of dirty rows is split evenly and one shorter than half of this is copied
+	// along with the chunk after it, so chunks don't become fragmented.
+	final static int CHUNK_SIZE = 1024;
+
+	private final GridModel<T> gridModel;
+
+	// The chunks in position order. A dirty chunk has no elements (or ordinals) until it's copied again.
+	private final List<Chunk> chunks;
+
+	// How many rows are in the chunks.
+	private int size;
+
+	private final static Logger logger = LoggerFactory.getLogger(SnapshotTracker.class);
+
+	static class Chunk {
+		private int size;
+		private Object[] elements;
+		private int[] ordinals;
+
+		private Chunk(final int size) {
+			this.size = size;
+		}
+
+		private boolean isDirty() {
+			return (elements == null);
+		}
+
+		Object[] getElements() {
+			return elements;
+		}
+
+		int[] getOrdinals() {
+			return ordinals;
+		}
+	}
+
+	SnapshotTracker(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.chunks = new ArrayList<>();
+	}
+
+	@Override
+	public void rowInserted(final T element, final int index) {
+		final Chunk chunk = (index == size) ? lastChunk() : chunkAt(index);
+		chunk.size++;
+		size++;
+		dirty(chunk);
+	}
+
+	@Override
+	public void rowRemoved(final T element, final int index) {
+		final Chunk chunk = chunkAt(index);
+		chunk.size--;
+		size--;
+		dirty(chunk);
+
+		if (chunk.size == 0) {
+			chunks.remove(chunk);
+		}
+	}
+
+	@Override
+	public void rowMoved(final T element, final int fromIndex, final int toIndex) {
+		rowRemoved(element, fromIndex);
+		rowInserted(element, toIndex);
+	}
+
+	@Override
+	public void rowHeightChanged(final T element, final int index, final int height) {
+	}
+
+	@Override
+	public void rowsReset() {
+		reset(gridModel.getRows().size());
+	}
+
+	/**
+	 * The visible row at the index specified is now a different element (it's been replaced).
+	 */
+	void rowChanged(final int index) {
+		dirty(chunkAt(index));
+	}
+
+	/**
+	 * Copy the dirty chunks from the rows and return all of the chunks. If the rows don't match the chunks (some change
+	 * wasn't notified) every chunk is copied again.
+	 */
+	List<Chunk> takeChunks(final List<Row<T>> rows) {
+		if (size != rows.size()) {
+			logger.warn("Snapshot expected {} visible rows but there are {} - copying them all", size, rows.size());
+			reset(rows.size());
+		}
+
+		final List<Chunk> takenChunks = new ArrayList<>(chunks.size());
+		int chunkIndex = 0;
+		int start = 0;
+
+		while (chunkIndex < chunks.size()) {
+			if (!chunks.get(chunkIndex).isDirty()) {
+				start += chunks.get(chunkIndex).size;
+				takenChunks.add(chunks.get(chunkIndex++));
+				continue;
+			}
+
+			//
+			// Copy the run of dirty chunks (and a clean chunk after a short run) into new chunks.
+			//
+			int end = start;
+
+			while ((chunkIndex < chunks.size()) && (chunks.get(chunkIndex).isDirty() || ((end - start) < (CHUNK_SIZE / 2)))) {
+				end += chunks.get(chunkIndex++).size;
+			}
+
+			final int length = end - start;
+			final int pieces = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+			for (int piece=0; piece<pieces; piece++) {
+				final int pieceStart = start + (int) ((long) length * piece / pieces);
+				final int pieceEnd = start + (int) ((long) length * (piece + 1) / pieces);
+				takenChunks.add(copy(rows, pieceStart, pieceEnd - pieceStart));
+			}
+
+			start = end;
+		}
+
+		chunks.clear();
+		chunks.addAll(takenChunks);
+		return takenChunks;
+	}
+
+	private Chunk copy(final List<Row<T>> rows, final int start, final int length) {
+		final Chunk chunk = new Chunk(length);
+		chunk.elements = new Object[length];
+		chunk.ordinals = new int[length];
+
+		for (int index=0; index<length; index++) {
+			final Row<T> row = rows.get(start + index);
+			chunk.elements[index] = row.getElement();
+			chunk.ordinals[index] = row.getOrdinal();
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Drop the chunks - all the rows are copied (as a single dirty chunk) next time.
+	 */
+	private void reset(final int rowCount) {
+		chunks.clear();
+		size = rowCount;
+
+		if (rowCount > 0) {
+			chunks.add(new Chunk(rowCount));
+		}
+
+		gridModel.snapshotChanged();
+	}
+
+	private void dirty(final Chunk chunk) {
+		chunk.elements = null;
+		chunk.ordinals = null;
+		gridModel.snapshotChanged();
+	}
+
+	/**
+	 * The chunk holding the row at the index specified. The chunks are visited in turn, so this is only quick because there
+	 * are few chunks compared to rows.
+	 */
+	private Chunk chunkAt(final int index) {
+		int start = 0;
+
+		for (final Chunk chunk : chunks) {
+			if (index < (start + chunk.size)) {
+				return chunk;
+			}
+
+			start += chunk.size;
+		}
+
+		throw new IndexOutOfBoundsException(String.format("Index %s, size %s", index, size));
+	}
+
+	/**
+	 * The last chunk, which is added if there isn't one.
+	 */
+	private Chunk lastChunk() {
+		if (chunks.isEmpty()) {
+			chunks.add(new Chunk(0));
+		}
+
+		return chunks.get(chunks.size() - 1);
+	}
+}
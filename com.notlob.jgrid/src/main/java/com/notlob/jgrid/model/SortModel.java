@@ -1,20 +1,71 @@
 package com.notlob.jgrid.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
 
 public class SortModel<T> {
 
 	private Comparator<Row<T>> rowComparator;
+	
+	// Used instead of the rowComparator when there are no groups (only if the rowComparator is a DefaultRowComparator itself).
+	private Comparator<Row<T>> ungroupedRowComparator;
+	
+	// How many rows (visible or hidden) are a group's parent or child, and which they are.
+	private int groupedRowCount;
+	private final OrdinalMap<Boolean> groupedRows;
 	private final GridModel<T> gridModel;
 	private final List<Column> sortedColumns;
+	
+	// Sort groups' children independently of the top-level rows (see sortHierarchically).
+	private boolean hierarchicalSort;
+	
+	// Allow large groups' children to be sorted on multiple threads.
+	private boolean parallelGroupSort;
+	
+	// Groups with fewer children than this are always sorted on the calling thread.
+	private final static int PARALLEL_GROUP_THRESHOLD = 8192;
+	
+	// Up to this many deferred rows are put back into place one at a time (by a binary search) rather than merged in.
+	private final static int BINARY_INSERT_LIMIT = 32;
+	
+	// The row order of recently used sort specifications - so switching back to them doesn't need a full sort.
+	private final RowCache<SortSpecification, T> sortCache;
+	
+	// The default maximum number of rows held across all the cached sort orders.
+	private final static int DEFAULT_SORT_CACHE_BUDGET = 1000000;
+	
+	// Whether the visible rows are in the row comparator's order - they aren't after the comparator is replaced, so their
+	// order mustn't be cached (or re-ordered in place) until they've been sorted again.
+	private boolean rowsSorted = true;
+	
+	// Whether re-selecting the top N (rather than sorting) deselected rows which are no longer shown, since it was notified.
+	private boolean selectionChanged;
+	
+	// While frozen (or while a batch of updates is evaluated), rows are left where they are when updated (or shown) and 
+	// recorded here as out of order.
+	private boolean frozen;
+	private boolean deferring;
+	private final Set<Row<T>> deferredRows;
 
 	public SortModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
 		sortedColumns = new ArrayList<>();
-		rowComparator = new DefaultRowComparator<T>(gridModel);
+		sortCache = new RowCache<SortSpecification, T>(DEFAULT_SORT_CACHE_BUDGET, Integer.MAX_VALUE);
+		groupedRows = new OrdinalMap<>();
+		deferredRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		setRowComparator(new DefaultRowComparator<T>(gridModel));
+		hierarchicalSort = true;
+		parallelGroupSort = false;
 	}
 
 	/**
@@ -22,6 +73,7 @@ public class SortModel<T> {
 	 */
 	void removeColumn(final Column column) {
 		sortedColumns.remove(column);
+		sortCache.clear();
 		
 		int sequence = 0;
 		for (Column existing : sortedColumns) {
@@ -31,11 +83,354 @@ public class SortModel<T> {
 
 	public void setRowComparator(final Comparator<Row<T>> rowComparator) {
 		this.rowComparator = rowComparator;
+		this.ungroupedRowComparator = null;
+		this.rowsSorted = false;
+		sortCache.clear();
+		
+		if (isDefaultRowComparator()) {
+			final DefaultRowComparator<T> defaultRowComparator = (DefaultRowComparator<T>) rowComparator;
+			
+			ungroupedRowComparator = new Comparator<Row<T>>() {
+				@Override
+				public int compare(final Row<T> row1, final Row<T> row2) {
+					return defaultRowComparator.compareUngrouped(row1, row2);
+				}
+			};
+		}
 	}
 	
 	public Comparator<Row<T>> getRowComparator() {
 		return rowComparator;
 	}
+	
+	/**
+	 * Returns true if the row comparator is a DefaultRowComparator itself. The short-cuts which rely on how it compares rows
+	 * aren't taken for a sub-class, as it may override compare.
+	 */
+	private boolean isDefaultRowComparator() {
+		return (rowComparator != null) && (rowComparator.getClass() == DefaultRowComparator.class);
+	}
+	
+	/**
+	 * The comparator to actually sort with. If there are no groups in the grid, the relationship checks in the 
+	 * DefaultRowComparator are pointless, so rows are compared by the sorted columns (and natural index) alone. A sub-class
+	 * may override compare, so it's always used as-is.
+	 */
+	Comparator<Row<T>> getActiveRowComparator() {
+		return ((groupedRowCount == 0) && (ungroupedRowComparator != null)) ? ungroupedRowComparator : rowComparator;
+	}
+	
+	/**
+	 * Returns true if a change to the column's value could move a row. The DefaultRowComparator only compares the sorted 
+	 * columns, any other comparator (including a sub-class) is assumed to depend on every column.
+	 */
+	public boolean dependsOn(final Column column) {
+		if (!isDefaultRowComparator()) {
+			return true;
+		}
+		
+		return (column.getSortDirection() != SortDirection.NONE) && sortedColumns.contains(column);
+	}
+	
+	/**
+	 * Returns true if any row (visible or hidden) is a group's parent or child.
+	 */
+	public boolean hasGroups() {
+		return groupedRowCount > 0;
+	}
+	
+	/**
+	 * Called by the grid model when it has worked out whether the row is a group's parent or child - when the row is added, 
+	 * or updated as an element can join or leave a group.
+	 */
+	void rowGrouped(final Row<T> row, final boolean grouped) {
+		if (grouped != (groupedRows.get(row) != null)) {
+			groupedRows.put(row, grouped ? Boolean.TRUE : null);
+			groupedRowCount += grouped ? 1 : -1;
+		}
+	}
+	
+	/**
+	 * Called by the grid model when a row is added or updated.
+	 */
+	void rowAdded(final Row<T> row) {
+		if (!sortCache.isEmpty()) {
+			sortCache.rowChanged(row);
+		}
+	}
+	
+	/**
+	 * Called by the grid model when a row is removed.
+	 */
+	void rowRemoved(final Row<T> row) {
+		if (groupedRows.get(row) != null) {
+			groupedRows.remove(row);
+			groupedRowCount--;
+		}
+		
+		if (!deferredRows.isEmpty()) {
+			deferredRows.remove(row);
+		}
+		
+		if (!sortCache.isEmpty()) {
+			sortCache.rowChanged(row);
+		}
+	}
+	
+	/**
+	 * Called by the grid model when all the rows are removed.
+	 */
+	void rowsCleared() {
+		groupedRowCount = 0;
+		groupedRows.clear();
+		sortCache.clear();
+		deferredRows.clear();
+	}
+	
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	/**
+	 * While frozen, updates only change the contents of rows - they're not moved to keep the rows sorted, so rows don't jump
+	 * around while the user is reading them. Any rows which are out of order are merged into place (in a single pass) when the
+	 * order is unfrozen.
+	 * 
+	 * An explicit sort is still applied while frozen. If rows are moved, they're re-indexed and a change event is fired.
+	 */
+	public void setFrozen(final boolean frozen) {
+		this.frozen = frozen;
+		
+		if (!frozen && applyDeferredMoves()) {
+			gridModel.reindex();
+			gridModel.fireRowsResetEvent();
+			gridModel.fireChangeEvent();
+			fireSelectionChangedEvent();
+		}
+	}
+	
+	/**
+	 * How many visible rows may be out of order because they've changed while frozen.
+	 */
+	public int getDeferredRowCount() {
+		return deferredRows.size();
+	}
+	
+	/**
+	 * Whether the grid model should call deferMove rather than move a row.
+	 */
+	boolean isDeferringMoves() {
+		return frozen || deferring;
+	}
+	
+	/**
+	 * Called by the grid model rather than moving a row while frozen (or while a batch of updates is evaluated).
+	 */
+	void deferMove(final Row<T> row) {
+		deferredRows.add(row);
+	}
+	
+	/**
+	 * Leave the rows updated (or shown) from now on where they are, until placeDeferredMoves is called. Used while a batch of
+	 * updates is evaluated, so that each row isn't placed amongst others in the batch which may still be out of place.
+	 */
+	void deferMoves() {
+		deferring = true;
+	}
+	
+	/**
+	 * Take the deferred rows which are now out of order out of the visible rows and insert them back into place. The other
+	 * rows kept their relative order, so only the deferred rows are compared - each against the rows kept either side of it.
+	 * A group whose parent row was deferred is moved whole. Returns true if any row was moved. The rows are not re-indexed.
+	 * 
+	 * While frozen the rows are left deferred until the order is unfrozen.
+	 */
+	boolean placeDeferredMoves() {
+		deferring = false;
+		
+		if (frozen || deferredRows.isEmpty()) {
+			return false;
+		}
+		
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		final Set<T> movedGroups = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		
+		for (final Row<T> row : deferredRows) {
+			if (row.isVisible() && gridModel.isParentRow(row)) {
+				movedGroups.add(row.getElement());
+			}
+		}
+		
+		//
+		// Keep each deferred row which is still between the rows kept either side of it - in a single pass, compacting the 
+		// rows which aren't kept out of the list.
+		//
+		final List<Row<T>> rowsToPlace = new ArrayList<>();
+		Row<T> previousRow = null;
+		int nextFixedIndex = 0;
+		int writeIndex = 0;
+		
+		for (int readIndex=0; readIndex<rows.size(); readIndex++) {
+			final Row<T> row = rows.get(readIndex);
+			boolean inPlace = !deferredRows.contains(row);
+			
+			if (!movedGroups.isEmpty() && isInGroup(row, movedGroups, contentProvider)) {
+				inPlace = false;
+				
+			} else if (!inPlace) {
+				if (nextFixedIndex <= readIndex) {
+					nextFixedIndex = readIndex + 1;
+					
+					while ((nextFixedIndex < rows.size()) && (deferredRows.contains(rows.get(nextFixedIndex)) || (!movedGroups.isEmpty() && isInGroup(rows.get(nextFixedIndex), movedGroups, contentProvider)))) {
+						nextFixedIndex++;
+					}
+				}
+				
+				inPlace = ((previousRow == null) || (comparator.compare(previousRow, row) <= 0)) 
+						&& ((nextFixedIndex == rows.size()) || (comparator.compare(row, rows.get(nextFixedIndex)) <= 0));
+			}
+			
+			if (inPlace) {
+				rows.set(writeIndex++, row);
+				previousRow = row;
+				
+			} else {
+				rowsToPlace.add(row);
+				gridModel.fireRowRemovedEvent(row, writeIndex);
+			}
+		}
+		
+		rows.subList(writeIndex, rows.size()).clear();
+		deferredRows.clear();
+		
+		if (rowsToPlace.isEmpty()) {
+			return false;
+		}
+		
+		if (rowsToPlace.size() <= BINARY_INSERT_LIMIT) {
+			//
+			// Insert the rows best first, so each one notified stays where it was when the next is inserted after it.
+			//
+			Collections.sort(rowsToPlace, comparator);
+			
+			for (final Row<T> row : rowsToPlace) {
+				final int index = getSortedRowIndex(row);
+				rows.add(index, row);
+				gridModel.fireRowInsertedEvent(row, index);
+			}
+			
+		} else {
+			mergeRows(rowsToPlace);
+			
+			if (gridModel.hasRowDeltaListeners()) {
+				final Set<Row<T>> rowsPlaced = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+				rowsPlaced.addAll(rowsToPlace);
+				
+				for (int index=0; index<rows.size(); index++) {
+					if (rowsPlaced.contains(rows.get(index))) {
+						gridModel.fireRowInsertedEvent(rows.get(index), index);
+					}
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns true if the row is the parent or a child of one of the groups.
+	 */
+	private boolean isInGroup(final Row<T> row, final Set<T> groups, final IGridContentProvider<T> contentProvider) {
+		return groups.contains(row.getElement()) || groups.contains(contentProvider.getParent(row.getElement()));
+	}
+	
+	/**
+	 * Take the rows which changed while frozen out of the visible rows then merge them back in. The other rows kept their 
+	 * relative order, so they're still sorted. Returns true if there was anything to do.
+	 */
+	private boolean applyDeferredMoves() {
+		if (deferredRows.isEmpty()) {
+			return false;
+		}
+		
+		if (gridModel.getTopNModel().isEnabled()) {
+			sortRows();
+			return true;
+		}
+		
+		final List<Row<T>> rows = gridModel.getRows();
+		final List<Row<T>> rowsToMerge = new ArrayList<>(deferredRows.size());
+		int writeIndex = 0;
+		
+		for (int readIndex=0; readIndex<rows.size(); readIndex++) {
+			final Row<T> row = rows.get(readIndex);
+			
+			if (deferredRows.contains(row)) {
+				rowsToMerge.add(row);
+				
+			} else {
+				rows.set(writeIndex++, row);
+			}
+		}
+		
+		rows.subList(writeIndex, rows.size()).clear();
+		deferredRows.clear();
+		mergeRows(rowsToMerge);
+		
+		//
+		// Rows shown without being recorded (i.e. a whole group revealed) could still be out of place.
+		//
+		refreshIfNeeded();
+		return true;
+	}
+	
+	public int getSortCacheBudget() {
+		return sortCache.getBudget();
+	}
+	
+	/**
+	 * The maximum number of rows held across all the cached sort orders (each cached order holds one reference per visible 
+	 * row). Zero disables the cache.
+	 */
+	public void setSortCacheBudget(final int sortCacheBudget) {
+		sortCache.setBudget(sortCacheBudget);
+	}
+	
+	/**
+	 * Discard any cached sort orders. This should be called if anything affecting the sort order changes outside of the grid's 
+	 * knowledge - such as a column's comparator.
+	 */
+	public void clearSortCache() {
+		sortCache.clear();
+	}
+	
+	public boolean isHierarchicalSort() {
+		return hierarchicalSort;
+	}
+	
+	/**
+	 * When enabled (the default) grouped data is sorted in two levels rather than comparing every row with every other.
+	 * 
+	 * Only applies if the row comparator is a DefaultRowComparator itself - a sub-class may override compare, so its rows are
+	 * always sorted with it.
+	 */
+	public void setHierarchicalSort(final boolean hierarchicalSort) {
+		this.hierarchicalSort = hierarchicalSort;
+	}
+	
+	public boolean isParallelGroupSort() {
+		return parallelGroupSort;
+	}
+	
+	/**
+	 * When enabled, the children of very large groups are sorted using multiple threads. The content provider's getValue 
+	 * and getNaturalIndex must then be safe to call from a thread other than the UI thread.
+	 */
+	public void setParallelGroupSort(final boolean parallelGroupSort) {
+		this.parallelGroupSort = parallelGroupSort;
+	}
 
 	/**
 	 * Toggle the column's sort and apply to the current sort model (or replace the current model).
@@ -46,6 +441,8 @@ public class SortModel<T> {
 		//
 		gridModel.fireColumnAboutToSortEvent(column);
 		
+		final SortSpecification previousSpecification = getSortSpecification();
+		
 		//
 		// Toggle the sort direction on the column.
 		//
@@ -78,12 +475,14 @@ public class SortModel<T> {
 		//
 		// Now sort the data.
 		//
-		Collections.sort(gridModel.getRows(), rowComparator);
+		sortRows(previousSpecification, getSortSpecification());
 		
 		//
 		// Re-index the rows.
 		//
 		gridModel.reindex();
+		gridModel.fireRowsResetEvent();
+		fireSelectionChangedEvent();
 
 		if (notify) {
 			gridModel.fireChangeEvent();
@@ -92,9 +491,396 @@ public class SortModel<T> {
 	}
 
 	public void refresh() {
-		Collections.sort(gridModel.getRows(), rowComparator);
+		sortRows();
+		gridModel.fireRowsResetEvent();
+		fireSelectionChangedEvent();
+	}
+	
+	/**
+	 * Re-sort the rows only if they're out of order. Returns true if a sort was needed.
+	 * 
+	 * Used after the order is unfrozen, in case rows were shown without being recorded as deferred. Nothing is done while 
+	 * the order is frozen.
+	 */
+	public boolean refreshIfNeeded() {
+		if (frozen) {
+			return false;
+		}
+		
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		
+		for (int index=1; index<rows.size(); index++) {
+			if (comparator.compare(rows.get(index - 1), rows.get(index)) > 0) {
+				sortRows();
+				gridModel.fireRowsResetEvent();
+				fireSelectionChangedEvent();
+				return true;
+			}
+		}
+		
+		return false;
 	}
 
+	/**
+	 * The columns currently sorted and their directions.
+	 */
+	public SortSpecification getSortSpecification() {
+		return SortSpecification.of(sortedColumns);
+	}
+	
+	/**
+	 * Sort the rows after the specification has changed. The current order is cached first. Then, if possible, the rows are 
+	 * restored from a cached order for the new specification, or re-ordered in place if the rows are already sorted by a 
+	 * related specification. Otherwise they're fully sorted.
+	 */
+	private void sortRows(final SortSpecification previous, final SortSpecification current) {
+		if (gridModel.getTopNModel().isEnabled() || !deferredRows.isEmpty()) {
+			//
+			// Only the top N rows are visible (or rows have been left out of order while frozen), so there's no complete order 
+			// to cache or re-use.
+			//
+			sortRows();
+			return;
+		}
+		
+		if (!current.equals(previous) && rowsSorted) {
+			sortCache.put(previous, gridModel.getRows());
+			
+			if (restoreFromCache(current) || sortIncrementally(previous, current)) {
+				return;
+			}
+		}
+		
+		sortRows();
+	}
+	
+	/**
+	 * If there's a cached order for the specification, the rows which haven't changed since are taken from it (in order) and 
+	 * the changed rows are sorted and merged in.
+	 * 
+	 * Returns false if there's no cached order, or it doesn't account for every visible row.
+	 */
+	private boolean restoreFromCache(final SortSpecification specification) {
+		final RowCache.Entry<T> entry = sortCache.remove(specification);
+		
+		if (entry == null) {
+			return false;
+		}
+		
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		final Set<Row<T>> dirtyRows = entry.getDirtyRows();
+		
+		//
+		// Changed rows which are still in the grid and visible must be sorted and merged in.
+		//
+		final List<Row<T>> changedRows = new ArrayList<>();
+		for (final Row<T> row : dirtyRows) {
+			if (row.isVisible() && (gridModel.getRow(row.getElement()) == row)) {
+				changedRows.add(row);
+			}
+		}
+		Collections.sort(changedRows, comparator);
+		
+		final List<Row<T>> merged = new ArrayList<>(rows.size());
+		int changedIndex = 0;
+		
+		for (final Row<T> row : entry.getRows()) {
+			if (row.isVisible() && !dirtyRows.contains(row)) {
+				while ((changedIndex < changedRows.size()) && (comparator.compare(changedRows.get(changedIndex), row) < 0)) {
+					merged.add(changedRows.get(changedIndex++));
+				}
+				
+				merged.add(row);
+			}
+		}
+		
+		while (changedIndex < changedRows.size()) {
+			merged.add(changedRows.get(changedIndex++));
+		}
+		
+		//
+		// Rows shown without having changed (i.e. by a filter) would be missing from the cached order.
+		//
+		if (merged.size() != rows.size()) {
+			return false;
+		}
+		
+		final ListIterator<Row<T>> iterator = rows.listIterator();
+		for (final Row<T> row : merged) {
+			iterator.next();
+			iterator.set(row);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * If the new specification only flips the direction of the last column, or appends a column to the previous one, then 
+	 * re-order the (already sorted) rows in place rather than sorting them again from scratch. Only done for ungrouped rows 
+	 * compared by a DefaultRowComparator.
+	 * 
+	 * Returns false if a full sort is needed.
+	 */
+	private boolean sortIncrementally(final SortSpecification previous, final SortSpecification current) {
+		if ((groupedRowCount > 0) || (ungroupedRowComparator == null) || previous.isEmpty()) {
+			return false;
+		}
+		
+		final int keyCount = previous.size();
+		
+		if ((current.size() == keyCount + 1) && current.startsWith(previous, keyCount)) {
+			//
+			// A column has been appended - only rows equal on the previous keys need sorting (amongst themselves).
+			//
+			sortWithinRuns(previous, keyCount);
+			return true;
+		}
+		
+		if ((current.size() == keyCount) && current.startsWith(previous, keyCount - 1) && (current.getColumn(keyCount - 1) == previous.getColumn(keyCount - 1)) && isReversed(current.getDirection(keyCount - 1), previous.getDirection(keyCount - 1))) {
+			//
+			// The last column's direction has been flipped.
+			//
+			reverseWithinRuns(current, keyCount - 1);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	private boolean isReversed(final SortDirection direction1, final SortDirection direction2) {
+		return ((direction1 == SortDirection.ASC) && (direction2 == SortDirection.DESC)) || ((direction1 == SortDirection.DESC) && (direction2 == SortDirection.ASC));
+	}
+	
+	/**
+	 * Sort each run of rows which are equal on the first keyCount columns of the specification.
+	 */
+	private void sortWithinRuns(final SortSpecification specification, final int keyCount) {
+		final List<Row<T>> rows = gridModel.getRows();
+		final DefaultRowComparator<T> comparator = (DefaultRowComparator<T>) rowComparator;
+		int start = 0;
+		
+		while (start < rows.size()) {
+			final int end = getRunEnd(rows, start, specification, keyCount, comparator);
+			
+			if (end - start > 1) {
+				Collections.sort(rows.subList(start, end), ungroupedRowComparator);
+			}
+			
+			start = end;
+		}
+	}
+	
+	/**
+	 * Within each run of rows equal on the first keyCount columns, reverse the order of the next column's values while 
+	 * keeping rows with equal values in their existing (tie-break) order. 
+	 * 
+	 * This is done by reversing the run, then reversing each sub-run of equal values back again.
+	 */
+	private void reverseWithinRuns(final SortSpecification specification, final int keyCount) {
+		final List<Row<T>> rows = gridModel.getRows();
+		final DefaultRowComparator<T> comparator = (DefaultRowComparator<T>) rowComparator;
+		int start = 0;
+		
+		while (start < rows.size()) {
+			final int end = getRunEnd(rows, start, specification, keyCount, comparator);
+			
+			if (end - start > 1) {
+				Collections.reverse(rows.subList(start, end));
+				
+				int subStart = start;
+				while (subStart < end) {
+					final int subEnd = Math.min(end, getRunEnd(rows, subStart, specification, keyCount + 1, comparator));
+					
+					if (subEnd - subStart > 1) {
+						Collections.reverse(rows.subList(subStart, subEnd));
+					}
+					
+					subStart = subEnd;
+				}
+			}
+			
+			start = end;
+		}
+	}
+	
+	/**
+	 * Return the index after the last row (from start) whose values are equal to the start row's for the first keyCount 
+	 * columns in the specification.
+	 */
+	private int getRunEnd(final List<Row<T>> rows, final int start, final SortSpecification specification, final int keyCount, final DefaultRowComparator<T> comparator) {
+		final T element = rows.get(start).getElement();
+		int end = start + 1;
+		
+		while ((end < rows.size()) && comparator.isEqual(element, rows.get(end).getElement(), specification, keyCount)) {
+			end++;
+		}
+		
+		return end;
+	}
+	
+	/**
+	 * If re-selecting the top N deselected any rows, let the listeners know. Called once the rows have been re-ordered and notified.
+	 */
+	private void fireSelectionChangedEvent() {
+		if (selectionChanged) {
+			selectionChanged = false;
+			gridModel.fireSelectionChangedEvent();
+		}
+	}
+	
+	/**
+	 * Sort all the visible rows. If only the top N are shown, they're re-selected instead.
+	 */
+	private void sortRows() {
+		final List<Row<T>> rows = gridModel.getRows();
+		deferredRows.clear();
+		
+		rowsSorted = true;
+		
+		if (gridModel.getTopNModel().isEnabled()) {
+			selectionChanged |= gridModel.getTopNModel().rebuild();
+			return;
+		}
+		
+		if (hierarchicalSort && (groupedRowCount > 0) && isDefaultRowComparator() && sortHierarchically(rows, (DefaultRowComparator<T>) rowComparator)) {
+			return;
+		}
+		
+		Collections.sort(rows, getActiveRowComparator());
+	}
+	
+	/**
+	 * The DefaultRowComparator keeps every group together, so rather than have it work out the relationship of every pair 
+	 * of rows, the top-level rows (one entry per group plus the ungrouped rows) are sorted, then each group's children are 
+	 * sorted on their own and the whole lot is written back in order. The resulting order is identical.
+	 * 
+	 * Each row's group is only looked-up once, so neither sort needs to call the content provider's getParent/getChildren.
+	 * 
+	 * Returns false (leaving the rows untouched) if there are no groups, or if groups are nested more than one level deep.
+	 */
+	private boolean sortHierarchically(final List<Row<T>> rows, final DefaultRowComparator<T> comparator) {
+		final IGridContentProvider<T> contentProvider = gridModel.getContentProvider();
+		final Map<T, TopLevelRow<T>> groups = new IdentityHashMap<>();
+		final List<TopLevelRow<T>> topLevelRows = new ArrayList<>();
+		
+		//
+		// Bucket the rows into groups.
+		//
+		for (final Row<T> row : rows) {
+			final T parent = contentProvider.getParent(row.getElement());
+			final boolean isParent = gridModel.isParentElement(row.getElement());
+			
+			if ((parent != null) && isParent) {
+				return false;
+			}
+			
+			if ((parent == null) && !isParent) {
+				topLevelRows.add(new TopLevelRow<T>(row, row.getElement(), false));
+				continue;
+			}
+			
+			final T groupElement = (parent == null) ? row.getElement() : parent;
+			TopLevelRow<T> group = groups.get(groupElement);
+			
+			if (group == null) {
+				group = new TopLevelRow<T>(row, groupElement, true);
+				groups.put(groupElement, group);
+				topLevelRows.add(group);
+			}
+			
+			if (parent == null) {
+				group.parentRow = row;
+			} else {
+				group.children.add(row);
+			}
+		}
+		
+		if (groups.isEmpty()) {
+			return false;
+		}
+		
+		Collections.sort(topLevelRows, new Comparator<TopLevelRow<T>>() {
+			@Override
+			public int compare(final TopLevelRow<T> topLevelRow1, final TopLevelRow<T> topLevelRow2) {
+				return comparator.compareTopLevel(topLevelRow1.row, topLevelRow1.element, topLevelRow1.group, topLevelRow2.row, topLevelRow2.element, topLevelRow2.group);
+			}
+		});
+		
+		final Comparator<Row<T>> siblingComparator = new Comparator<Row<T>>() {
+			@Override
+			public int compare(final Row<T> row1, final Row<T> row2) {
+				return comparator.compareSiblings(row1, row2);
+			}
+		};
+		
+		//
+		// Write the rows back, expanding each group in-turn.
+		//
+		final boolean parentsFirst = comparator.isParentRowsAboveChildren();
+		final ListIterator<Row<T>> iterator = rows.listIterator();
+		
+		for (final TopLevelRow<T> topLevelRow : topLevelRows) {
+			if (!topLevelRow.group) {
+				iterator.next();
+				iterator.set(topLevelRow.row);
+				continue;
+			}
+			
+			if (parentsFirst && (topLevelRow.parentRow != null)) {
+				iterator.next();
+				iterator.set(topLevelRow.parentRow);
+			}
+			
+			for (final Row<T> child : sortChildren(topLevelRow.children, siblingComparator)) {
+				iterator.next();
+				iterator.set(child);
+			}
+			
+			if (!parentsFirst && (topLevelRow.parentRow != null)) {
+				iterator.next();
+				iterator.set(topLevelRow.parentRow);
+			}
+		}
+		
+		return true;
+	}
+	
+	private List<Row<T>> sortChildren(final List<Row<T>> children, final Comparator<Row<T>> siblingComparator) {
+		if (parallelGroupSort && (children.size() >= PARALLEL_GROUP_THRESHOLD)) {
+			final Row<T>[] array = children.toArray(newRows(children.size()));
+			Arrays.parallelSort(array, siblingComparator);
+			return Arrays.asList(array);
+		}
+		
+		Collections.sort(children, siblingComparator);
+		return children;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> Row<T>[] newRows(final int size) {
+		return (Row<T>[]) new Row<?>[size];
+	}
+	
+	/**
+	 * Either an ungrouped row, or a whole group (the element being the group's parent element).
+	 */
+	private static class TopLevelRow<T> {
+		private final Row<T> row;
+		private final T element;
+		private final boolean group;
+		private Row<T> parentRow;
+		private final List<Row<T>> children;
+		
+		private TopLevelRow(final Row<T> row, final T element, final boolean group) {
+			this.row = row;
+			this.element = element;
+			this.group = group;
+			this.children = group ? new ArrayList<Row<T>>() : Collections.<Row<T>>emptyList();
+		}
+	}
+	
 	private SortDirection toggleDirection(final SortDirection sortDirection) {
 		if (sortDirection == null) {
 			return SortDirection.ASC;
@@ -115,10 +901,13 @@ public class SortModel<T> {
 	 * Clear the current sorts.
 	 */
 	public void clear() {
+		final SortSpecification previousSpecification = getSortSpecification();
 		clearInternal();
-		Collections.sort(gridModel.getRows(), rowComparator);
+		sortRows(previousSpecification, SortSpecification.NONE);
 		gridModel.reindex();
+		gridModel.fireRowsResetEvent();
 		gridModel.fireChangeEvent();
+		fireSelectionChangedEvent();
 	}
 
 	/**
@@ -133,16 +922,94 @@ public class SortModel<T> {
 		sortedColumns.clear();
 	}
 
+	/**
+	 * Sort the rows specified and merge them into the visible rows in a single pass. The rows are not re-indexed.
+	 */
+	void mergeRows(final Collection<Row<T>> rowsToMerge) {
+		if (rowsToMerge.isEmpty()) {
+			return;
+		}
+		
+		//
+		// The visible rows may not be sorted while frozen, so the rows merged in are recorded as out of order too.
+		//
+		if (frozen) {
+			deferredRows.addAll(rowsToMerge);
+		}
+		
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		final List<Row<T>> sortedRows = new ArrayList<>(rowsToMerge);
+		Collections.sort(sortedRows, comparator);
+		
+		final List<Row<T>> rows = gridModel.getRows();
+		final List<Row<T>> merged = new ArrayList<>(rows.size() + sortedRows.size());
+		int sortedIndex = 0;
+		
+		for (final Row<T> row : rows) {
+			while ((sortedIndex < sortedRows.size()) && (comparator.compare(sortedRows.get(sortedIndex), row) < 0)) {
+				merged.add(sortedRows.get(sortedIndex++));
+			}
+			
+			merged.add(row);
+		}
+		
+		while (sortedIndex < sortedRows.size()) {
+			merged.add(sortedRows.get(sortedIndex++));
+		}
+		
+		rows.clear();
+		rows.addAll(merged);
+	}
+	
 	/**
 	 * Ascertain where the specified row should live given the current sort model.
 	 * 
 	 * -1 is returned if the row is already present.
 	 */
 	public int getSortedRowIndex(final Row<T> row) {
-		final int index = Collections.binarySearch(gridModel.getRows(), row, rowComparator);
+		final int index = Collections.binarySearch(gridModel.getRows(), row, getActiveRowComparator());
 		return index < 0 ? (index * -1) - 1 : index;
 	}
 	
+	/**
+	 * Is the visible row at the index still correctly placed relative to its neighbours?
+	 * 
+	 * This is used rather than a binary search to detect moves, as the search can land on the (out of place) row itself.
+	 */
+	public boolean isInSortedPosition(final Row<T> row, final int index) {
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		
+		if ((index > 0) && (comparator.compare(rows.get(index - 1), row) > 0)) {
+			return false;
+		}
+		
+		if ((index < rows.size() - 1) && (comparator.compare(row, rows.get(index + 1)) > 0)) {
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns true if the group (the visible rows from start up to end) is between the rows either side of it. A group's
+	 * parent row is compared rather than checking its immediate neighbours - which are usually its own children.
+	 */
+	public boolean isGroupInSortedPosition(final Row<T> parentRow, final int start, final int end) {
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = getActiveRowComparator();
+		
+		if ((start > 0) && (comparator.compare(rows.get(start - 1), parentRow) > 0)) {
+			return false;
+		}
+		
+		if ((end < rows.size()) && (comparator.compare(parentRow, rows.get(end)) > 0)) {
+			return false;
+		}
+		
+		return true;
+	}
+	
 	public List<Column> getSortedColumns() {
 		return sortedColumns;
 	}
@@ -0,0 +1,112 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the columns being sorted (in sequence) and their directions.
+ *
+ * Columns whose direction is NONE have no effect on the row order so they're not included.
+ *
+ * @author Stef
+ */
+public final class SortSpecification {
+
+	public final static SortSpecification NONE = new SortSpecification(Collections.<Column>emptyList(), Collections.<SortDirection>emptyList());
+
+	private final List<Column> columns;
+	private final List<SortDirection> directions;
+
+	private SortSpecification(final List<Column> columns, final List<SortDirection> directions) {
+		this.columns = columns;
+		this.directions = directions;
+	}
+
+	/**
+	 * Snapshot the columns (in sort sequence) and their current directions.
+	 */
+	public static SortSpecification of(final List<Column> sortedColumns) {
+		final List<Column> columns = new ArrayList<>(sortedColumns.size());
+		final List<SortDirection> directions = new ArrayList<>(sortedColumns.size());
+
+		for (final Column column : sortedColumns) {
+			if ((column.getSortDirection() != null) && (column.getSortDirection() != SortDirection.NONE)) {
+				columns.add(column);
+				directions.add(column.getSortDirection());
+			}
+		}
+
+		return columns.isEmpty() ? NONE : new SortSpecification(Collections.unmodifiableList(columns), Collections.unmodifiableList(directions));
+	}
+
+	public int size() {
+		return columns.size();
+	}
+
+	public boolean isEmpty() {
+		return columns.isEmpty();
+	}
+
+	public Column getColumn(final int index) {
+		return columns.get(index);
+	}
+
+	public SortDirection getDirection(final int index) {
+		return directions.get(index);
+	}
+
+	public List<Column> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns true if the first count columns and directions are the same in both specifications.
+	 */
+	public boolean startsWith(final SortSpecification other, final int count) {
+		if ((count > size()) || (count > other.size())) {
+			return false;
+		}
+
+		for (int index=0; index<count; index++) {
+			if ((columns.get(index) != other.columns.get(index)) || (directions.get(index) != other.directions.get(index))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof SortSpecification)) {
+			return false;
+		}
+
+		final SortSpecification other = (SortSpecification) obj;
+		return (size() == other.size()) && startsWith(other, size());
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int index=0; index<columns.size(); index++) {
+			hash = 31 * hash + System.identityHashCode(columns.get(index));
+			hash = 31 * hash + directions.get(index).hashCode();
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (int index=0; index<columns.size(); index++) {
+			sb.append(String.format("%s%s %s", (index == 0) ? "" : ", ", columns.get(index).getCaption(), directions.get(index)));
+		}
+		return sb.toString();
+	}
+}
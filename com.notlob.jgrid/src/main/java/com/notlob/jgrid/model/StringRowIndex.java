@@ -0,0 +1,120 @@
+package com.notlob.jgrid.model;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+
+/**
+ * Rows keyed by the content provider's getElementId.
+ *
+ * @author Stef
+ */
+public class StringRowIndex<T> extends RowIndex<T> {
+
+	private final IGridContentProvider<T> contentProvider;
+	private String[] keys;
+
+	public StringRowIndex(final IGridContentProvider<T> contentProvider) {
+		super(INITIAL_CAPACITY);
+		this.contentProvider = contentProvider;
+		this.keys = new String[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public Row<T> getById(final String elementId) {
+		final int slot = slotOf(elementId);
+		return slot == -1 ? null : rows[slot];
+	}
+
+	@Override
+	protected Row<T> getKeyed(final T element) {
+		return getById(contentProvider.getElementId(element));
+	}
+
+	@Override
+	protected boolean putKeyed(final Row<T> row) {
+		final String key = contentProvider.getElementId(row.getElement());
+
+		if (key == null) {
+			return false;
+		}
+
+		final int slot = slotOf(key);
+
+		if (slot != -1) {
+			return rows[slot] == row;
+		}
+
+		ensureCapacity();
+		insert(key, row);
+		added();
+		return true;
+	}
+
+	@Override
+	protected Row<T> removeKeyed(final T element) {
+		final int slot = slotOf(contentProvider.getElementId(element));
+		return slot == -1 ? null : removeSlot(slot);
+	}
+
+	private int slotOf(final String key) {
+		if (key == null) {
+			return -1;
+		}
+
+		int slot = mix(key.hashCode()) & mask;
+		while (keys[slot] != null) {
+			if (key.equals(keys[slot])) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	private void insert(final String key, final Row<T> row) {
+		int slot = mix(key.hashCode()) & mask;
+		while (keys[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		rows[slot] = row;
+	}
+
+	@Override
+	protected void allocateKeys(final int capacity) {
+		keys = new String[capacity];
+	}
+
+	@Override
+	protected int hashAt(final int slot) {
+		return mix(keys[slot].hashCode());
+	}
+
+	@Override
+	protected void moveKey(final int fromSlot, final int toSlot) {
+		keys[toSlot] = keys[fromSlot];
+	}
+
+	@Override
+	protected void clearKey(final int slot) {
+		keys[slot] = null;
+	}
+
+	@Override
+	protected Object getKeys() {
+		return keys;
+	}
+
+	@Override
+	protected void rehash(final Row<T>[] oldRows, final Object oldKeys) {
+		final String[] oldStringKeys = (String[]) oldKeys;
+
+		for (int slot=0; slot<oldRows.length; slot++) {
+			if (oldRows[slot] != null) {
+				insert(oldStringKeys[slot], oldRows[slot]);
+			}
+		}
+	}
+}
@@ -0,0 +1,430 @@
+package com.notlob.jgrid.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * When enabled, only the best N rows (by the current sort) which pass the filters are visible. The remaining rows which
+ * pass the filters are 'pooled' - they're treated as hidden rows.
+ *
+ * The pooled rows are never fully sorted. The best of them are kept on a bench (a heap of around N rows) and every other
+ * pooled row (the tail) is known to be no better than the bench. So when a visible row leaves or drops down the order,
+ * its replacement is simply the head of the bench. The bench is only rebuilt from the tail (with a bounded heap) when
+ * it runs out. Each pooled row's place in the bench or the tail is held by its ordinal (see GridModel.allocateOrdinal), so
+ * it can be taken out of the pool without a search.
+ *
+ * A change of sort re-selects the top N (and the bench) from all the eligible rows using a bounded heap - rather than a
+ * full sort.
+ *
+ * Groups are ranked row by row, so a group can be split at the boundary. This mode is intended for flat data.
+ *
+ * NOTE: This is an internal class not to be manipulated by client code.
+ *
+ * @author Stef
+ */
+public class TopNModel<T> {
+
+	private final GridModel<T> gridModel;
+
+	// How many rows to show - zero if the mode is disabled.
+	private int topN;
+
+	// The best pooled rows - the same rows with the best at the head of one heap and the worst at the head of the other.
+	private final RowHeap<T> benchRows;
+	private final RowHeap<T> worstBenchRows;
+
+	// The pooled rows which aren't on the bench (in no order) and each one's index plus one, by its ordinal.
+	private final List<Row<T>> tailRows;
+	private int[] tailPositions;
+
+	// How many rows the last enforce moved into or out of the visible rows, and the change in total (visible) row heights.
+	private int swapCount;
+	private int heightDelta;
+
+	private final static Logger logger = LoggerFactory.getLogger(TopNModel.class);
+
+	public TopNModel(final GridModel<T> gridModel) {
+		this.gridModel = gridModel;
+		this.benchRows = new RowHeap<>(false);
+		this.worstBenchRows = new RowHeap<>(true);
+		this.tailRows = new ArrayList<>();
+		this.tailPositions = new int[16];
+	}
+
+	public boolean isEnabled() {
+		return topN > 0;
+	}
+
+	public int getTopN() {
+		return topN;
+	}
+
+	/**
+	 * Only show the best topN rows. Zero shows all rows again. The caller should fire the appropriate events - returns true
+	 * if the selection has changed.
+	 */
+	public boolean setTopN(final int topN) {
+		this.topN = Math.max(0, topN);
+
+		if (isEnabled()) {
+			final boolean selectionChanged = rebuild();
+			gridModel.reindex();
+			return selectionChanged;
+		}
+
+		release();
+		return false;
+	}
+
+	/**
+	 * How many rows pass the filters but aren't shown because they're outside of the top N.
+	 */
+	public int getPooledRowCount() {
+		return benchRows.size() + tailRows.size();
+	}
+
+	public boolean isPooled(final Row<T> row) {
+		return benchRows.contains(row) || isInTail(row);
+	}
+
+	/**
+	 * Take the row out of the pool (i.e. it's being shown, removed, filtered-out or re-evaluated). It's left as a hidden
+	 * row and enforce will re-rank it if it's later shown.
+	 */
+	public void unpool(final Row<T> row) {
+		if (benchRows.remove(row)) {
+			worstBenchRows.remove(row);
+
+		} else {
+			removeFromTail(row);
+		}
+	}
+
+	/**
+	 * Ensure the visible rows are the top N of the visible and pooled rows. The visible rows must be sorted. Called after
+	 * rows have been shown, hidden, updated or removed.
+	 *
+	 * The rows are not re-indexed. A visible row which is pooled is deselected - returns true if the selection has changed,
+	 * the caller should fire the event. How many rows were swapped in or out, and the change in total (visible) row heights,
+	 * are then available from getSwapCount and getHeightDelta.
+	 */
+	public boolean enforce() {
+		swapCount = 0;
+		heightDelta = 0;
+
+		if (!isEnabled()) {
+			return false;
+		}
+
+		final List<Row<T>> rows = gridModel.getRows();
+		final Comparator<Row<T>> comparator = gridModel.getSortModel().getActiveRowComparator();
+		setComparator(comparator);
+		boolean selectionChanged = false;
+
+		while (true) {
+			if (benchRows.isEmpty() && !tailRows.isEmpty()) {
+				refillBench(comparator);
+			}
+
+			if (rows.size() > topN) {
+				//
+				// Too many rows are visible, drop the worst.
+				//
+				selectionChanged |= demote(removeLast(rows), comparator);
+
+			} else if ((rows.size() < topN) && !benchRows.isEmpty()) {
+				//
+				// Too few rows are visible, promote the best pooled row.
+				//
+				promote(pollBench(), comparator);
+
+			} else if (!rows.isEmpty() && !benchRows.isEmpty() && (comparator.compare(benchRows.peek(), rows.get(rows.size() - 1)) < 0)) {
+				//
+				// The best pooled row beats the worst visible row.
+				//
+				final Row<T> worstRow = removeLast(rows);
+				promote(pollBench(), comparator);
+				selectionChanged |= demote(worstRow, comparator);
+
+			} else {
+				break;
+			}
+		}
+
+		return selectionChanged;
+	}
+
+	/**
+	 * How many rows the last enforce moved into or out of the visible rows.
+	 */
+	public int getSwapCount() {
+		return swapCount;
+	}
+
+	/**
+	 * The change in total (visible) row heights made by the last enforce.
+	 */
+	public int getHeightDelta() {
+		return heightDelta;
+	}
+
+	/**
+	 * Re-select the top N and the bench from all the visible and pooled rows. Used when the sort changes (the visible rows
+	 * don't need to be sorted beforehand). The rows are NOT re-indexed.
+	 *
+	 * Only the rows which leave the top N are hidden (and deselected). Returns true if the selection has changed - the
+	 * caller should fire the event.
+	 */
+	boolean rebuild() {
+		final List<Row<T>> rows = gridModel.getRows();
+		final List<Row<T>> hiddenRows = gridModel.getHiddenRows();
+		final Comparator<Row<T>> comparator = gridModel.getSortModel().getActiveRowComparator();
+
+		//
+		// Gather all the eligible rows.
+		//
+		final List<Row<T>> candidates = new ArrayList<>(rows.size() + getPooledRowCount());
+		candidates.addAll(rows);
+		candidates.addAll(benchRows.getRows());
+		candidates.addAll(tailRows);
+
+		final List<Row<T>> best = selectBest(candidates, topN * 2, comparator);
+
+		//
+		// Everything starts in the tail, then the best are taken out - either to be shown or to go on the bench.
+		//
+		clearPool();
+		setComparator(comparator);
+
+		for (final Row<T> row : candidates) {
+			addToTail(row);
+		}
+
+		final List<Row<T>> topRows = best.subList(0, Math.min(topN, best.size()));
+
+		for (final Row<T> row : best) {
+			removeFromTail(row);
+		}
+
+		for (final Row<T> row : best.subList(topRows.size(), best.size())) {
+			addToBench(row);
+		}
+
+		//
+		// Hide the visible rows which are now pooled, then show the new top N in order.
+		//
+		boolean selectionChanged = false;
+
+		for (final Row<T> row : rows) {
+			if (isPooled(row)) {
+				if (row.isSelected()) {
+					gridModel.getSelectionModel().removeRow(row);
+					selectionChanged = true;
+				}
+
+				gridModel.setRowVisible(row, false);
+				row.setRowIndex(-1);
+				hiddenRows.add(row);
+			}
+		}
+
+		rows.clear();
+
+		for (final Row<T> row : topRows) {
+			if (!row.isVisible()) {
+				gridModel.setRowVisible(row, true);
+			}
+
+			rows.add(row);
+		}
+
+		//
+		// Drop the rows now visible from the hidden rows.
+		//
+		int writeIndex = 0;
+		for (int readIndex=0; readIndex<hiddenRows.size(); readIndex++) {
+			final Row<T> row = hiddenRows.get(readIndex);
+
+			if (!row.isVisible()) {
+				hiddenRows.set(writeIndex++, row);
+			}
+		}
+		hiddenRows.subList(writeIndex, hiddenRows.size()).clear();
+
+		gridModel.fireRowsResetEvent();
+		
+		if (logger.isDebugEnabled()) {
+			logger.debug("Top {} selected from {} rows", rows.size(), candidates.size());
+		}
+
+		return selectionChanged;
+	}
+
+	/**
+	 * Forget the pooled rows - they've all been removed.
+	 */
+	void rowsCleared() {
+		clearPool();
+	}
+
+	/**
+	 * Show all the pooled rows again.
+	 */
+	private void release() {
+		final List<Row<T>> pooledRows = new ArrayList<>(getPooledRowCount());
+		pooledRows.addAll(benchRows.getRows());
+		pooledRows.addAll(tailRows);
+		clearPool();
+
+		gridModel.setRowsVisible(pooledRows, Collections.<Row<T>>emptyList());
+	}
+
+	/**
+	 * Return the best count rows (sorted) using a bounded heap - the heap's head is the worst of the best so far.
+	 */
+	private List<Row<T>> selectBest(final List<Row<T>> candidates, final int count, final Comparator<Row<T>> comparator) {
+		final PriorityQueue<Row<T>> heap = new PriorityQueue<>(Math.max(1, count), Collections.reverseOrder(comparator));
+
+		for (final Row<T> row : candidates) {
+			if (heap.size() < count) {
+				heap.add(row);
+
+			} else if (comparator.compare(row, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(row);
+			}
+		}
+
+		final List<Row<T>> best = new ArrayList<>(heap);
+		Collections.sort(best, comparator);
+		return best;
+	}
+
+	/**
+	 * The bench is empty - take the best of the tail.
+	 */
+	private void refillBench(final Comparator<Row<T>> comparator) {
+		for (final Row<T> row : selectBest(tailRows, topN, comparator)) {
+			removeFromTail(row);
+			addToBench(row);
+		}
+	}
+
+	/**
+	 * Move a (pooled) row into the visible rows.
+	 */
+	private void promote(final Row<T> row, final Comparator<Row<T>> comparator) {
+		final List<Row<T>> rows = gridModel.getRows();
+
+		gridModel.removeHiddenRow(row);
+		gridModel.setRowVisible(row, true);
+
+		final int index = Collections.binarySearch(rows, row, comparator);
+		final int insertIndex = index < 0 ? (-index - 1) : index;
+		rows.add(insertIndex, row);
+		gridModel.fireRowInsertedEvent(row, insertIndex);
+		swapCount++;
+		heightDelta += gridModel.getRowHeight(row);
+	}
+
+	/**
+	 * Take the worst visible row out of the visible rows.
+	 */
+	private Row<T> removeLast(final List<Row<T>> rows) {
+		final Row<T> row = rows.remove(rows.size() - 1);
+		gridModel.fireRowRemovedEvent(row, rows.size());
+		return row;
+	}
+	
+	/**
+	 * Move a visible row into the pool. It goes on the bench unless it's worse than everything on the bench and there's
+	 * a tail (so everything on the bench stays at least as good as the tail). Returns true if the row was deselected.
+	 */
+	private boolean demote(final Row<T> row, final Comparator<Row<T>> comparator) {
+		final boolean deselected = row.isSelected();
+
+		if (deselected) {
+			gridModel.getSelectionModel().removeRow(row);
+		}
+
+		gridModel.setRowVisible(row, false);
+		row.setRowIndex(-1);
+		row.setHiddenRowIndex(gridModel.getHiddenRows().size());
+		gridModel.getHiddenRows().add(row);
+
+		if (!tailRows.isEmpty() && (benchRows.isEmpty() || (comparator.compare(row, worstBenchRows.peek()) > 0))) {
+			addToTail(row);
+
+		} else {
+			addToBench(row);
+		}
+
+		swapCount++;
+		heightDelta -= gridModel.getRowHeight(row);
+		return deselected;
+	}
+
+	private void addToBench(final Row<T> row) {
+		benchRows.add(row);
+		worstBenchRows.add(row);
+	}
+
+	private Row<T> pollBench() {
+		final Row<T> row = benchRows.poll();
+		worstBenchRows.remove(row);
+		return row;
+	}
+
+	private boolean isInTail(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+		return (ordinal != -1) && (ordinal < tailPositions.length) && (tailPositions[ordinal] != 0);
+	}
+
+	private void addToTail(final Row<T> row) {
+		final int ordinal = row.getOrdinal();
+
+		if (ordinal >= tailPositions.length) {
+			tailPositions = Arrays.copyOf(tailPositions, Math.max(ordinal + 1, tailPositions.length * 2));
+		}
+
+		tailRows.add(row);
+		tailPositions[ordinal] = tailRows.size();
+	}
+
+	/**
+	 * Take the row out of the tail (if it's there) by moving the last row of the tail into its place.
+	 */
+	private void removeFromTail(final Row<T> row) {
+		if (!isInTail(row)) {
+			return;
+		}
+
+		final int index = tailPositions[row.getOrdinal()] - 1;
+		final Row<T> last = tailRows.remove(tailRows.size() - 1);
+		tailPositions[row.getOrdinal()] = 0;
+
+		if (last != row) {
+			tailRows.set(index, last);
+			tailPositions[last.getOrdinal()] = index + 1;
+		}
+	}
+
+	private void setComparator(final Comparator<Row<T>> comparator) {
+		benchRows.setComparator(comparator);
+		worstBenchRows.setComparator(comparator);
+	}
+
+	private void clearPool() {
+		benchRows.clear();
+		worstBenchRows.clear();
+		tailRows.clear();
+		Arrays.fill(tailPositions, 0);
+	}
+}
@@ -150,6 +150,13 @@ public class Viewport<T> {
 			viewportArea.y += (grid.getRowHeight(row) + gridModel.getStyleRegistry().getCellSpacingVertical());
 			viewportArea.height -= viewportArea.y;
 		}
+		
+		//
+		// Shrink the viewport to make room for the footer row along the bottom.
+		//
+		if (gridModel.isShowFooter()) {
+			viewportArea.height -= (grid.getRowHeight(gridModel.getFooterRow()) + gridModel.getStyleRegistry().getCellSpacingVertical());
+		}
 
 		//
 		// Shift the viewport right enough to show the longest row number.
@@ -315,7 +322,7 @@ public class Viewport<T> {
 			// Work from the last row - towards the first, trying to fit them into the viewport. 
 			//
 			int y = 0;
-			for (int rowIndex=(gridModel.getRows().indexOf(startingRow)); rowIndex>=0; rowIndex--) {
+			for (int rowIndex=gridModel.indexOfRow(startingRow); rowIndex>=0; rowIndex--) {
 				final Row<T> row = gridModel.getRows().get(rowIndex);
 				y += (grid.getRowHeight(row) + gridModel.getStyleRegistry().getCellSpacingVertical());
 	
@@ -353,7 +360,7 @@ public class Viewport<T> {
 			// Work from the last column - towards the first, trying to fit them into the viewport. 
 			//
 			int x = 0;
-			for (int columnIndex=(gridModel.getColumns().indexOf(startingColumn)); columnIndex>=0; columnIndex--) {
+			for (int columnIndex=gridModel.indexOfColumn(startingColumn); columnIndex>=0; columnIndex--) {
 				final Column column = gridModel.getColumns().get(columnIndex);
 	
 				x += (column.getWidth() + gridModel.getStyleRegistry().getCellSpacingHorizontal());
@@ -400,7 +407,7 @@ public class Viewport<T> {
 			//
 			for (Column column : gridModel.getPinnedColumns()) {
 				if ((x > currentX) && (x <= (currentX + column.getWidth()))) {
-					return gridModel.getColumns().indexOf(column);
+					return gridModel.indexOfColumn(column);
 				}
 				
 				currentX += column.getWidth() + gridModel.getStyleRegistry().getCellSpacingHorizontal();
@@ -499,7 +506,13 @@ public class Viewport<T> {
 		final Rectangle viewportArea = getViewportArea(gc);
 		int currentY = viewportArea.y;
 
-		if ((y >= 0) && (y < currentY)) {
+		if (gridModel.isShowFooter() && (y >= (viewportArea.y + viewportArea.height))) {
+			//
+			// The footer row has been clicked.
+			//
+			return -1;
+			
+		} else if ((y >= 0) && (y < currentY)) {
 			//
 			// A column header row has been clicked.
 			//
@@ -580,7 +593,7 @@ public class Viewport<T> {
 	}
 	
 	private boolean isColumnLeftOfViewport(final Column column) {
-		final int columnIndex = grid.getColumns().indexOf(column); 
+		final int columnIndex = gridModel.indexOfColumn(column); 
 		return (columnIndex > 0) && (columnIndex < getFirstColumnIndex());
 	}
 
@@ -589,7 +602,7 @@ public class Viewport<T> {
 	 */
 	public void reveal(final GC gc, final Column column, final Row<T> row) {
 		final int rowIndex = row.getRowIndex();
-		final int columnIndex = gridModel.getColumns().indexOf(column);
+		final int columnIndex = gridModel.indexOfColumn(column);
 		final int max = grid.getVerticalBar().getMaximum();
 		final int capped = Math.min(rowIndex, max);
 		boolean selectionChanged = false;
@@ -644,12 +657,12 @@ public class Viewport<T> {
 	}
 	
 	public boolean isColumnPartiallyVisible(final Column column) {
-		final int columnIndex = grid.getColumns().indexOf(column);
+		final int columnIndex = gridModel.indexOfColumn(column);
 		return (columnIndex >= getFirstColumnIndex() && columnIndex < getLastColumnIndex());
 	}
 	
 	public boolean isColumnVisible(final Column column) {
-		final int columnIndex = grid.getColumns().indexOf(column);
+		final int columnIndex = gridModel.indexOfColumn(column);
 		return (columnIndex >= getFirstColumnIndex() && columnIndex < getLastColumnIndex());
 	}
 	
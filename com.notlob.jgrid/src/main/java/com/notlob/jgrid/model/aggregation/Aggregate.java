@@ -0,0 +1,319 @@
+package com.notlob.jgrid.model.aggregation;
+
+import java.util.TreeMap;
+
+import com.notlob.jgrid.model.Column;
+
+/**
+ * A function which summarises the values of many rows for a column - for example the total of a group's children.
+ *
+ * Values are accumulated incrementally, an Accumulator is told of each value added and removed, so the summary never
+ * requires a re-scan of the rows. Use the static factory methods for the built-in functions, or extend the class.
+ *
+ * @author Stef
+ */
+public abstract class Aggregate {
+
+	private final String name;
+
+	protected Aggregate(final String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * A new, empty, accumulator for this function.
+	 */
+	public abstract Accumulator createAccumulator();
+
+	/**
+	 * The column whose value weights each row's value, or null if the function isn't weighted.
+	 */
+	public Column getWeightColumn() {
+		return null;
+	}
+
+	/**
+	 * The text to render for an aggregated value.
+	 */
+	public String getText(final Object value) {
+		return (value == null) ? "" : String.valueOf(value);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Holds the running state of the function for one set of rows.
+	 */
+	public static abstract class Accumulator {
+
+		/**
+		 * A row's value (and its weight, if the function is weighted) has been added to the set.
+		 */
+		public abstract void add(final Object value, final Object weight);
+
+		/**
+		 * A row's value (and weight) previously added has been removed from the set.
+		 */
+		public abstract void remove(final Object value, final Object weight);
+
+		/**
+		 * The summary of the values currently in the set - null if there's nothing to summarise.
+		 */
+		public abstract Object getValue();
+	}
+
+	/**
+	 * The total of the numeric values. If every value is an integer type the total is a Long, otherwise a Double.
+	 */
+	public static Aggregate sum() {
+		return new Aggregate("Sum") {
+			@Override
+			public Accumulator createAccumulator() {
+				return new Accumulator() {
+					private final Total total = new Total();
+
+					@Override
+					public void add(final Object value, final Object weight) {
+						total.add(value, 1);
+					}
+
+					@Override
+					public void remove(final Object value, final Object weight) {
+						total.add(value, -1);
+					}
+
+					@Override
+					public Object getValue() {
+						return total.getTotal();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * How many values are not null.
+	 */
+	public static Aggregate count() {
+		return new Aggregate("Count") {
+			@Override
+			public Accumulator createAccumulator() {
+				return new Accumulator() {
+					private int count;
+
+					@Override
+					public void add(final Object value, final Object weight) {
+						if (value != null) {
+							count++;
+						}
+					}
+
+					@Override
+					public void remove(final Object value, final Object weight) {
+						if (value != null) {
+							count--;
+						}
+					}
+
+					@Override
+					public Object getValue() {
+						return count;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * The lowest value. The values must be Comparable with each other.
+	 */
+	public static Aggregate min() {
+		return new Aggregate("Min") {
+			@Override
+			public Accumulator createAccumulator() {
+				return new Extreme(false);
+			}
+		};
+	}
+
+	/**
+	 * The highest value. The values must be Comparable with each other.
+	 */
+	public static Aggregate max() {
+		return new Aggregate("Max") {
+			@Override
+			public Accumulator createAccumulator() {
+				return new Extreme(true);
+			}
+		};
+	}
+
+	/**
+	 * The mean of the numeric values (as a Double).
+	 */
+	public static Aggregate average() {
+		return new Aggregate("Average") {
+			@Override
+			public Accumulator createAccumulator() {
+				return new Accumulator() {
+					private double sum;
+					private int count;
+
+					@Override
+					public void add(final Object value, final Object weight) {
+						if (value instanceof Number) {
+							sum += ((Number) value).doubleValue();
+							count++;
+						}
+					}
+
+					@Override
+					public void remove(final Object value, final Object weight) {
+						if (value instanceof Number) {
+							sum -= ((Number) value).doubleValue();
+							count--;
+						}
+					}
+
+					@Override
+					public Object getValue() {
+						return (count == 0) ? null : (sum / count);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * The mean of the numeric values, each weighted by the (numeric) value of the weight column in the same row.
+	 */
+	public static Aggregate weightedAverage(final Column weightColumn) {
+		return new Aggregate("Weighted Average") {
+			@Override
+			public Column getWeightColumn() {
+				return weightColumn;
+			}
+
+			@Override
+			public Accumulator createAccumulator() {
+				return new Accumulator() {
+					private double weightedSum;
+					private double totalWeight;
+
+					@Override
+					public void add(final Object value, final Object weight) {
+						if ((value instanceof Number) && (weight instanceof Number)) {
+							weightedSum += ((Number) value).doubleValue() * ((Number) weight).doubleValue();
+							totalWeight += ((Number) weight).doubleValue();
+						}
+					}
+
+					@Override
+					public void remove(final Object value, final Object weight) {
+						if ((value instanceof Number) && (weight instanceof Number)) {
+							weightedSum -= ((Number) value).doubleValue() * ((Number) weight).doubleValue();
+							totalWeight -= ((Number) weight).doubleValue();
+						}
+					}
+
+					@Override
+					public Object getValue() {
+						return (totalWeight == 0) ? null : (weightedSum / totalWeight);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * A running total which stays exact while every value is an integer type.
+	 */
+	private static class Total {
+		private long longTotal;
+		private double doubleTotal;
+		private int count;
+		private int nonIntegralCount;
+
+		private void add(final Object value, final int sign) {
+			if (value instanceof Number) {
+				final Number number = (Number) value;
+				count += sign;
+				doubleTotal += sign * number.doubleValue();
+
+				if (isIntegral(number)) {
+					longTotal += sign * number.longValue();
+
+				} else {
+					nonIntegralCount += sign;
+				}
+			}
+		}
+
+		private Object getTotal() {
+			if (count == 0) {
+				return null;
+			}
+
+			return (nonIntegralCount == 0) ? (Object) longTotal : (Object) doubleTotal;
+		}
+
+		private static boolean isIntegral(final Number number) {
+			return (number instanceof Integer) || (number instanceof Long) || (number instanceof Short) || (number instanceof Byte);
+		}
+	}
+
+	/**
+	 * The lowest or highest value - each distinct value is counted so it can be removed again.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static class Extreme extends Accumulator {
+		private final boolean highest;
+		private final TreeMap counts;
+
+		private Extreme(final boolean highest) {
+			this.highest = highest;
+			this.counts = new TreeMap();
+		}
+
+		@Override
+		public void add(final Object value, final Object weight) {
+			if (value != null) {
+				final int[] count = (int[]) counts.get(value);
+
+				if (count == null) {
+					counts.put(value, new int[] { 1 });
+
+				} else {
+					count[0]++;
+				}
+			}
+		}
+
+		@Override
+		public void remove(final Object value, final Object weight) {
+			if (value != null) {
+				final int[] count = (int[]) counts.get(value);
+
+				if ((count != null) && (--count[0] == 0)) {
+					counts.remove(value);
+				}
+			}
+		}
+
+		@Override
+		public Object getValue() {
+			if (counts.isEmpty()) {
+				return null;
+			}
+
+			return highest ? counts.lastKey() : counts.firstKey();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.notlob.jgrid.model.filtering;
 
+import com.notlob.jgrid.model.Column;
 import com.notlob.jgrid.model.Row;
 import com.notlob.jgrid.providers.IGridContentProvider;
 
@@ -26,6 +27,14 @@ public class CollapsedGroupFilter<T> extends Filter<T> {
 		return (parent == null) || (!contentProvider.isCollapsed(parent));
 	}
 
+	/**
+	 * Only the group's collapsed state matters, not any column's value.
+	 */
+	@Override
+	public boolean dependsOn(final Column column) {
+		return false;
+	}
+
 	@Override
 	public String toReadableString(final boolean includeStyleTokens) {
 		return "Hiding collapsed groups";
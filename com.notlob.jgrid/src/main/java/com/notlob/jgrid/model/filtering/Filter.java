@@ -1,5 +1,6 @@
 package com.notlob.jgrid.model.filtering;
 
+import com.notlob.jgrid.model.Column;
 import com.notlob.jgrid.model.Row;
 
 
@@ -15,6 +16,9 @@ public abstract class Filter<T> {
 	
 	private boolean showWholeGroup;
 	
+	// Bumped whenever the filter's criteria change, so any cached results of the filter are no longer used.
+	private int version;
+	
 	public Filter() {
 		this(true);
 	}
@@ -25,11 +29,24 @@ public abstract class Filter<T> {
 	
 	public void setShowWholeGroup(final boolean showWholeGroup) {
 		this.showWholeGroup = showWholeGroup;
+		criteriaChanged();
 	}
 	
 	public boolean isShowWholeGroup() {
 		return showWholeGroup;
 	}
+	
+	public int getVersion() {
+		return version;
+	}
+	
+	//
+	// Sub-classes with criteria that can change must call this when they do. The filter model caches the rows shown by
+	// recently used sets of filters and a filter's version is part of what identifies the set.
+	//
+	protected void criteriaChanged() {
+		version++;
+	}
 
 	//
 	// Return a result with match = true if the filter matches the row's element otherwise null or match = false.
@@ -51,6 +68,15 @@ public abstract class Filter<T> {
 		return false;
 	}
 	
+	//
+	// Whether the filter's result could change if the column's value changes. When elements are updated with a hint of the
+	// columns which changed, rows are only re-filtered if a filter depends on one of them. Unless overridden, a filter is
+	// assumed to depend on every column.
+	//
+	public boolean dependsOn(final Column column) {
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return toReadableString(false);
@@ -3,13 +3,18 @@ package com.notlob.jgrid.model.filtering;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.notlob.jgrid.model.Column;
 import com.notlob.jgrid.model.GridModel;
 import com.notlob.jgrid.model.Row;
+import com.notlob.jgrid.model.RowCache;
+import com.notlob.jgrid.model.TopNModel;
 
 public class FilterModel<T> {
 
@@ -23,32 +28,45 @@ public class FilterModel<T> {
 	// a highlighting filter or not, although, if a filter exists which isn't a highlighting filter and the row doesn't match it, it will be hidden.
 	private boolean hideNoneHighlightedRows = true;
 	
+	// The rows shown by recently used sets of filters - so switching back to a set doesn't need every row re-evaluating.
+	private final RowCache<FilterSet<T>, T> filterCache;
+	
+	// The default number of filter sets to cache the results of - the cache is opt-in (see setFilterCacheSize).
+	private final static int DEFAULT_FILTER_CACHE_SIZE = 0;
+	
 	private final static Logger logger = LoggerFactory.getLogger(FilterModel.class);
 
 	public FilterModel(final GridModel<T> gridModel) {
 		this.gridModel = gridModel;
 		this.filters = new ArrayList<>();
+		this.filterCache = new RowCache<FilterSet<T>, T>(Integer.MAX_VALUE, DEFAULT_FILTER_CACHE_SIZE);
 	}
 
 	public void addFilters(final Collection<Filter<T>> filters) {
 		gridModel.fireFiltersChangingEvent();
+		final FilterSet<T> previousFilterSet = new FilterSet<T>(this.filters);
 		this.filters.addAll(filters);
-		applyFilters();
+		applyFilters(previousFilterSet);
+		gridModel.getFacetModel().filtersChanged();
 		gridModel.fireFiltersChangedEvent();
 	}
 
 	public void removeFilters(final Collection<Filter<T>> filters) {
 		gridModel.fireFiltersChangingEvent();
+		final FilterSet<T> previousFilterSet = new FilterSet<T>(this.filters);
 		this.filters.removeAll(filters);
-		applyFilters();
+		applyFilters(previousFilterSet);
+		gridModel.getFacetModel().filtersChanged();
 		gridModel.fireFiltersChangedEvent();
 	}
 	
 	public void setFilters(final Collection<Filter<T>> filtersToRemove, final Collection<Filter<T>> filtersToAdd) {
 		gridModel.fireFiltersChangingEvent();
+		final FilterSet<T> previousFilterSet = new FilterSet<T>(this.filters);
 		this.filters.removeAll(filtersToRemove);
 		this.filters.addAll(filtersToAdd);
-		applyFilters();
+		applyFilters(previousFilterSet);
+		gridModel.getFacetModel().filtersChanged();
 		gridModel.fireFiltersChangedEvent();
 	}
 
@@ -57,14 +75,52 @@ public class FilterModel<T> {
 	}
 
 	public void clear() {
-		filters.clear();
-		
 		//
-		// Add a collapsed group filter to the model. It provides the ability to collapse/expand groups.
+		// Replace everything with a collapsed group filter. It provides the ability to collapse/expand groups.
 		//
-		addFilters(Collections.singletonList((Filter<T>) new CollapsedGroupFilter<T>(gridModel.getContentProvider())));
-		
-		applyFilters();
+		setFilters(new ArrayList<>(filters), Collections.singletonList((Filter<T>) new CollapsedGroupFilter<T>(gridModel.getContentProvider())));
+	}
+	
+	public int getFilterCacheSize() {
+		return filterCache.getMaxEntries();
+	}
+	
+	/**
+	 * How many sets of filters to remember the shown rows of. Zero (the default) disables the cache.
+	 * 
+	 * A filter whose criteria can change must call criteriaChanged when they do, otherwise re-applying it could show the
+	 * rows it matched before.
+	 */
+	public void setFilterCacheSize(final int filterCacheSize) {
+		filterCache.setMaxEntries(filterCacheSize);
+	}
+	
+	/**
+	 * Called by the grid model when a row is added, removed, or its element (or group) may have changed - so any cached 
+	 * filter results re-evaluate it.
+	 */
+	public void rowChanged(final Row<T> row) {
+		if (!filterCache.isEmpty()) {
+			filterCache.rowChanged(row);
+			
+			//
+			// Filters can show a row because of its relatives - the parent stands in for its group, which is re-evaluated
+			// as a whole if the cached results are used.
+			//
+			final T parentElement = gridModel.getParentElement(row.getElement());
+			final Row<T> parentRow = (parentElement == null) ? null : gridModel.getRow(parentElement);
+			
+			if (parentRow != null) {
+				filterCache.rowChanged(parentRow);
+			}
+		}
+	}
+	
+	/**
+	 * Called by the grid model when all the rows are removed.
+	 */
+	public void rowsCleared() {
+		filterCache.clear();
 	}
 
 	public boolean isHideNoneHighlightedRows() {
@@ -73,9 +129,14 @@ public class FilterModel<T> {
 
 	public void setHideNoneHighlightedRows(final boolean hideNoneHighlightedRows) {
 		this.hideNoneHighlightedRows = hideNoneHighlightedRows;
+		filterCache.clear();
+		gridModel.getFacetModel().refilter();
 	}
 
-	private boolean doesFilterHide(final Filter<T> filter) {
+	/**
+	 * Returns true if a row which doesn't match the filter is hidden.
+	 */
+	public boolean doesFilterHide(final Filter<T> filter) {
 		if (!(filter instanceof IHighlightingFilter)) {
 			return true;
 		}
@@ -83,6 +144,19 @@ public class FilterModel<T> {
 		return hideNoneHighlightedRows;
 	}
 
+	/**
+	 * Returns true if any filter's result could change when the column's value changes.
+	 */
+	public boolean dependsOn(final Column column) {
+		for (final Filter<T> filter : filters) {
+			if (filter.dependsOn(column)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+
 	/**
 	 * Return true if one or more filters matches the row and it should be shown. If the row matches a filter, a FilterMatch is added
 	 * to the row.
@@ -100,29 +174,11 @@ public class FilterModel<T> {
 		//
 		boolean allFiltersMatch = true;
 		for (final Filter<T> filter : filters) {
-			boolean matches = false;
-			
 			if (logger.isTraceEnabled()) {
 				logger.trace("Evaluating Filter {} for Row {}", filter, row);	
 			}
 			
-			if ((filter.isShowWholeGroup() && gridModel.isGroupRow(row)) || filter.mandatoryInGroup(row)) {				
-				//
-				// If anything in the group match then this row should be shown OR if it's a parent row, always show it.
-				//
-				for (Row<T> relative : gridModel.getWholeGroup(row)) {
-					if (filter.matches(relative)) {
-						matches = true;
-						break;
-					}
-				}
-				
-			} else {
-				//
-				// Just check the individual row.
-				//
-				matches = filter.matches(row);
-			}
+			final boolean matches = matches(filter, row);
 			
 			if (logger.isTraceEnabled()) {
 				logger.trace("Filter {} {} for Row {}", filter, matches ? "matches" : "doesn't match", row);	
@@ -136,12 +192,74 @@ public class FilterModel<T> {
 		return allFiltersMatch;
 	}
 
+	/**
+	 * Returns true if the row matches the filter - or, if the filter shows whole groups, anything in the row's group does.
+	 */
+	public boolean matches(final Filter<T> filter, final Row<T> row) {
+		if ((filter.isShowWholeGroup() && gridModel.isGroupRow(row)) || filter.mandatoryInGroup(row)) {				
+			//
+			// If anything in the group match then this row should be shown OR if it's a parent row, always show it.
+			//
+			for (Row<T> relative : gridModel.getWholeGroup(row)) {
+				if (filter.matches(relative)) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		//
+		// Just check the individual row.
+		//
+		return filter.matches(row);
+	}
+
 	/**
 	 * Run all rows through the current set of filters and hide/show the rows as appropriate.
+	 * 
+	 * Any cached filter results are discarded, as this is how the grid is told something outside of its knowledge has changed.
 	 */
 	public void applyFilters() {
-		boolean selectionChanged = false;
+		filterCache.clear();
+		applyAllFilters();
+		gridModel.getFacetModel().refilter();
+	}
+	
+	/**
+	 * The filters have been added/removed. Cache the rows currently shown for the previous set of filters then, if there are 
+	 * cached results for the new set, use those. Otherwise evaluate every row.
+	 */
+	private void applyFilters(final FilterSet<T> previousFilterSet) {
+		//
+		// If only the top N rows are shown, the visible rows aren't everything the filters matched - so can't be cached.
+		//
+		if (gridModel.getTopNModel().isEnabled()) {
+			filterCache.clear();
+			applyAllFilters();
+			return;
+		}
 		
+		final FilterSet<T> filterSet = new FilterSet<T>(filters);
+		
+		if (filterSet.equals(previousFilterSet)) {
+			//
+			// Nothing the cache can tell apart has changed, so the caller wants every row re-evaluated.
+			//
+			applyAllFilters();
+			return;
+		}
+		
+		if (previousFilterSet.isCacheable()) {
+			filterCache.put(previousFilterSet, gridModel.getRows());
+		}
+		
+		if (!filterSet.isCacheable() || !applyCachedFilters(filterSet)) {
+			applyAllFilters();
+		}
+	}
+	
+	private void applyAllFilters() {
 		//
 		// Build a list of rows to hide that are shown.
 		//
@@ -153,61 +271,111 @@ public class FilterModel<T> {
 		}
 
 		//
-		// Build a list of rows to show that are hidden.
+		// Build a list of rows to show that are hidden. Rows outside of the top N which still match stay where they are, those
+		// which don't are no longer eligible.
 		//
+		final TopNModel<T> topNModel = gridModel.getTopNModel();
 		final List<Row<T>> rowsToShow = new ArrayList<>();
 		for (final Row<T> row : gridModel.getHiddenRows()) {
 			if (match(row)) {
-				rowsToShow.add(row);
+				if (!topNModel.isPooled(row)) {
+					rowsToShow.add(row);
+				}
+				
+			} else if (topNModel.isPooled(row)) {
+				topNModel.unpool(row);
 			}
 		}
 		
+		setRowsVisible(rowsToShow, rowsToHide);
+	}
+	
+	/**
+	 * Use the cached rows shown by the set of filters. Only rows changed since the results were cached are evaluated. 
+	 * Returns false if there are no cached results.
+	 */
+	private boolean applyCachedFilters(final FilterSet<T> filterSet) {
+		final RowCache.Entry<T> entry = filterCache.remove(filterSet);
+		
+		if (entry == null) {
+			return false;
+		}
+		
 		//
-		// Show/hide now (if we did it in the above loops we'd get concurrent modifications).
+		// A dirty parent stands in for its whole group, as filters can show a row because of its relatives.
 		//
-		for (final Row<T> row : rowsToShow) {
-			if (logger.isTraceEnabled()) {
-				logger.trace(String.format("Showing %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
-			}
+		final Set<Row<T>> dirtyRows = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>());
+		
+		for (final Row<T> row : entry.getDirtyRows()) {
+			dirtyRows.add(row);
 			
-			gridModel.showRow(row, false);
+			if ((gridModel.getRow(row.getElement()) == row) && gridModel.isParentRow(row)) {
+				dirtyRows.addAll(gridModel.getWholeGroup(row));
+			}
 		}
 		
-		for (final Row<T> row : rowsToHide) {
-			if (logger.isTraceEnabled()) {
-				logger.trace(String.format("Hiding %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
+		final Set<Row<T>> rowsShown = Collections.newSetFromMap(new IdentityHashMap<Row<T>, Boolean>(entry.getRows().length + dirtyRows.size()));
+		
+		for (final Row<T> row : entry.getRows()) {
+			if (!dirtyRows.contains(row)) {
+				rowsShown.add(row);
+			}
+		}
+		
+		for (final Row<T> row : dirtyRows) {
+			if ((gridModel.getRow(row.getElement()) == row) && match(row)) {
+				rowsShown.add(row);
+			}
+		}
+		
+		final List<Row<T>> rowsToHide = new ArrayList<>();		
+		for (final Row<T> row : gridModel.getRows()) {
+			if (!rowsShown.contains(row)) {
+				rowsToHide.add(row);
 			}
-			
-			selectionChanged |= row.isSelected();
-			gridModel.hideRow(row, false);
 		}
 		
 		//
-		// Index the rows now so we can remove things by index for performance - as removing large number of rows
-		// by object references results in much scanning of the list(s).
+		// The cached rows are in the order they were sorted in - if the sort hasn't changed since, the rows being shown will
+		// barely need sorting before they're merged in.
 		//
-		gridModel.reindex();
+		final List<Row<T>> rowsToShow = new ArrayList<>();
+		for (final Row<T> row : entry.getRows()) {
+			if (!row.isVisible() && !dirtyRows.contains(row)) {
+				rowsToShow.add(row);
+			}
+		}
 		
-		if (!rowsToShow.isEmpty()) {
-			for (int rowIndex=rowsToShow.size()-1; rowIndex>=0; rowIndex--) {
-				final Row<T> row = rowsToShow.get(rowIndex);
-				gridModel.getHiddenRows().remove(row.getHiddenRowIndex());
-				row.setHiddenRowIndex(-1);
+		for (final Row<T> row : dirtyRows) {
+			if (!row.isVisible() && rowsShown.contains(row)) {
+				rowsToShow.add(row);
 			}
 		}
 		
-		if (!rowsToHide.isEmpty()) {
-			for (int rowIndex=rowsToHide.size()-1; rowIndex>=0; rowIndex--) {
-				final Row<T> row = rowsToHide.get(rowIndex);
-				gridModel.getRows().remove(row.getRowIndex());
-				row.setRowIndex(-1);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Using cached results for filters {} ({} rows re-evaluated)", filterSet, dirtyRows.size());
+		}
+		
+		setRowsVisible(rowsToShow, rowsToHide);
+		return true;
+	}
+	
+	/**
+	 * Show/hide the rows, then fire the events.
+	 */
+	private void setRowsVisible(final List<Row<T>> rowsToShow, final List<Row<T>> rowsToHide) {
+		if (logger.isTraceEnabled()) {
+			for (final Row<T> row : rowsToShow) {
+				logger.trace(String.format("Showing %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
+			}
+			
+			for (final Row<T> row : rowsToHide) {
+				logger.trace(String.format("Hiding %s->%s", gridModel.getContentProvider().getElementId(row.getElement()), row));
 			}
 		}
 		
-		//
-		// Re-seed the row indexes again after list modifications.
-		//
-		gridModel.reindex();
+		final boolean selectionChanged = gridModel.setRowsVisible(rowsToShow, rowsToHide);
+		
 		gridModel.fireRowCountChangedEvent();
 		gridModel.fireChangeEvent();
 		
@@ -220,6 +388,8 @@ public class FilterModel<T> {
 	 * Reevaluate with the specific row should be shown or now.
 	 */
 	public void applyFilters(final Row<T> row) {
+		gridModel.getTopNModel().unpool(row);
+		
 		final boolean wasVisible = row.isVisible();
 		final boolean nowVisible = match(row);
 		
@@ -229,12 +399,95 @@ public class FilterModel<T> {
 		} else if (!wasVisible && nowVisible) {
 			gridModel.showRow(row);			
 		}
+		
+		final boolean selectionChanged = gridModel.getTopNModel().enforce();
 
 		//
 		// Reseed the row indexes.
 		//
 		gridModel.reindex();
 		gridModel.fireChangeEvent();
+		
+		if (selectionChanged) {
+			gridModel.fireSelectionChangedEvent();
+		}
 	}
 
+	/**
+	 * Identifies a set of filters (in any order) and the version of each one's criteria.
+	 */
+	private static class FilterSet<T> {
+		private final List<Filter<T>> filters;
+		private final int[] versions;
+		private final boolean cacheable;
+		
+		private FilterSet(final Collection<Filter<T>> filters) {
+			this.filters = new ArrayList<>(filters);
+			this.versions = new int[filters.size()];
+			
+			boolean cacheable = true;
+			int index = 0;
+			for (final Filter<T> filter : filters) {
+				versions[index++] = filter.getVersion();
+				
+				//
+				// Highlighting filters record their matches on the rows as they're evaluated - so their results can't be re-used.
+				//
+				cacheable &= !(filter instanceof IHighlightingFilter);
+			}
+			
+			this.cacheable = cacheable;
+		}
+		
+		private boolean isCacheable() {
+			return cacheable;
+		}
+		
+		private int indexOf(final Filter<T> filter) {
+			for (int index=0; index<filters.size(); index++) {
+				if (filters.get(index) == filter) {
+					return index;
+				}
+			}
+			
+			return -1;
+		}
+		
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof FilterSet)) {
+				return false;
+			}
+			
+			@SuppressWarnings("unchecked")
+			final FilterSet<T> other = (FilterSet<T>) obj;
+			if (other.filters.size() != filters.size()) {
+				return false;
+			}
+			
+			for (int index=0; index<filters.size(); index++) {
+				final int otherIndex = other.indexOf(filters.get(index));
+				
+				if ((otherIndex == -1) || (other.versions[otherIndex] != versions[index])) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public int hashCode() {
+			int hash = 0;
+			for (int index=0; index<filters.size(); index++) {
+				hash += (31 * System.identityHashCode(filters.get(index))) + versions[index];
+			}
+			return hash;
+		}
+		
+		@Override
+		public String toString() {
+			return filters.toString();
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package com.notlob.jgrid.providers;
+
+/**
+ * An optional interface a content provider can also implement if each element can be uniquely identified by a
+ * primitive long key (i.e. a database id or sequence number).
+ *
+ * If present, the grid indexes its rows by this key rather than by the element itself (or the String from getElementId).
+ * This avoids any hashing of the element, or String allocation, when rows are looked-up, which is noticeable when updates
+ * arrive at a high rate.
+ *
+ * @author Stef
+ *
+ * @param <T>
+ */
+public interface IGridElementKeyProvider<T> {
+
+	long getElementKey(final T element);
+
+}
@@ -0,0 +1,27 @@
+package com.notlob.jgrid.providers;
+
+import java.util.List;
+
+import com.notlob.jgrid.model.Column;
+
+/**
+ * An optional interface a content provider can also implement to have the grid build the groups itself from the group-by
+ * columns (see Grid.groupBy), rather than the provider having to expose a parent/child structure for every grouping.
+ *
+ * Elements with equal values in every group-by column form a group. The grid asks for an element to stand for each group's
+ * parent row, which is then treated like any other element - so the content provider must give it an id and values.
+ *
+ * While there are no group-by columns, the content provider's own getParent and getChildren are used as normal.
+ *
+ * @author Stef
+ *
+ * @param <T>
+ */
+public interface IGridGroupProvider<T> {
+
+	/**
+	 * Create the parent element of a new group. The values are the group's value of each group-by column (in order).
+	 */
+	T createGroupElement(final List<Column> groupByColumns, final List<Object> groupValues);
+
+}
@@ -51,6 +51,13 @@ public class CellRenderer<T> extends Renderer<T> {
 	
 	protected final StyleCollector anchorCollector;
 	
+	// What was last painted in each on-screen cell.
+	protected final RenderedCellCache<T> renderedCells;
+	
+	// The text and images painted in the current cell (null if not painted).
+	private String paintedText;
+	private List<Image> paintedImages;
+	
 	private final static Logger logger = LoggerFactory.getLogger(CellRenderer.class);
 	
 	public CellRenderer(final Grid<T> grid) {
@@ -61,6 +68,7 @@ public class CellRenderer<T> extends Renderer<T> {
 		innerBounds = new Rectangle(0, 0, 0, 0);
 		textLayout = new TextLayout(grid.getDisplay());
 		anchorCollector = new StyleCollector();
+		renderedCells = new RenderedCellCache<T>();
 		grid.addDisposeListener(new DisposeListener() {
 			@Override
 			public void widgetDisposed(DisposeEvent e) {
@@ -108,8 +116,14 @@ public class CellRenderer<T> extends Renderer<T> {
 					//
 					// Paint cell content
 					//
+					paintedText = null;
+					paintedImages = null;
 					paintCellContent(rc, bounds, column, row, currentStyle);
 					paintCellBorders(rc, bounds, column, row, currentStyle);
+					
+					if (isContentCell(column, row)) {
+						renderedCells.record(row, column, cellStyle, (paintedText == null) ? getCellText(column, row) : paintedText, (paintedImages == null) ? getCellImages(column, row) : paintedImages);
+					}
 					break;
 					
 				case COMPUTE_SIZE:
@@ -287,6 +301,7 @@ public class CellRenderer<T> extends Renderer<T> {
 	 */
 	protected void paintCellImages(final RenderContext rc, final Column column, final Row<T> row, final CellStyle cellStyle) throws Exception {
 		final List<Image> images = getCellImages(column, row);
+		paintedImages = images;
 		final boolean highlightFilterMatch = doesCellHaveStyleableFilterMatch(row, column);
 		
 		if (!images.isEmpty()) {
@@ -344,6 +359,7 @@ public class CellRenderer<T> extends Renderer<T> {
 	 */
 	protected void paintCellText(final RenderContext rc, final Column column, final Row<T> row, final CellStyle cellStyle) throws Exception {
 		final String text = getCellText(column, row);
+		paintedText = text;
 		final GC gc = rc.getGC();
 
 		//
@@ -369,7 +385,7 @@ public class CellRenderer<T> extends Renderer<T> {
 		int width;
 		int height;
 		
-		if (column.isWrap() && (row != grid.getColumnHeaderRow())) {
+		if (column.isWrap() && (row != grid.getColumnHeaderRow()) && (row != gridModel.getFooterRow())) {
 			//
 			// Use a wrapping method of rendering the text.
 			//
@@ -550,6 +566,12 @@ public class CellRenderer<T> extends Renderer<T> {
 		} else if (row == gridModel.getColumnHeaderRow()) {
 			return column.getCaption();
 
+		} else if (row == gridModel.getFooterRow()) {
+			return (column.getFooterAggregate() == null) ? "" : column.getFooterAggregate().getText(gridModel.getFooterModel().getValue(column));
+
+		} else if ((column.getAggregate() != null) && gridModel.getAggregateModel().isAggregated(column, row)) {
+			return column.getAggregate().getText(gridModel.getAggregateModel().getValue(column, row));
+
 		} else {
 			return grid.getLabelProvider().getText(column, row.getElement());
 		}
@@ -579,7 +601,7 @@ public class CellRenderer<T> extends Renderer<T> {
 				}
 			}
 
-		} else if ((column == gridModel.getRowNumberColumn()) || (column == gridModel.getGroupSelectorColumn())) {
+		} else if ((column == gridModel.getRowNumberColumn()) || (column == gridModel.getGroupSelectorColumn()) || (row == gridModel.getFooterRow())) {
 			 // Do nothing, they don't have images.
 			 
 		} else {
@@ -592,6 +614,25 @@ public class CellRenderer<T> extends Renderer<T> {
 		return imageCollector.getImages();
 	}
 	
+	/**
+	 * Body cells have content from the label provider (the header and footer rows, row numbers and group selectors don't).
+	 */
+	protected boolean isContentCell(final Column column, final Row<T> row) {
+		return (row != gridModel.getColumnHeaderRow()) && (row != gridModel.getFooterRow()) && (column != gridModel.getRowNumberColumn()) && (column != gridModel.getGroupSelectorColumn());
+	}
+	
+	/**
+	 * Returns true if the label provider's text, style or images for the cell differ from what was last painted in it (or 
+	 * it's not been painted).
+	 */
+	public boolean hasCellChanged(final Column column, final Row<T> row) {
+		return renderedCells.hasChanged(row, column, styleRegistry.getCellStyle(column, row), getCellText(column, row), getCellImages(column, row));
+	}
+	
+	public RenderedCellCache<T> getRenderedCells() {
+		return renderedCells;
+	}
+	
 	public Point getContentLocation() {
 		return contentLocation;
 	}
@@ -139,6 +139,14 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 		rowBounds.height = grid.getRowHeight(row);
 	}
 	
+	/**
+	 * Returns true if the cell would look different from when it was last painted. Rows without recorded cells (those not 
+	 * painted yet, or painted as inline group rows) always count as changed.
+	 */
+	public boolean hasCellChanged(final Column column, final Row<T> row) {
+		return !cellRenderer.getRenderedCells().isRendered(row) || cellRenderer.hasCellChanged(column, row);
+	}
+	
 	public Point getTextExtent(final String text, final GC gc, final FontData fontData) {
 		rc.setGC(gc);
 		return super.getTextExtent(text, rc, fontData);
@@ -207,6 +215,7 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 				rc.setRenderPass(RenderPass.BACKGROUND);
 				paintRows(rc);
 				selectionRenderer.paintSelectionRegion(rc);
+				paintFooterRow(rc);
 
 				//
 				// Paint the grid and cell foregrounds.
@@ -214,6 +223,12 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 				rc.setRenderPass(RenderPass.FOREGROUND);
 				paintRows(rc);
 				selectionRenderer.paintSelectionRegion(rc);
+				paintFooterRow(rc);
+				
+				//
+				// Forget what was painted in rows which have scrolled out of view.
+				//
+				cellRenderer.getRenderedCells().retainRows(viewport.getFirstRowIndex(), viewport.getLastVisibleRowIndex());
 				
 				//
 				// Paint a drag image if we're dragging a column.
@@ -403,8 +418,8 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 					grid.getHorizontalBar().getSelection()));
 			
 			sb.append(String.format("\n\nMouse\nCol Idx [%s] Row Idx [%s]", 
-					grid.getColumns().indexOf(grid.getMouseHandler().getColumn()), 
-					grid.getRows().indexOf(grid.getMouseHandler().getRow())));
+					gridModel.indexOfColumn(grid.getMouseHandler().getColumn()), 
+					gridModel.indexOfRow(grid.getMouseHandler().getRow())));
 			
 			if (sb.length() > 0) {
 				if (textLayout == null) {
@@ -539,6 +554,36 @@ public class GridRenderer<T> extends Renderer<T> implements PaintListener {
 		}		
 	}
 	
+	/**
+	 * Paint the footer row (if shown) along the bottom of the grid, below the viewport. It's painted after the main rows and
+	 * selection so anything overhanging the viewport is covered.
+	 */
+	protected void paintFooterRow(final RenderContext rc) {
+		if (!gridModel.isShowFooter()) {
+			return;
+		}
+		
+		final GC gc = rc.getGC();
+		final Rectangle viewportArea = viewport.getViewportArea(gc);
+		final Row<T> row = gridModel.getFooterRow();
+		
+		rowBounds.x = styleRegistry.getCellSpacingHorizontal();
+		rowBounds.y = viewportArea.y + viewportArea.height;
+		rowBounds.width = grid.getClientArea().width - grid.getClientArea().x;
+		rowBounds.height = grid.getClientArea().height - rowBounds.y;
+		
+		if (rc.getRenderPass() == RenderPass.BACKGROUND) {
+			gc.setAlpha(255);
+			gc.setBackground(getColour(styleRegistry.getBackgroundColour()));
+			gc.fillRectangle(grid.getClientArea().x, rowBounds.y, grid.getClientArea().width, rowBounds.height);
+		}
+		
+		rc.setAlternate(false);
+		rowBounds.y += styleRegistry.getCellSpacingVertical();
+		rowBounds.height = grid.getRowHeight(row);
+		rowRenderer.paintRow(rc, rowBounds, row);
+	}
+	
 	/**
 	 * If there's a column being repositioned with the mouse, render a 'drag image' representing the column
 	 * header at the mouse location.
@@ -155,7 +155,7 @@ public class GroupRowRenderer<T> extends Renderer<T> {
 		//
 		// Expand/collapse image.
 		//
-		final Image expandImage = grid.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");		
+		final Image expandImage = gridModel.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");		
 		groupCellBounds.width = PADDING__EXPAND_COLLAPSE_IMAGE + expandImage.getBounds().width + PADDING__EXPAND_COLLAPSE_IMAGE;
 		align(expandImage.getBounds().width, expandImage.getBounds().height, groupCellBounds, contentLocation, AlignmentStyle.CENTER);
 				
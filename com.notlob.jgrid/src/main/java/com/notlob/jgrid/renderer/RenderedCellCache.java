@@ -0,0 +1,155 @@
+package com.notlob.jgrid.renderer;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+
+import com.notlob.jgrid.model.Column;
+import com.notlob.jgrid.model.Row;
+import com.notlob.jgrid.styles.CellStyle;
+import com.notlob.jgrid.styles.CompositeCellStyle;
+
+/**
+ * Remembers what was last painted in each on-screen cell - the text, the identity of the style(s) and the images. After
+ * elements are updated, the label provider's output for the on-screen cells can be compared against this, so only cells
+ * which would actually look different need to be repainted.
+ *
+ * Styles are compared by identity (a composite style by the identities of the styles it combines) rather than by value.
+ *
+ * @author Stef
+ */
+public class RenderedCellCache<T> {
+
+	// The cells painted, by row then by column.
+	private final Map<Row<T>, Map<Column, RenderedCell>> rows;
+
+	private final static Image[] NO_IMAGES = new Image[0];
+
+	public RenderedCellCache() {
+		rows = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Record what's just been painted in the cell.
+	 */
+	public void record(final Row<T> row, final Column column, final CellStyle cellStyle, final String text, final List<Image> images) {
+		Map<Column, RenderedCell> cells = rows.get(row);
+
+		if (cells == null) {
+			cells = new IdentityHashMap<>();
+			rows.put(row, cells);
+		}
+
+		cells.put(column, new RenderedCell(getStyleIdentity(cellStyle), text, toArray(images)));
+	}
+
+	/**
+	 * Returns true if anything has been recorded for the row.
+	 */
+	public boolean isRendered(final Row<T> row) {
+		return rows.containsKey(row);
+	}
+
+	/**
+	 * Compare the cell's content with what was last painted. If it differs (or the cell hasn't been painted) the new content
+	 * is recorded - as the caller is expected to repaint it - and true is returned.
+	 */
+	public boolean hasChanged(final Row<T> row, final Column column, final CellStyle cellStyle, final String text, final List<Image> images) {
+		final Map<Column, RenderedCell> cells = rows.get(row);
+		final RenderedCell cell = (cells == null) ? null : cells.get(column);
+
+		if ((cell != null) && cell.matches(cellStyle, text, images)) {
+			return false;
+		}
+
+		record(row, column, cellStyle, text, images);
+		return true;
+	}
+
+	/**
+	 * Forget any rows which are no longer visible or are outside of the range of row indexes specified (inclusive).
+	 */
+	public void retainRows(final int firstRowIndex, final int lastRowIndex) {
+		final Iterator<Row<T>> iterator = rows.keySet().iterator();
+
+		while (iterator.hasNext()) {
+			final Row<T> row = iterator.next();
+
+			if (!row.isVisible() || (row.getRowIndex() < firstRowIndex) || (row.getRowIndex() > lastRowIndex)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		rows.clear();
+	}
+
+	/**
+	 * The styles which make up the cell's style - the composite style itself is re-used for every cell.
+	 */
+	private static Object[] getStyleIdentity(final CellStyle cellStyle) {
+		if (cellStyle instanceof CompositeCellStyle) {
+			return ((CompositeCellStyle) cellStyle).getInnerStyles().toArray();
+		}
+
+		return new Object[] { cellStyle };
+	}
+
+	private static Image[] toArray(final List<Image> images) {
+		return ((images == null) || images.isEmpty()) ? NO_IMAGES : images.toArray(new Image[images.size()]);
+	}
+
+	/**
+	 * What was painted in a cell.
+	 */
+	private static class RenderedCell {
+		private final Object[] styles;
+		private final String text;
+		private final Image[] images;
+
+		private RenderedCell(final Object[] styles, final String text, final Image[] images) {
+			this.styles = styles;
+			this.text = text;
+			this.images = images;
+		}
+
+		private boolean matches(final CellStyle cellStyle, final String text, final List<Image> images) {
+			if ((this.text == null) ? (text != null) : !this.text.equals(text)) {
+				return false;
+			}
+
+			final int imageCount = (images == null) ? 0 : images.size();
+			if (imageCount != this.images.length) {
+				return false;
+			}
+
+			for (int index=0; index<imageCount; index++) {
+				if (images.get(index) != this.images[index]) {
+					return false;
+				}
+			}
+
+			if (cellStyle instanceof CompositeCellStyle) {
+				final List<CellStyle> innerStyles = ((CompositeCellStyle) cellStyle).getInnerStyles();
+
+				if (innerStyles.size() != styles.length) {
+					return false;
+				}
+
+				for (int index=0; index<styles.length; index++) {
+					if (innerStyles.get(index) != styles[index]) {
+						return false;
+					}
+				}
+
+				return true;
+			}
+
+			return (styles.length == 1) && (styles[0] == cellStyle);
+		}
+	}
+}
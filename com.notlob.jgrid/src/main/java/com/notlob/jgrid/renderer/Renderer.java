@@ -121,7 +121,7 @@ public abstract class Renderer<T> {
 	 * Utility method to see if a row has the anchor.
 	 */
 	protected boolean doesRowHaveAnchor(final Row<T> row) {
-		return ((row != null) && (row != gridModel.getColumnHeaderRow()) && (row.getElement() == grid.getAnchorElement()));
+		return ((row != null) && (row != gridModel.getColumnHeaderRow()) && (row != gridModel.getFooterRow()) && (row.getElement() == grid.getAnchorElement()));
 	}
 	
 	/**
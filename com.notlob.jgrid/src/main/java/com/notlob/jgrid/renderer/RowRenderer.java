@@ -55,7 +55,7 @@ public class RowRenderer<T> extends Renderer<T> {
 			cellBounds.height = rowBounds.height;
 			
 			if (gridModel.isShowRowNumbers() || gridModel.isShowGroupSelector()) {
-				if (row == gridModel.getColumnHeaderRow()) {
+				if ((row == gridModel.getColumnHeaderRow()) || (row == gridModel.getFooterRow())) {
 					//
 					// Paint the corner cell if needed.
 					//
@@ -304,7 +304,7 @@ public class RowRenderer<T> extends Renderer<T> {
 				// Draw an expand / collapse image.
 				//
 // TODO: Use align on this rather than hardcoded offsets.				
-				final Image expandImage = grid.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");
+				final Image expandImage = gridModel.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");
 				gc.drawImage(expandImage, groupSelectorBounds.x + 2, groupSelectorBounds.y + 4);
 			}
 			
@@ -352,7 +352,7 @@ public class RowRenderer<T> extends Renderer<T> {
 	 */
 	public Rectangle getExpandImageBounds(final RenderContext rc, final Row<T> row, final Rectangle rowBounds) {
 		final int y = viewport.getRowViewportY(rc.getGC(), row);
-		final Image expandImage = grid.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");
+		final Image expandImage = gridModel.getContentProvider().isCollapsed(row.getElement()) ? getImage("plus.png") : getImage("minus.png");
 		final Rectangle bounds = new Rectangle(rowBounds.x, y, expandImage.getBounds().width, expandImage.getBounds().height);
 		bounds.x += (3 + (gridModel.isShowRowNumbers() ? (gridModel.getRowNumberColumn().getWidth() + styleRegistry.getCellSpacingHorizontal()) : 0));
 		bounds.y += 4;
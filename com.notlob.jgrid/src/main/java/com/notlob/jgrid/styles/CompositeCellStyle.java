@@ -1,6 +1,7 @@
 package com.notlob.jgrid.styles;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.swt.graphics.FontData;
@@ -40,6 +41,13 @@ public class CompositeCellStyle extends CellStyle {
 		return innerStyles.isEmpty();
 	}
 	
+	/**
+	 * The styles combined (in precedence order). Read-only.
+	 */
+	public List<CellStyle> getInnerStyles() {
+		return Collections.unmodifiableList(innerStyles);
+	}
+	
 	public ContentStyle getContentStyle() {
 		for (final CellStyle innerStyle : innerStyles) {
 			final ContentStyle contentStyle = innerStyle.getContentStyle();
@@ -20,6 +20,7 @@ public class StyleRegistry<T> {
 
 	protected CellStyle defaultStyle;
 	protected CellStyle headerStyle;
+	protected CellStyle footerStyle;
 	protected CellStyle rowNumberStyle;
 	protected CellStyle cornerStyle;
 	protected CellStyle groupNameStyle;
@@ -98,6 +99,13 @@ public class StyleRegistry<T> {
 		headerStyle.setBorderOuterRight(new BorderStyle(1, LineStyle.SOLID, new RGB(158, 182, 206)));
 		headerStyle.setBorderOuterLeft(new BorderStyle(1, LineStyle.SOLID, new RGB(158, 182, 206)));
 
+		//
+		// Build a style for the footer row - like the headers but with no sort images.
+		//
+		footerStyle = headerStyle.copy();
+		footerStyle.setContentStyle(ContentStyle.TEXT);
+		footerStyle.setAllowContentOverlap(false);
+
 		//
 		// Build a style for group (parent) rows.
 		//
@@ -230,6 +238,13 @@ public class StyleRegistry<T> {
 
 		styleCollector.clear();
 		
+		//
+		// The footer row has no element for the label provider to style.
+		//
+		if (row == grid.getGridModel().getFooterRow()) {
+			return footerStyle;
+		}
+		
 		if (column != null) {
 			//
 			// See if there's a custom style first.
@@ -297,6 +312,14 @@ public class StyleRegistry<T> {
 	public void setHeaderStyle(CellStyle headerStyle) {
 		this.headerStyle = headerStyle;
 	}
+	
+	public CellStyle getFooterStyle() {
+		return footerStyle;
+	}
+	
+	public void setFooterStyle(CellStyle footerStyle) {
+		this.footerStyle = footerStyle;
+	}
 
 	public CellStyle getDefaultStyle() {
 		return defaultStyle;
@@ -0,0 +1,175 @@
+package com.notlob.jgrid.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ChangeBatchTest {
+
+	/**
+	 * Items are equal if they have the same key, so a new instance can stand for an element already in the grid.
+	 */
+	private static class Item {
+		private final int key;
+
+		private Item(final int key) {
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return key;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return (obj instanceof Item) && (((Item) obj).key == key);
+		}
+	}
+
+	private final Column column1 = new Column("column1");
+	private final Column column2 = new Column("column2");
+
+	private static Collection<Item> items(final Item... items) {
+		return Arrays.asList(items);
+	}
+
+	@Test
+	public void newBatchIsEmpty() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		assertTrue(batch.isEmpty());
+		assertTrue(batch.getChangedColumns().isEmpty());
+	}
+
+	@Test
+	public void addThenRemoveDropsTheElement() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		final Item item = new Item(1);
+		batch.elementsAdded(items(item));
+		batch.elementsRemoved(items(item));
+
+		assertTrue(batch.isEmpty());
+		assertTrue(batch.getRemovedElements().isEmpty());
+	}
+
+	@Test
+	public void removeThenAddIsAnUpdateWhichSwapsTheNewInstance() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		final Item newItem = new Item(1);
+		batch.elementsRemoved(items(new Item(1)));
+		batch.elementsAdded(items(newItem));
+
+		assertTrue(batch.getAddedElements().isEmpty());
+		assertTrue(batch.getRemovedElements().isEmpty());
+		assertEquals(Collections.singleton(newItem), batch.getUpdatedElements());
+		assertEquals(1, batch.getReplacedElements().size());
+		assertSame(newItem, batch.getReplacedElements().iterator().next());
+		assertNull(batch.getChangedColumns());
+	}
+
+	@Test
+	public void replacingAnAddedElementKeepsItAnAddOfTheNewInstance() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		final Item newItem = new Item(1);
+		batch.elementsAdded(items(new Item(1)));
+		batch.elementsReplaced(items(newItem));
+
+		assertEquals(1, batch.getAddedElements().size());
+		assertSame(newItem, batch.getAddedElements().iterator().next());
+		assertTrue(batch.getUpdatedElements().isEmpty());
+		assertTrue(batch.getReplacedElements().isEmpty());
+	}
+
+	@Test
+	public void replacingARemovedElementIsIgnored() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		batch.elementsRemoved(items(new Item(1)));
+		batch.elementsReplaced(items(new Item(1)));
+
+		assertEquals(1, batch.getRemovedElements().size());
+		assertTrue(batch.getUpdatedElements().isEmpty());
+		assertTrue(batch.getReplacedElements().isEmpty());
+	}
+
+	@Test
+	public void replacingAnElementSwapsTheLatestInstance() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		final Item latest = new Item(1);
+		batch.elementsReplaced(items(new Item(1)));
+		batch.elementsReplaced(items(latest));
+
+		assertEquals(1, batch.getUpdatedElements().size());
+		assertEquals(1, batch.getReplacedElements().size());
+		assertSame(latest, batch.getReplacedElements().iterator().next());
+		assertNull(batch.getChangedColumns());
+	}
+
+	@Test
+	public void updatingAnAddedOrRemovedElementIsIgnored() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		batch.elementsAdded(items(new Item(1)));
+		batch.elementsRemoved(items(new Item(2)));
+		batch.elementsUpdated(items(new Item(1), new Item(2)), Collections.singleton(column1));
+
+		assertTrue(batch.getUpdatedElements().isEmpty());
+		assertEquals(1, batch.getAddedElements().size());
+		assertEquals(1, batch.getRemovedElements().size());
+	}
+
+	@Test
+	public void repeatedUpdatesCollapseToOne() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		final Item item = new Item(1);
+		batch.elementsUpdated(items(item), null);
+		batch.elementsUpdated(items(item), null);
+		batch.elementsUpdated(items(new Item(1)), null);
+
+		assertEquals(1, batch.getUpdatedElements().size());
+		assertTrue(batch.getReplacedElements().isEmpty());
+		assertFalse(batch.isEmpty());
+	}
+
+	@Test
+	public void changedColumnsAreMerged() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		batch.elementsUpdated(items(new Item(1)), Collections.singleton(column1));
+		batch.elementsUpdated(items(new Item(2)), Arrays.asList(column1, column2));
+
+		final Set<Column> changedColumns = batch.getChangedColumns();
+		assertEquals(2, changedColumns.size());
+		assertTrue(changedColumns.contains(column1));
+		assertTrue(changedColumns.contains(column2));
+	}
+
+	@Test
+	public void changedColumnsAreUnknownIfAnyUpdateDoesNotSay() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		batch.elementsUpdated(items(new Item(1)), Collections.singleton(column1));
+		batch.elementsUpdated(items(new Item(2)), null);
+		batch.elementsUpdated(items(new Item(3)), Collections.singleton(column2));
+
+		assertNull(batch.getChangedColumns());
+	}
+
+	@Test
+	public void removeAfterUpdateDropsTheUpdateAndReplacement() {
+		final ChangeBatch<Item> batch = new ChangeBatch<>();
+		batch.elementsUpdated(items(new Item(1)), null);
+		batch.elementsReplaced(items(new Item(2)));
+		batch.elementsRemoved(items(new Item(1), new Item(2)));
+
+		assertTrue(batch.getUpdatedElements().isEmpty());
+		assertTrue(batch.getReplacedElements().isEmpty());
+		assertEquals(2, batch.getRemovedElements().size());
+		assertFalse(batch.isEmpty());
+	}
+}
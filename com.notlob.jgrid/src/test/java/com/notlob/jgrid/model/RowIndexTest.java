@@ -0,0 +1,321 @@
+package com.notlob.jgrid.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.notlob.jgrid.providers.IGridContentProvider;
+import com.notlob.jgrid.providers.IGridElementKeyProvider;
+
+public class RowIndexTest {
+
+	/**
+	 * Items are equal if they have the same key - the id is independent (and may be null).
+	 */
+	private static class Item {
+		private final long key;
+		private final String id;
+
+		private Item(final long key, final String id) {
+			this.key = key;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(key);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return (obj instanceof Item) && (((Item) obj).key == key);
+		}
+	}
+
+	private static class ContentProvider implements IGridContentProvider<Item>, IGridElementKeyProvider<Item> {
+		@Override
+		public String getElementId(final Item element) {
+			return element.id;
+		}
+
+		@Override
+		public long getElementKey(final Item element) {
+			return element.key;
+		}
+
+		@Override
+		public int getNaturalIndex(final Item element) {
+			return 0;
+		}
+
+		@Override
+		public Object getValue(final Column column, final Item element) {
+			return null;
+		}
+
+		@Override
+		public Item getParent(final Item element) {
+			return null;
+		}
+
+		@Override
+		public List<Item> getChildren(final Item element) {
+			return null;
+		}
+
+		@Override
+		public boolean isCollapsed(final Item element) {
+			return false;
+		}
+
+		@Override
+		public void setCollapsed(final Item element, final boolean collapsed) {
+		}
+	}
+
+	private final ContentProvider contentProvider = new ContentProvider();
+
+	private List<RowIndex<Item>> createIndexes() {
+		final List<RowIndex<Item>> indexes = new ArrayList<>();
+		indexes.add(new ElementRowIndex<Item>());
+		indexes.add(new StringRowIndex<Item>(contentProvider));
+		indexes.add(new LongRowIndex<Item>(contentProvider));
+		return indexes;
+	}
+
+	@Test
+	public void createsTheElementIndexByDefault() {
+		assertTrue(RowIndex.create(null, false) instanceof ElementRowIndex);
+		assertTrue(RowIndex.create(contentProvider, false) instanceof LongRowIndex);
+		assertTrue(RowIndex.create(contentProvider, true) instanceof LongRowIndex);
+		assertTrue(RowIndex.create(new StringOnlyProvider(), false) instanceof ElementRowIndex);
+		assertTrue(RowIndex.create(new StringOnlyProvider(), true) instanceof StringRowIndex);
+	}
+
+	@Test
+	public void findsEveryRowAfterGrowing() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			final List<Row<Item>> rows = new ArrayList<>();
+
+			for (int count=0; count<1000; count++) {
+				final Row<Item> row = new Row<Item>(new Item(count, "id" + count));
+				assertTrue(index.put(row));
+				rows.add(row);
+			}
+
+			assertEquals(1000, index.size());
+			assertEquals(1000, index.values().size());
+
+			for (final Row<Item> row : rows) {
+				assertSame(row, index.get(row.getElement()));
+				assertSame(row, index.get(new Item(row.getElement().key, row.getElement().id)));
+			}
+		}
+	}
+
+	@Test
+	public void putIsIdempotentForTheSameRow() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			final Row<Item> row = new Row<Item>(new Item(1, "a"));
+			assertTrue(index.put(row));
+			assertTrue(index.put(row));
+			assertEquals(1, index.size());
+		}
+	}
+
+	@Test
+	public void removalKeepsTheOtherRowsReachable() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			final Random random = new Random(1);
+			final Map<Long, Row<Item>> expected = new HashMap<>();
+
+			for (int step=0; step<20000; step++) {
+				//
+				// A small key range keeps the table full of collisions and removals.
+				//
+				final long key = random.nextInt(500);
+				final Item item = new Item(key, "id" + key);
+
+				if (random.nextBoolean()) {
+					final Row<Item> row = new Row<Item>(item);
+					final boolean added = !expected.containsKey(key);
+
+					if (added) {
+						assertTrue(index.put(row));
+						expected.put(key, row);
+					}
+
+				} else {
+					assertSame(expected.remove(key), index.remove(item));
+				}
+			}
+
+			assertEquals(expected.size(), index.size());
+
+			for (long key=0; key<500; key++) {
+				assertSame(expected.get(key), index.get(new Item(key, "id" + key)));
+			}
+		}
+	}
+
+	@Test
+	public void clearEmptiesTheIndex() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			index.put(new Row<Item>(new Item(1, "a")));
+			index.put(new Row<Item>(new Item(1, "a")));
+			index.clear();
+
+			assertTrue(index.isEmpty());
+			assertFalse(index.values().iterator().hasNext());
+			assertNull(index.get(new Item(1, "a")));
+		}
+	}
+
+	@Test
+	public void findsRowsById() {
+		final StringRowIndex<Item> index = new StringRowIndex<Item>(contentProvider);
+		final Row<Item> row = new Row<Item>(new Item(1, "a"));
+		index.put(row);
+
+		assertSame(row, index.getById("a"));
+		assertNull(index.getById("b"));
+		assertNull(index.getById(null));
+	}
+
+	@Test
+	public void findsRowsByKey() {
+		final LongRowIndex<Item> index = new LongRowIndex<Item>(contentProvider);
+		final Row<Item> zero = new Row<Item>(new Item(0, "a"));
+		final Row<Item> negative = new Row<Item>(new Item(-1, "b"));
+		index.put(zero);
+		index.put(negative);
+
+		assertSame(zero, index.getByKey(0));
+		assertSame(negative, index.getByKey(-1));
+		assertNull(index.getByKey(1));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void elementIndexCannotFindById() {
+		new ElementRowIndex<Item>().getById("a");
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void longIndexCannotFindById() {
+		new LongRowIndex<Item>(contentProvider).getById("a");
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void stringIndexCannotFindByKey() {
+		new StringRowIndex<Item>(contentProvider).getByKey(1);
+	}
+
+	@Test
+	public void rowWithNullIdIsFoundByItsElement() {
+		final StringRowIndex<Item> index = new StringRowIndex<Item>(contentProvider);
+		final Row<Item> row = new Row<Item>(new Item(1, null));
+
+		assertFalse(index.put(row));
+		assertEquals(1, index.size());
+		assertSame(row, index.get(row.getElement()));
+		assertNull(index.get(new Item(1, null)));
+		assertSame(row, index.values().iterator().next());
+		assertSame(row, index.remove(row.getElement()));
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	public void duplicateIsFoundByItsElementUntilItTakesTheKey() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			final Row<Item> first = new Row<Item>(new Item(1, "a"));
+			final Row<Item> duplicate = new Row<Item>(new Item(1, "a"));
+
+			assertTrue(index.put(first));
+			assertFalse(index.put(duplicate));
+			assertEquals(2, index.size());
+
+			final Map<Row<Item>, Boolean> values = new IdentityHashMap<>();
+			for (final Row<Item> row : index.values()) {
+				values.put(row, true);
+			}
+			assertEquals(2, values.size());
+
+			assertSame(first, index.get(first.getElement()));
+			assertSame(duplicate, index.get(duplicate.getElement()));
+			assertSame(first, index.get(new Item(1, "a")));
+
+			//
+			// Once the first row has gone, the duplicate is keyed.
+			//
+			assertSame(first, index.remove(first.getElement()));
+			assertEquals(1, index.size());
+			assertSame(duplicate, index.get(new Item(1, "a")));
+			assertSame(duplicate, index.remove(duplicate.getElement()));
+			assertTrue(index.isEmpty());
+		}
+	}
+
+	@Test
+	public void removingTheDuplicateLeavesTheFirstRow() {
+		for (final RowIndex<Item> index : createIndexes()) {
+			final Row<Item> first = new Row<Item>(new Item(1, "a"));
+			final Row<Item> duplicate = new Row<Item>(new Item(1, "a"));
+			index.put(first);
+			index.put(duplicate);
+
+			assertSame(duplicate, index.remove(duplicate.getElement()));
+			assertSame(first, index.get(new Item(1, "a")));
+			assertEquals(1, index.size());
+		}
+	}
+
+	/**
+	 * A content provider which isn't an IGridElementKeyProvider.
+	 */
+	private static class StringOnlyProvider implements IGridContentProvider<Item> {
+		@Override
+		public String getElementId(final Item element) {
+			return element.id;
+		}
+
+		@Override
+		public int getNaturalIndex(final Item element) {
+			return 0;
+		}
+
+		@Override
+		public Object getValue(final Column column, final Item element) {
+			return null;
+		}
+
+		@Override
+		public Item getParent(final Item element) {
+			return null;
+		}
+
+		@Override
+		public List<Item> getChildren(final Item element) {
+			return null;
+		}
+
+		@Override
+		public boolean isCollapsed(final Item element) {
+			return false;
+		}
+
+		@Override
+		public void setCollapsed(final Item element, final boolean collapsed) {
+		}
+	}
+}